@@ -0,0 +1,293 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Draws the simulation in a terminal with ANSI colours, for computers without a screen (like over SSH)
+ * Pheromones are a heatmap in the background colour, and each tile shows a glyph on top:
+ *   [] colony, ## obstacle, *n food (n is the amount, + for more than 9), on ants (n is the number of ants)
+ * The first frame draws every tile; after that only the tiles that changed are redrawn, by moving the cursor to them,
+ * so a mostly still simulation costs almost nothing to send
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class AnsiTerminalView implements TurnListener, AutoCloseable {
+    final private static String ESCAPE = "\u001B[";
+
+    // xterm 256 colour palette indexes, from black through red and yellow to white
+    // Each step is double the pheromone of the one before, so the scale doesn't change as the highest value changes
+    // (a scale relative to the highest value would recolour every tile whenever it changed, and the diff would be useless)
+    final private static int[] HEATMAP = {16, 52, 88, 124, 160, 196, 202, 208, 214, 220, 226, 227, 228, 229, 230, 231};
+
+    final private static int COLONYCOLOR = 46;    // green
+    final private static int OBSTACLECOLOR = 244; // grey
+    final private static int FOODCOLOR = 214;     // orange
+    final private static int ANTCOLOR = 51;       // cyan
+    final private static int DEFAULTCOLOR = 15;   // white
+
+    final private PrintStream out;
+    final private long frameNanos;      // minimum time between frames, 0 to draw as fast as possible
+    final private int maxRows;          // tiles beyond these are not drawn, so large grids don't wrap
+    final private int maxColumns;
+    final private StringBuilder frame = new StringBuilder(1 << 16);
+
+    private int[] pheromone = new int[0];
+    private int[] terrain = new int[0];
+    private int[] ants = new int[0];
+    private int[] drawnCells = new int[0];  // what each tile on screen currently shows, or -1 if unknown
+    private int numRows = -1;
+    private int numColumns = -1;
+    private long lastFrameTime = 0;
+
+    // Where the terminal's cursor and colours are, so escape sequences are only sent when they change
+    private int cursorRow;
+    private int cursorColumn;
+    private int currentForeground;
+    private int currentBackground;
+
+    /**
+     * Creates a view
+     *
+     * @param out        the terminal to draw to
+     * @param fps        most frames to draw per second; the simulation waits so it can be watched (0 for no limit)
+     * @param maxRows    most rows of tiles to draw
+     * @param maxColumns most columns of tiles to draw
+     */
+    public AnsiTerminalView(PrintStream out, int fps, int maxRows, int maxColumns) {
+        this.out = out;
+        this.frameNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+        this.maxRows = maxRows;
+        this.maxColumns = maxColumns;
+    }
+
+    /**
+     * Creates a view of the console, sized to the terminal if the LINES and COLUMNS environment variables are set
+     *
+     * @param fps most frames to draw per second (0 for no limit)
+     */
+    public AnsiTerminalView(int fps) {
+        this(System.out, fps, environmentSize("LINES", 50) - 3, environmentSize("COLUMNS", 160) / 2);
+    }
+
+    @Override
+    public void turnCompleted(SimulationEngine engine) {
+        if (frameNanos > 0) {
+            // Wait until the next frame is due so the simulation can be watched
+            long wait = lastFrameTime + frameNanos - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        draw(engine);
+    }
+
+    /**
+     * Draws the engine, only sending the tiles that changed since the last frame
+     * Afterwards the cursor is left on the line below the grid, with everything below it cleared
+     *
+     * @param engine the engine to draw
+     */
+    public void draw(SimulationEngine engine) {
+        lastFrameTime = System.nanoTime();
+        frame.setLength(0);
+
+        if (engine.getNumRows() != numRows || engine.getNumColumns() != numColumns) {
+            resize(engine.getNumRows(), engine.getNumColumns());
+        }
+        engine.copyGrids(pheromone, terrain, ants);
+
+        int shownRows = Math.min(numRows, maxRows);
+        int shownColumns = Math.min(numColumns, maxColumns);
+
+        for (int row = 0; row < shownRows; row++) {
+            for (int column = 0; column < shownColumns; column++) {
+                int tile = row * numColumns + column;
+                int cell = cellOf(tile);
+                if (cell != drawnCells[tile]) {
+                    drawCell(row, column, cell);
+                    drawnCells[tile] = cell;
+                }
+            }
+        }
+
+        // Status line, redrawn every frame since it is short
+        moveTo(shownRows, 0);
+        frame.append(ESCAPE).append("0m");
+        currentForeground = -1;
+        currentBackground = -1;
+        frame.append("Turn ").append(engine.getTurn())
+                .append("  food ").append(engine.getTotalFood())
+                .append("  ants ").append(engine.getNumAnts())
+                .append("  returning ").append(engine.getNumAntsCarryingFood());
+        if (shownRows < numRows || shownColumns < numColumns) {
+            frame.append("  (showing ").append(shownRows).append('x').append(shownColumns)
+                    .append(" of ").append(numRows).append('x').append(numColumns).append(')');
+        }
+        frame.append(ESCAPE).append('K');  // clear the rest of the line
+        frame.append("\r\n").append(ESCAPE).append('J');  // clear everything below, where prompts and old output were
+        cursorRow = shownRows + 1;
+        cursorColumn = 0;
+
+        out.append(frame);
+        out.flush();
+    }
+
+    /**
+     * Makes the next frame redraw every tile, for example after other text has been printed over the grid
+     */
+    public void invalidate() {
+        Arrays.fill(drawnCells, -1);
+        frame.setLength(0);
+        frame.append(ESCAPE).append("2J");  // clear the screen
+        out.append(frame);
+        cursorRow = -1;
+        currentForeground = -1;
+        currentBackground = -1;
+    }
+
+    /**
+     * Creates the buffers for a new grid size and clears the screen
+     *
+     * @param rows    number of rows
+     * @param columns number of columns
+     */
+    private void resize(int rows, int columns) {
+        numRows = rows;
+        numColumns = columns;
+        pheromone = new int[rows * columns];
+        terrain = new int[rows * columns];
+        ants = new int[rows * columns];
+        drawnCells = new int[rows * columns];
+
+        frame.append(ESCAPE).append("?25l");  // hide the cursor while drawing
+        Arrays.fill(drawnCells, -1);
+        frame.append(ESCAPE).append("2J");
+        cursorRow = -1;
+        currentForeground = -1;
+        currentBackground = -1;
+    }
+
+    /**
+     * Works out what a tile should look like, packed into one int so tiles can be compared quickly
+     * Bits 0-7: first character, 8-15: second character, 16-23: foreground colour, 24-31: heatmap level
+     *
+     * @param tile index of the tile (row * numColumns + column)
+     * @return     the packed cell
+     */
+    private int cellOf(int tile) {
+        int level = Math.min(HEATMAP.length - 1, 32 - Integer.numberOfLeadingZeros(Math.max(0, pheromone[tile]) >> 4));
+        int value = terrain[tile];
+        char first;
+        char second;
+        int foreground;
+
+        if (value == AntColonyEngine.COLONY) {
+            first = '[';
+            second = ']';
+            foreground = COLONYCOLOR;
+        } else if (value == AntColonyEngine.OBSTACLE) {
+            first = '#';
+            second = '#';
+            foreground = OBSTACLECOLOR;
+            level = 0;
+        } else if (ants[tile] > 0) {
+            first = 'o';
+            second = digit(ants[tile]);
+            foreground = ANTCOLOR;
+        } else if (value > 0) {
+            first = '*';
+            second = digit(value);
+            foreground = FOODCOLOR;
+        } else {
+            first = ' ';
+            second = ' ';
+            foreground = DEFAULTCOLOR;
+        }
+
+        return level << 24 | foreground << 16 | second << 8 | first;
+    }
+
+    /**
+     * Sends the escape sequences and characters for one tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param cell   the packed cell
+     */
+    private void drawCell(int row, int column, int cell) {
+        moveTo(row, column * 2);  // every tile is two characters wide so the grid looks square
+        setColours((cell >> 16) & 0xFF, HEATMAP[cell >>> 24]);
+        frame.append((char) (cell & 0xFF)).append((char) ((cell >> 8) & 0xFF));
+        cursorColumn += 2;
+    }
+
+    /**
+     * Moves the cursor, unless it is already there (like when the tiles next to each other both changed)
+     *
+     * @param row    row on the screen, from 0
+     * @param column column on the screen, from 0
+     */
+    private void moveTo(int row, int column) {
+        if (row != cursorRow || column != cursorColumn) {
+            frame.append(ESCAPE).append(row + 1).append(';').append(column + 1).append('H');
+            cursorRow = row;
+            cursorColumn = column;
+        }
+    }
+
+    /**
+     * Changes the text colours, unless they are already set
+     *
+     * @param foreground foreground palette index
+     * @param background background palette index
+     */
+    private void setColours(int foreground, int background) {
+        if (foreground != currentForeground) {
+            frame.append(ESCAPE).append("38;5;").append(foreground).append('m');
+            currentForeground = foreground;
+        }
+        if (background != currentBackground) {
+            frame.append(ESCAPE).append("48;5;").append(background).append('m');
+            currentBackground = background;
+        }
+    }
+
+    /**
+     * Returns a single character for a count
+     *
+     * @param count the count
+     * @return      the digit, or + if it doesn't fit in one
+     */
+    private static char digit(int count) {
+        return count > 9 ? '+' : (char) ('0' + count);
+    }
+
+    /**
+     * Reads a terminal size from an environment variable
+     *
+     * @param name         name of the variable
+     * @param defaultValue value to use if it isn't set
+     * @return             the size
+     */
+    private static int environmentSize(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(System.getenv(name));
+        } catch (NumberFormatException e) {  // also thrown for null
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Puts the terminal's colours and cursor back to normal
+     */
+    @Override
+    public void close() {
+        out.append(ESCAPE).append("0m").append(ESCAPE).append("?25h");
+        out.flush();
+    }
+}
@@ -1,17 +1,25 @@
 // for BFS algorithm
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.Random;
 
 /**
  * Main engine class which controls the game
- * Implements <code>Serializable</code> so I don't get a stroke trying to save and open from text files
+ * This is the reference <code>SimulationEngine</code>: other engines have to give the same results as this one
+ * Implements <code>Serializable</code> (through <code>SimulationEngine</code>) so I don't get a stroke trying to save and open from text files
  *
  * @author Jerry Cui
  * @version %I%, %G%
  * @since 1.0
  */
-public class AntColonyEngine implements Serializable {
+public class AntColonyEngine implements SimulationEngine {
+    // Pinned to the value Java generated for the original class, so presets saved before any fields were added still load
+    private static final long serialVersionUID = 6073645543713258080L;
+
     // Initialize variables for the engine
     // Constant integers that represent something
     final public static int COLONY = -2;    // -2 represents colony
@@ -32,6 +40,14 @@ public class AntColonyEngine implements Serializable {
     };
     // These values are chosen because when added to a {row, column}, the sum is the tile in the chosen direction
 
+    // Layout of a neighbour mask: bit i is set if an ant can move in direction i, and the bits above hold
+    // how many tiles (the tile itself plus its valid neighbours) go into the tile's pheromone average
+    final public static int NEIGHBOURBITS = 0x0F;
+    final public static int COUNTSHIFT = 4;
+
+    // This many turns of diffusion are done in each pass over the tiles no ant can reach
+    final private static int TURNSPERPASS = 8;
+
     private int turn;  // current turn of the simulation
 
     final private int numRows;     // final because size of simulation won't be allowed to change
@@ -63,6 +79,40 @@ public class AntColonyEngine implements Serializable {
     int pheromoneDecay = 1;        // how much pheromones decay per turn
     int minimumPheromone  = 1;     // minimum pheromone level on any tile
 
+    private transient Random random;  // source of randomness for ant movement, can be seeded to make runs reproducible
+
+    // Instrumentation, only used if metrics are attached
+    private transient EngineMetrics metrics;
+    private transient long searchingMoveNanos;
+    private transient long returningMoveNanos;
+    private transient long pathLookupNanos;
+
+    private transient ArrayList<TurnListener> turnListeners;  // told about every finished turn
+    private transient EditQueue editQueue;  // edits from other threads, applied at the start of every turn
+    private transient StringBuilder textBuffer;  // reused for text output so a frame isn't rebuilt from scratch
+
+    // What happened during the last turn
+    private transient int antsMovedThisTurn;
+    private transient int foodPickedUpThisTurn;
+    private transient int foodDeliveredThisTurn;
+
+    // Totals kept up to date by every method that changes the grids, so asking for them doesn't scan the whole grid
+    // Not saved, recounted when an engine is created or loaded
+    private transient int totalFood;
+    private transient int foodTileCount;        // tiles with food on them
+    private transient int antsCarryingFood;
+    private transient long foodDeliveredTotal;  // since this engine was created or loaded
+    private transient long pheromoneSum;
+    private transient int pheromoneMax;
+    private transient boolean pheromoneMaxStale;  // the highest tile was lowered by an edit, so the max has to be found again
+    private transient int activeTiles;          // tiles above the minimum pheromone level, as of the last diffusion
+
+    private transient FoodIndex foodIndex;  // only built if someone asks for it, then kept up to date
+
+    // Which neighbours of each tile an ant can move to, since obstacles rarely change but are checked every turn
+    private transient byte[][] neighbourMask;
+    private transient TiledDiffusion tiledDiffusion;  // created the first time it is needed, by createTiledDiffusion
+
     /**
      * Constructor to initialize another instance of the simulation
      * Simulation always starts from the very beginning
@@ -103,7 +153,328 @@ public class AntColonyEngine implements Serializable {
             this.antGrid[antRow[i]][antColumn[i]]++;
         }
 
+        this.random = new Random();
+        this.turnListeners = new ArrayList<>();
+        this.editQueue = new EditQueue(this);
+        buildNeighbourMasks();
+        recountTotals();
+    }
+
+    /**
+     * Constructor that copies the current state of any engine, so a simulation can be moved to another kind of engine
+     * The copy gets its own unseeded random number generator and no listeners
+     *
+     * @param source the engine to copy
+     */
+    protected AntColonyEngine(SimulationEngine source) {
+        this(source, source instanceof AntColonyEngine ? (AntColonyEngine) source : null);
+    }
+
+    /**
+     * Does the copying for the constructor above
+     * Another <code>AntColonyEngine</code> has its arrays cloned along with its totals and neighbour masks, which is a few
+     * times quicker on big grids than going through the getters and counting everything again (autosaves copy between turns)
+     *
+     * @param source the engine to copy
+     * @param same   the source if it is an <code>AntColonyEngine</code>, otherwise null
+     */
+    private AntColonyEngine(SimulationEngine source, AntColonyEngine same) {
+        this.numRows = source.getNumRows();
+        this.numColumns = source.getNumColumns();
+        this.colonyRow = source.getColonyRow();
+        this.colonyColumn = source.getColonyColumn();
+        this.turn = source.getTurn();
+        this.numAnts = source.getNumAnts();
+        this.pheromoneStrength = source.getPheromoneStrength();
+        this.pheromoneDecay = source.getPheromoneDecay();
+        this.minimumPheromone = source.getMinimumPheromone();
+
+        this.random = new Random();
+        this.turnListeners = new ArrayList<>();
+        this.editQueue = new EditQueue(this);
+
+        if (same != null) {
+            this.antRow = Arrays.copyOf(same.antRow, numAnts);
+            this.antColumn = Arrays.copyOf(same.antColumn, numAnts);
+            this.antFoundFood = Arrays.copyOf(same.antFoundFood, numAnts);
+            this.pheromoneGrid = new int[numRows][];
+            this.terrainGrid = new int[numRows][];
+            this.antGrid = new int[numRows][];
+            this.neighbourMask = new byte[numRows][];
+            for (int row = 0; row < numRows; row++) {
+                pheromoneGrid[row] = same.pheromoneGrid[row].clone();
+                terrainGrid[row] = same.terrainGrid[row].clone();
+                antGrid[row] = same.antGrid[row].clone();
+                neighbourMask[row] = same.neighbourMask[row].clone();
+            }
+
+            this.totalFood = same.totalFood;
+            this.foodTileCount = same.foodTileCount;
+            this.antsCarryingFood = same.antsCarryingFood;
+            this.pheromoneSum = same.pheromoneSum;
+            this.pheromoneMax = same.pheromoneMax;
+            this.pheromoneMaxStale = same.pheromoneMaxStale;
+            this.activeTiles = same.activeTiles;
+            return;
+        }
+
+        this.antRow = new int[numAnts];
+        this.antColumn = new int[numAnts];
+        this.antFoundFood = new boolean[numAnts];
+        for (int i = 0; i < numAnts; i++) {
+            antRow[i] = source.getAntRow(i);
+            antColumn[i] = source.getAntColumn(i);
+            antFoundFood[i] = source.getAntFoundFood(i);
+        }
+
+        // Copy the grids directly instead of going through each tile's getter
+        int[] pheromone = new int[numRows * numColumns];
+        int[] terrain = new int[numRows * numColumns];
+        int[] ants = new int[numRows * numColumns];
+        source.copyGrids(pheromone, terrain, ants);
+        this.pheromoneGrid = new int[numRows][numColumns];
+        this.terrainGrid = new int[numRows][numColumns];
+        this.antGrid = new int[numRows][numColumns];
+        for (int row = 0; row < numRows; row++) {
+            System.arraycopy(pheromone, row * numColumns, pheromoneGrid[row], 0, numColumns);
+            System.arraycopy(terrain, row * numColumns, terrainGrid[row], 0, numColumns);
+            System.arraycopy(ants, row * numColumns, antGrid[row], 0, numColumns);
+        }
+
+        buildNeighbourMasks();
+        recountTotals();
+    }
+
+    /**
+     * Called by Java when the engine is loaded from a preset
+     * Transient fields are not saved, so they have to be recreated here
+     *
+     * @param in the stream the engine is read from
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        this.random = new Random();
+        this.turnListeners = new ArrayList<>();
+        this.editQueue = new EditQueue(this);
+        buildNeighbourMasks();
+        recountTotals();
+    }
+
+    /**
+     * Works out the neighbour mask of every tile
+     */
+    private void buildNeighbourMasks() {
+        neighbourMask = new byte[numRows][numColumns];
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                neighbourMask[row][column] = computeNeighbourMask(terrainGrid, row, column);
+            }
+        }
+    }
+
+    /**
+     * Works out which neighbours of a tile an ant can move to
+     * Static so other engines with the same terrain grid can use it
+     *
+     * @param terrainGrid terrain of each tile
+     * @param row         row of the tile
+     * @param column      column of the tile
+     * @return            the mask, laid out as described at <code>NEIGHBOURBITS</code>
+     */
+    static byte computeNeighbourMask(int[][] terrainGrid, int row, int column) {
+        int mask = 0;
+        int count = 1;  // the tile itself is always part of its average
+
+        for (int i = 0; i < 4; i++) {
+            int targetRow = row + DIRECTIONS[i][0];
+            int targetColumn = column + DIRECTIONS[i][1];
+            if (targetRow >= 0 && targetRow < terrainGrid.length && targetColumn >= 0 && targetColumn < terrainGrid[targetRow].length
+                    && terrainGrid[targetRow][targetColumn] != OBSTACLE) {
+                mask |= 1 << i;
+                count++;
+            }
+        }
+
+        return (byte) (mask | count << COUNTSHIFT);
+    }
+
+    /**
+     * Counts all the totals from scratch
+     * Only needed when the engine is created or loaded, after that they are kept up to date as the grids change
+     */
+    private void recountTotals() {
+        totalFood = 0;
+        foodTileCount = 0;
+
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                if (terrainGrid[row][column] > 0) {
+                    totalFood += terrainGrid[row][column];
+                    foodTileCount++;
+                }
+            }
+        }
+        recountPheromones();
+        foodIndex = null;  // rebuilt from the grid the next time it is needed
+
+        antsCarryingFood = 0;
+        for (int i = 0; i < numAnts; i++) {
+            if (antFoundFood[i]) {
+                antsCarryingFood++;
+            }
+        }
+    }
+
+    /**
+     * Changes the terrain of a tile, keeping the food totals up to date
+     * Every change to the terrain grid goes through here
+     *
+     * @param row    row of tile to change
+     * @param column column of tile to change
+     * @param value  new terrain type
+     */
+    private void changeTerrain(int row, int column, int value) {
+        int oldValue = terrainGrid[row][column];
+        boolean obstacleChanged = (oldValue == OBSTACLE) != (value == OBSTACLE);
+        if (oldValue > 0) {
+            totalFood -= oldValue;
+            foodTileCount--;
+        }
+        if (value > 0) {
+            totalFood += value;
+            foodTileCount++;
+        }
+        terrainGrid[row][column] = value;
+
+        if (foodIndex != null) {
+            if (value > 0) {
+                foodIndex.add(row, column);
+            } else {
+                foodIndex.remove(row, column);
+            }
+        }
+
+        if (obstacleChanged) {
+            obstaclesChanged(row, column, row, column);
+        }
+    }
+
+    /**
+     * Changes the terrain of every tile in a batch in one pass, keeping the food totals up to date as it goes
+     * The neighbour masks are rebuilt once at the end, around the tiles where obstacles were added or removed
+     *
+     * @param edit the batch of changes
+     * @return     number of tiles that changed
+     */
+    public int applyTerrainEdit(RegionEdit edit) {
+        if (edit.getNumRows() != numRows || edit.getNumColumns() != numColumns) {
+            throw new IllegalArgumentException("Edit is for a " + edit.getNumRows() + "x" + edit.getNumColumns() + " grid");
+        }
+
+        int changed = 0;
+        // Rectangle around the obstacles that were added or removed
+        int fromRow = Integer.MAX_VALUE;
+        int fromColumn = Integer.MAX_VALUE;
+        int toRow = Integer.MIN_VALUE;
+        int toColumn = Integer.MIN_VALUE;
+
+        for (int i = 0; i < edit.size(); i++) {
+            int row = edit.getRow(i);
+            int column = edit.getColumn(i);
+            int value = edit.getValue(i);
+            int oldValue = terrainGrid[row][column];
+            if (oldValue == value || !edit.canChange(oldValue)) {
+                continue;
+            }
+
+            if (oldValue > 0) {
+                totalFood -= oldValue;
+                foodTileCount--;
+            }
+            if (value > 0) {
+                totalFood += value;
+                foodTileCount++;
+            }
+            terrainGrid[row][column] = value;
+            changed++;
+
+            if (foodIndex != null && (oldValue > 0) != (value > 0)) {
+                if (value > 0) {
+                    foodIndex.add(row, column);
+                } else {
+                    foodIndex.remove(row, column);
+                }
+            }
+            if ((oldValue == OBSTACLE) != (value == OBSTACLE)) {
+                fromRow = Math.min(fromRow, row);
+                fromColumn = Math.min(fromColumn, column);
+                toRow = Math.max(toRow, row);
+                toColumn = Math.max(toColumn, column);
+            }
+        }
+
+        if (fromRow <= toRow) {
+            obstaclesChanged(fromRow, fromColumn, toRow, toColumn);
+        }
+        return changed;
+    }
 
+    /**
+     * Called once after obstacles were added or removed somewhere in a rectangle, to rebuild what depends on them
+     * Only the tiles next to an obstacle can move onto it, so only the masks in and around the rectangle change
+     * Engines that keep more than the neighbour masks can add to this
+     *
+     * @param fromRow    top row of the rectangle
+     * @param fromColumn left column of the rectangle
+     * @param toRow      bottom row of the rectangle
+     * @param toColumn   right column of the rectangle
+     */
+    protected void obstaclesChanged(int fromRow, int fromColumn, int toRow, int toColumn) {
+        for (int row = Math.max(0, fromRow - 1); row <= Math.min(numRows - 1, toRow + 1); row++) {
+            for (int column = Math.max(0, fromColumn - 1); column <= Math.min(numColumns - 1, toColumn + 1); column++) {
+                neighbourMask[row][column] = computeNeighbourMask(terrainGrid, row, column);
+            }
+        }
+    }
+
+    /**
+     * Changes the pheromone level of a tile, keeping the pheromone totals up to date
+     *
+     * @param row    row of tile to change
+     * @param column column of tile to change
+     * @param value  new pheromone level
+     */
+    private void changePheromone(int row, int column, int value) {
+        int oldValue = pheromoneGrid[row][column];
+        pheromoneSum += value - oldValue;
+        if (value >= pheromoneMax) {
+            pheromoneMax = value;
+            pheromoneMaxStale = false;
+        } else if (oldValue == pheromoneMax) {
+            pheromoneMaxStale = true;  // this might have been the only tile at the max
+        }
+        pheromoneGrid[row][column] = value;
+    }
+
+    /**
+     * Creates a deep copy of the simulation, so the copy can be updated without affecting this engine
+     * The copy gets its own unseeded random number generator
+     *
+     * @return the copy
+     */
+    public AntColonyEngine copy() {
+        return new AntColonyEngine(this);
+    }
+
+    /**
+     * Seeds the random number generator used for ant movement
+     * Two engines with the same state and seed will make exactly the same moves
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
     }
 
     /**
@@ -149,6 +520,9 @@ public class AntColonyEngine implements Serializable {
 
         antGrid[row][column]++;
         numAnts++;
+        if (foundFood) {
+            antsCarryingFood++;
+        }
     }
 
     /**
@@ -160,6 +534,9 @@ public class AntColonyEngine implements Serializable {
         // Delete the ant's attributes from each respective array
         antGrid[antRow[index]][antColumn[index]]--;
         numAnts--;
+        if (antFoundFood[index]) {
+            antsCarryingFood--;
+        }
 
         antRow = Utils.deleteFromArray(antRow, index);
         antColumn = Utils.deleteFromArray(antColumn, index);
@@ -256,15 +633,15 @@ public class AntColonyEngine implements Serializable {
         int[] nextMove = {antRow[antIndex], antColumn[antIndex]};  // nextMove[0] is the new row, nextMove[1] is the new column
         // default move is to stay in the same tile if there are no legal moves
 
-        int legalMoves = 4;  // number of legal moves
+        int mask = neighbourMask[antRow[antIndex]][antColumn[antIndex]];
+        int legalMoves = Integer.bitCount(mask & NEIGHBOURBITS);  // number of legal moves
 
         int[] possibleMoves = {UP, RIGHT, DOWN, LEFT};
         int[] weights = new int[4];  // the weight (how likely to choose) for each move (weight is 0 for invalid moves, otherwise it is the pheromone value)
 
         for (int i = 0; i < 4; i++) {  // i is the direction we are checking
-            if (!isValidTileForAnt(antRow[antIndex] + DIRECTIONS[i][0], antColumn[antIndex] + DIRECTIONS[i][1])) {
+            if ((mask & 1 << i) == 0) {
                 weights[i] = 0;  // remove the chance of this move being picked
-                legalMoves--;
             } else if (terrainGrid[antRow[antIndex] + DIRECTIONS[i][0]][antColumn[antIndex] + DIRECTIONS[i][1]] > 0) {  // if there is food on an adjacent tile, move there automatically
                 return convertToMove(antRow[antIndex], antColumn[antIndex], i);
             } else {
@@ -274,7 +651,7 @@ public class AntColonyEngine implements Serializable {
 
         // stay in place if there are no legal moves
         if (legalMoves > 0) {
-            nextMove = convertToMove(antRow[antIndex], antColumn[antIndex], Utils.weightedRandomChoice(possibleMoves, weights));  // now choose one of the directions to move in
+            nextMove = convertToMove(antRow[antIndex], antColumn[antIndex], Utils.weightedRandomChoice(possibleMoves, weights, random));  // now choose one of the directions to move in
 
         }
         return nextMove;
@@ -288,18 +665,27 @@ public class AntColonyEngine implements Serializable {
      * @return            the average value
      */
     public double areaAverageValue(int row, int column) {
+        int mask = neighbourMask[row][column];
         double sum = pheromoneGrid[row][column];
-        int counter = 1;
 
         for (int i = 0; i < 4; i++) {
-            if (isValidTileForAnt(row + DIRECTIONS[i][0], column + DIRECTIONS[i][1])) {
+            if ((mask & 1 << i) != 0) {
                 sum += pheromoneGrid[row + DIRECTIONS[i][0]][column + DIRECTIONS[i][1]];
-                counter++;
             }
         }
 
+        return sum / (double) (mask >> COUNTSHIFT);
+    }
 
-        return sum / (double) counter;
+    /**
+     * Returns which neighbours of a tile an ant can move to, and how many tiles go into the tile's pheromone average
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       the mask, laid out as described at <code>NEIGHBOURBITS</code>
+     */
+    public int getNeighbourMask(int row, int column) {
+        return neighbourMask[row][column];
     }
 
     /**
@@ -307,13 +693,349 @@ public class AntColonyEngine implements Serializable {
      * First, move all the ants, and then calculate pheromone decay
      */
     public void update() {
+        editQueue.drain();
+
+        EngineTurnEvent turnEvent = new EngineTurnEvent();
+        turnEvent.begin();
+        long turnStart = metrics != null ? System.nanoTime() : 0;
+
+        EnginePhaseEvent movementEvent = new EnginePhaseEvent();
+        movementEvent.begin();
+        moveAnts();
+        movementEvent.end();
+        if (movementEvent.shouldCommit()) {
+            movementEvent.turn = turn;
+            movementEvent.phase = EnginePhaseEvent.MOVEMENT;
+            movementEvent.numAnts = numAnts;
+            movementEvent.tilesProcessed = numAnts;
+            movementEvent.commit();
+        }
+
+        long diffusionStart = metrics != null ? System.nanoTime() : 0;
+        EnginePhaseEvent diffusionEvent = new EnginePhaseEvent();
+        diffusionEvent.begin();
+        diffusePheromones();
+        diffusionEvent.end();
+        if (diffusionEvent.shouldCommit()) {
+            diffusionEvent.turn = turn;
+            diffusionEvent.phase = EnginePhaseEvent.DIFFUSION;
+            diffusionEvent.numAnts = numAnts;
+            diffusionEvent.tilesProcessed = numRows * numColumns;
+            diffusionEvent.commit();
+        }
+
+        if (metrics != null) {
+            long turnEnd = System.nanoTime();
+            metrics.recordTurn(turnEnd - turnStart, searchingMoveNanos, returningMoveNanos, pathLookupNanos, turnEnd - diffusionStart,
+                    antsMovedThisTurn, foodPickedUpThisTurn, foodDeliveredThisTurn);
+        }
+
+        turnEvent.end();
+        if (turnEvent.shouldCommit()) {  // fields are only filled in for turns slow enough to be recorded
+            turnEvent.turn = turn;
+            turnEvent.numAnts = numAnts;
+            turnEvent.antsCarryingFood = getNumAntsCarryingFood();
+            turnEvent.antsMoved = antsMovedThisTurn;
+            turnEvent.tiles = numRows * numColumns;
+            turnEvent.commit();
+        }
+
+        turn++;
+
+        for (TurnListener listener : turnListeners) {
+            listener.turnCompleted(this);
+        }
+    }
+
+    /**
+     * Runs several turns, the same as calling <code>update()</code> that many times
+     * Pheromones only change near the ants (where they pick up food), so most of the grid just diffuses: the turns are
+     * done in passes of up to <code>TURNSPERPASS</code>, and in each pass the tiles that no ant can reach (or read the
+     * pheromones of) are diffused all the turns at once, while the ones ants can reach are stepped between the ants' moves
+     * With no ants at all, nothing is done once every tile is at the minimum
+     * Passes where ants can reach most of the grid are run with <code>update()</code> instead, and so is every turn
+     * while listeners or metrics are attached, since those expect to see every turn
+     * Waiting edits are applied first; edits added while turns are done together wait until the next call
+     *
+     * @param turns number of turns to run
+     */
+    public void runTurns(int turns) {
+        editQueue.drain();  // before looking at the ants, since an edit might add some
+
+        if (!turnListeners.isEmpty() || metrics != null || turns <= 1) {
+            for (int i = 0; i < turns; i++) {
+                update();
+            }
+            return;
+        }
+
+        if (numAnts == 0) {
+            antsMovedThisTurn = 0;
+            foodPickedUpThisTurn = 0;
+            foodDeliveredThisTurn = 0;
+        }
+
+        // Every tile at the minimum stays there forever, since the average is the minimum and decay can't go below it
+        int turnsLeft = turns;
+        while (turnsLeft > 0) {
+            if (numAnts == 0 && getPheromoneMax() == minimumPheromone && pheromoneSum == (long) minimumPheromone * numRows * numColumns
+                    && pheromoneDecay >= 0) {
+                turn += turnsLeft;
+                return;
+            }
+
+            int passTurns = Math.min(turnsLeft, TURNSPERPASS);
+            if (!runPass(passTurns)) {
+                for (int i = 0; i < passTurns; i++) {
+                    update();
+                }
+            }
+            turnsLeft -= passTurns;
+        }
+    }
+
+    /**
+     * Runs a few turns, diffusing the tiles no ant can reach in one go and stepping the rest turn by turn
+     * An ant moves at most one tile per turn, so over the pass it can only add pheromones within <code>turns</code>
+     * of where it starts, and those only spread <code>turns</code> further; tiles beyond that give the same result
+     * whether or not the ants are there
+     *
+     * @param turns number of turns in the pass
+     * @return      false, having changed nothing, if ants can reach so much of the grid that stepping it all is cheaper
+     */
+    private boolean runPass(int turns) {
+        TiledDiffusion diffusion = getTiledDiffusion();
+        int tileSize = diffusion.getTileSize();
+        int tileRows = (numRows + tileSize - 1) / tileSize;
+        int tileColumns = (numColumns + tileSize - 1) / tileSize;
+
+        boolean[] reachable = new boolean[tileRows * tileColumns];
+        int reachableCount = 0;
+        int reach = 2 * turns + 1;  // where the ant can go and see, plus how far what it adds can spread
+        int diagonal = Math.min(numRows, numColumns) - 1;
+        for (int i = 0; i < numAnts; i++) {
+            int fromRow = Math.max(0, antRow[i] - reach) / tileSize;
+            int toRow = Math.min(numRows - 1, antRow[i] + reach) / tileSize;
+            int fromColumn = Math.max(0, antColumn[i] - reach) / tileSize;
+            int toColumn = Math.min(numColumns - 1, antColumn[i] + reach) / tileSize;
+            for (int tileRow = fromRow; tileRow <= toRow; tileRow++) {
+                for (int tileColumn = fromColumn; tileColumn <= toColumn; tileColumn++) {
+                    if (!reachable[tileRow * tileColumns + tileColumn]) {
+                        reachable[tileRow * tileColumns + tileColumn] = true;
+                        reachableCount++;
+                    }
+                }
+            }
+
+            // Searching ants weigh their moves with the pheromone at {row, row} (see findFoodNextMove),
+            // so the tiles on the diagonal next to the rows they can reach have to be right every turn too
+            int fromTile = Math.max(0, antRow[i] - turns - 1) / tileSize;
+            int toTile = Math.min(diagonal, antRow[i] + turns + 1) / tileSize;
+            for (int tile = fromTile; tile <= toTile; tile++) {
+                if (!reachable[tile * tileColumns + tile]) {
+                    reachable[tile * tileColumns + tile] = true;
+                    reachableCount++;
+                }
+            }
+        }
+        if (reachableCount * 2 > reachable.length) {
+            return false;
+        }
+
+        // Tiles out of reach, all the turns at once from the grid as it is now
+        int[][] result = diffusion.diffuse(pheromoneGrid, neighbourMask, turns, pheromoneDecay, minimumPheromone, reachable);
+
+        // Tiles in reach, one turn at a time; each turn a tile needs its neighbours from the turn before, so the area
+        // worked out around each tile starts with a border as wide as the pass and shrinks by one every turn
+        if (reachableCount == 0) {
+            pheromoneGrid = result;  // no ants, so nothing else to do
+            recountPheromones();
+            turn += turns;
+            return true;
+        }
+        int[][] next = new int[numRows][numColumns];
+        for (int passTurn = 1; passTurn <= turns; passTurn++) {
+            moveAnts();  // reads and adds to pheromoneGrid, which holds the turn before for every tile in reach
+
+            int border = turns - passTurn;
+            for (int tile = 0; tile < reachable.length; tile++) {
+                if (reachable[tile]) {
+                    int top = tile / tileColumns * tileSize;
+                    int left = tile % tileColumns * tileSize;
+                    diffuseRegion(pheromoneGrid, next, Math.max(0, top - border), Math.max(0, left - border),
+                            Math.min(numRows, top + tileSize + border), Math.min(numColumns, left + tileSize + border));
+                }
+            }
+
+            int[][] swap = pheromoneGrid;
+            pheromoneGrid = next;
+            next = swap;
+            turn++;
+        }
+
+        for (int tile = 0; tile < reachable.length; tile++) {
+            if (reachable[tile]) {
+                int top = tile / tileColumns * tileSize;
+                int left = tile % tileColumns * tileSize;
+                int width = Math.min(numColumns, left + tileSize) - left;
+                for (int row = top; row < Math.min(numRows, top + tileSize); row++) {
+                    System.arraycopy(pheromoneGrid[row], left, result[row], left, width);
+                }
+            }
+        }
+        pheromoneGrid = result;
+        recountPheromones();
+        return true;
+    }
+
+    /**
+     * Works out one turn of diffusion and decay for a rectangle, the same way <code>diffusePheromones</code> does
+     *
+     * @param from   pheromones at the start of the turn, right for the rectangle and a border of one around it
+     * @param to     where to write the rectangle's pheromones after the turn
+     * @param top    first row
+     * @param left   first column
+     * @param bottom row after the last
+     * @param right  column after the last
+     */
+    private void diffuseRegion(int[][] from, int[][] to, int top, int left, int bottom, int right) {
+        for (int row = top; row < bottom; row++) {
+            int[] above = row > 0 ? from[row - 1] : null;
+            int[] current = from[row];
+            int[] below = row < numRows - 1 ? from[row + 1] : null;
+            byte[] masks = neighbourMask[row];
+            int[] newRow = to[row];
+
+            for (int column = left; column < right; column++) {
+                int mask = masks[column];
+                long areaSum = current[column];
+                if ((mask & 1 << UP) != 0) {
+                    areaSum += above[column];
+                }
+                if ((mask & 1 << RIGHT) != 0) {
+                    areaSum += current[column + 1];
+                }
+                if ((mask & 1 << DOWN) != 0) {
+                    areaSum += below[column];
+                }
+                if ((mask & 1 << LEFT) != 0) {
+                    areaSum += current[column - 1];
+                }
+
+                newRow[column] = Math.max((int) (areaSum / (mask >> COUNTSHIFT)) - pheromoneDecay, minimumPheromone);
+            }
+        }
+    }
+
+    /**
+     * Adds up the pheromone grid and finds its highest tile again, after the whole grid was replaced
+     */
+    private void recountPheromones() {
+        pheromoneSum = 0;
+        pheromoneMax = Integer.MIN_VALUE;
+        activeTiles = 0;
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                pheromoneSum += pheromoneGrid[row][column];
+                pheromoneMax = Math.max(pheromoneMax, pheromoneGrid[row][column]);
+                if (pheromoneGrid[row][column] > minimumPheromone) {
+                    activeTiles++;
+                }
+            }
+        }
+        pheromoneMaxStale = false;
+    }
+
+    /**
+     * Returns the tiled diffusion used to do diffusion turns together, creating it the first time
+     *
+     * @return the tiled diffusion
+     */
+    protected TiledDiffusion getTiledDiffusion() {
+        if (tiledDiffusion == null) {
+            tiledDiffusion = createTiledDiffusion();
+        }
+        return tiledDiffusion;
+    }
+
+    /**
+     * Creates the tiled diffusion used when several turns are diffused at once
+     * The reference engine does all the tiles on one thread, other engines can split them up
+     *
+     * @return a new tiled diffusion
+     */
+    protected TiledDiffusion createTiledDiffusion() {
+        return new TiledDiffusion(128, false);
+    }
+
+    /**
+     * Returns the tiled diffusion to use for a single turn of diffusion, so other engines can split it between processors
+     * The reference engine diffuses single turns itself
+     *
+     * @return the tiled diffusion, or null to use the plain loop
+     */
+    protected TiledDiffusion getTurnDiffusion() {
+        return null;
+    }
+
+    /**
+     * Returns the queue of edits waiting to be made at the start of the next turn
+     *
+     * @return the edit queue
+     */
+    public EditQueue getEditQueue() {
+        return editQueue;
+    }
+
+    /**
+     * Adds a listener that is told whenever a turn finishes
+     *
+     * @param listener the listener
+     */
+    public void addTurnListener(TurnListener listener) {
+        turnListeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about finished turns
+     *
+     * @param listener the listener
+     */
+    public void removeTurnListener(TurnListener listener) {
+        turnListeners.remove(listener);
+    }
+
+    /**
+     * First phase of a turn: every ant moves one tile (or stays put if it can't move)
+     * Ants that step onto food pick it up, and ants that bring food back to the colony drop it off
+     */
+    protected void moveAnts() {
+        boolean timed = metrics != null;  // skip all the clock reads unless someone is watching
+        long moveStart = 0;
+        long pathStart;
+        long pathNanos;
+
+        searchingMoveNanos = 0;
+        returningMoveNanos = 0;
+        pathLookupNanos = 0;
+        antsMovedThisTurn = 0;
+        foodPickedUpThisTurn = 0;
+        foodDeliveredThisTurn = 0;
+
         // Update ant locations
         int[] nextMove;
 
         for (int i  = 0; i < numAnts; i++) {
+            if (timed) {
+                moveStart = System.nanoTime();
+            }
+
             // Different algorithms depending on whether the ant has found food
             if (!antFoundFood[i]) {
                 nextMove = findFoodNextMove(i);
+                if (nextMove[0] != antRow[i] || nextMove[1] != antColumn[i]) {
+                    antsMovedThisTurn++;
+                }
                 antGrid[nextMove[0]][nextMove[1]] += 1;  // new location gains an ant, old one loses an ant
                 antGrid[antRow[i]][antColumn[i]] -= 1;
                 antRow[i] = nextMove[0];  // update the row and column arrays
@@ -322,13 +1044,30 @@ public class AntColonyEngine implements Serializable {
                 // Check if the ant moved onto food while searching for it
                 if (terrainGrid[antRow[i]][antColumn[i]] > 0) {
                     antFoundFood[i] = true;
-                    terrainGrid[antRow[i]][antColumn[i]] -= 1;  // remove one unit of food
+                    antsCarryingFood++;
+                    changeTerrain(antRow[i], antColumn[i], terrainGrid[antRow[i]][antColumn[i]] - 1);  // remove one unit of food
+                    foodPickedUpThisTurn++;
                     // increase pheromones on the current tile
-                    pheromoneGrid[antRow[i]][antColumn[i]] += pheromoneStrength;
+                    changePheromone(antRow[i], antColumn[i], pheromoneGrid[antRow[i]][antColumn[i]] + pheromoneStrength);
+                }
+
+                if (timed) {
+                    searchingMoveNanos += System.nanoTime() - moveStart;
                 }
             } else {  // Check if ant with food moved back to the colony
-                nextMove = foundFoodNextMove(i);
+                if (timed) {
+                    pathStart = System.nanoTime();
+                    nextMove = foundFoodNextMove(i);
+                    pathNanos = System.nanoTime() - pathStart;
+                    pathLookupNanos += pathNanos;
+                    moveStart += pathNanos;  // path lookup is counted separately, so leave it out of the move time
+                } else {
+                    nextMove = foundFoodNextMove(i);
+                }
 
+                if (nextMove[0] != antRow[i] || nextMove[1] != antColumn[i]) {
+                    antsMovedThisTurn++;
+                }
                 antGrid[nextMove[0]][nextMove[1]] += 1;  // new location gains an ant, old one loses an ant
                 antGrid[antRow[i]][antColumn[i]] -= 1;
                 antRow[i] = nextMove[0];  // update the row and column arrays
@@ -337,41 +1076,220 @@ public class AntColonyEngine implements Serializable {
                 // Check if the ant made it back to the colony
                 if (antRow[i] == colonyRow && antColumn[i] == colonyColumn) {
                     antFoundFood[i] = false;
+                    antsCarryingFood--;
+                    foodDeliveredThisTurn++;
+                    foodDeliveredTotal++;
+                }
+
+                if (timed) {
+                    returningMoveNanos += System.nanoTime() - moveStart;
                 }
             }
         }
+    }
+
+    /**
+     * Second phase of a turn: pheromones spread to the surrounding tiles and decay
+     */
+    protected void diffusePheromones() {
+        TiledDiffusion turnDiffusion = getTurnDiffusion();
+        if (turnDiffusion != null) {
+            pheromoneGrid = turnDiffusion.diffuse(pheromoneGrid, neighbourMask, 1, pheromoneDecay, minimumPheromone);
+            recountPheromones();
+            return;
+        }
 
         // Pheromone decay
         int[][] newPheromoneGrid = new int[numRows][numColumns];
+        long sum = 0;  // every tile changes, so the totals are recounted here instead of tile by tile
+        int highest = Integer.MIN_VALUE;
+        int active = 0;
 
         for (int row = 0; row < numRows; row++) {
+            int[] above = row > 0 ? pheromoneGrid[row - 1] : null;
+            int[] current = pheromoneGrid[row];
+            int[] below = row < numRows - 1 ? pheromoneGrid[row + 1] : null;
+            byte[] masks = neighbourMask[row];
+            int[] newRow = newPheromoneGrid[row];
+
             for (int column = 0; column < numColumns; column++) {
-                newPheromoneGrid[row][column] = (int) areaAverageValue(row, column);
-                newPheromoneGrid[row][column] -= pheromoneDecay;
-                if (newPheromoneGrid[row][column] < minimumPheromone) {
-                    newPheromoneGrid[row][column] = minimumPheromone;  // minimum pheromone level
+                // Same as (int) areaAverageValue(row, column), but with whole numbers: the sum is exact either way,
+                // and dividing by at most 5 can't round a double up to the next whole number
+                int mask = masks[column];
+                long areaSum = current[column];
+                if ((mask & 1 << UP) != 0) {
+                    areaSum += above[column];
+                }
+                if ((mask & 1 << RIGHT) != 0) {
+                    areaSum += current[column + 1];
+                }
+                if ((mask & 1 << DOWN) != 0) {
+                    areaSum += below[column];
+                }
+                if ((mask & 1 << LEFT) != 0) {
+                    areaSum += current[column - 1];
+                }
+
+                int value = (int) (areaSum / (mask >> COUNTSHIFT)) - pheromoneDecay;
+                if (value <= minimumPheromone) {
+                    value = minimumPheromone;  // minimum pheromone level
+                } else {
+                    active++;
                 }
+                newRow[column] = value;
+                sum += value;
+                highest = Math.max(highest, value);
             }
         }
 
         pheromoneGrid = newPheromoneGrid;
+        pheromoneSum = sum;
+        pheromoneMax = highest;
+        pheromoneMaxStale = false;
+        activeTiles = active;
+    }
+
+    /**
+     * Returns the food left on every tile, added up
+     *
+     * @return total amount of food on the grid
+     */
+    public int getTotalFood() {
+        return totalFood;
+    }
+
+    /**
+     * Returns the number of tiles that have food on them
+     *
+     * @return number of food tiles
+     */
+    public int getFoodTileCount() {
+        return foodTileCount;
+    }
+
+    /**
+     * Returns the number of tiles with more than the minimum pheromone level, which is where anything is happening
+     * Counted during diffusion, so edits since the last turn aren't included
+     *
+     * @return number of active tiles
+     */
+    public int getActiveTileCount() {
+        return activeTiles;
+    }
+
+    /**
+     * Returns the index of tiles with food, for finding the nearest food or the food in an area
+     * The index is built the first time this is called, and kept up to date as food is eaten or edited after that
+     *
+     * @return the food index
+     */
+    public FoodIndex getFoodIndex() {
+        if (foodIndex == null) {
+            foodIndex = new FoodIndex(numRows, numColumns);
+            for (int row = 0; row < numRows; row++) {
+                for (int column = 0; column < numColumns; column++) {
+                    if (terrainGrid[row][column] > 0) {
+                        foodIndex.add(row, column);
+                    }
+                }
+            }
+        }
+        return foodIndex;
+    }
+
+    /**
+     * Returns the number of ants that are carrying food back to the colony
+     *
+     * @return number of ants that have found food
+     */
+    public int getNumAntsCarryingFood() {
+        return antsCarryingFood;
+    }
+
+    /**
+     * Returns the food brought back to the colony since this engine was created or loaded
+     *
+     * @return units of food delivered
+     */
+    public long getFoodDeliveredTotal() {
+        return foodDeliveredTotal;
+    }
+
+    /**
+     * Returns the pheromone level of every tile, added up
+     *
+     * @return sum of the pheromone grid
+     */
+    public long getPheromoneSum() {
+        return pheromoneSum;
+    }
+
+    /**
+     * Returns the highest pheromone level of any tile
+     * Only searches the grid if an edit lowered the highest tile since the last turn
+     *
+     * @return the highest pheromone level
+     */
+    public int getPheromoneMax() {
+        if (pheromoneMaxStale) {
+            pheromoneMax = Utils.findHighest(pheromoneGrid);
+            pheromoneMaxStale = false;
+        }
+        return pheromoneMax;
+    }
+
+    /**
+     * Copies the pheromone, terrain and ant grids into flat arrays, one row after another
+     * Much faster than calling the getters for every tile
+     *
+     * @param pheromone destination for the pheromone grid, at least numRows * numColumns long (or null to skip)
+     * @param terrain   destination for the terrain grid (or null to skip)
+     * @param ants      destination for the ant grid (or null to skip)
+     */
+    public void copyGrids(int[] pheromone, int[] terrain, int[] ants) {
+        for (int row = 0; row < numRows; row++) {
+            if (pheromone != null) {
+                System.arraycopy(pheromoneGrid[row], 0, pheromone, row * numColumns, numColumns);
+            }
+            if (terrain != null) {
+                System.arraycopy(terrainGrid[row], 0, terrain, row * numColumns, numColumns);
+            }
+            if (ants != null) {
+                System.arraycopy(antGrid[row], 0, ants, row * numColumns, numColumns);
+            }
+        }
     }
 
     // Text output methods (if user is using text simulation)
+    // Output is built up in textBuffer and written all at once, since printing one number at a time is very slow
+
     /**
      * Outputs the data in the grid, separated by a space, one row per line
      *
      * @param grid the grid to print
      */
     public void printGrid(int[][] grid) {
-        int highestNumber = Utils.findHighest(grid);
+        StringBuilder builder = getTextBuffer();
+        appendGrid(builder, grid);
+        writeText(builder);
+    }
+
+    /**
+     * Adds the data in the grid to the text being built, separated by a space, one row per line
+     *
+     * @param builder where to add the text
+     * @param grid    the grid to add
+     */
+    public void appendGrid(StringBuilder builder, int[][] grid) {
+        int highestNumber = grid == pheromoneGrid ? getPheromoneMax() : Utils.findHighest(grid);  // the pheromone max is already known
         int outputWidth = String.valueOf(highestNumber).length() + 1;  // get width of longest number to format accordingly, +1 in case there is a negative
 
         for (int i = 0; i < grid.length; i++) {
             for (int j = 0; j < grid[i].length; j++) {
-                System.out.printf("%" + outputWidth + "d ", grid[i][j]);  // format it with equivalent spacing, extra space will go to the left
+                Utils.appendPadded(builder, grid[i][j], outputWidth);  // format it with equivalent spacing, extra space will go to the left
+                builder.append(' ');
             }
-            System.out.println();  // new line before the next row
+            builder.append('\n');  // new line before the next row
         }
     }
 
@@ -379,37 +1297,114 @@ public class AntColonyEngine implements Serializable {
      * Print out all the info at the start of a turn and prompt user for command
      */
     public void printInfo() {
-        System.out.println("Turn " + turn + ":");
+        printInfo(false);
+    }
+
+    /**
+     * Print out the info at the start of a turn and prompt user for command
+     *
+     * @param summaryOnly if true, print a one line summary and a short prompt instead of the grids and the full menu
+     */
+    public void printInfo(boolean summaryOnly) {
+        StringBuilder builder = getTextBuffer();
+
+        if (summaryOnly) {
+            appendSummary(builder);
+            builder.append("Enter your command (HELP for the list of commands): \n");
+            writeText(builder);
+            return;
+        }
+
+        appendGrids(builder);
+
+        builder.append("Enter your command: \n");
+        SimulationEngine.appendCommands(builder);
+
+        writeText(builder);
+    }
+
+    /**
+     * Prints the turn number and all the grids, without prompting for a command
+     */
+    public void printGrids() {
+        StringBuilder builder = getTextBuffer();
+        appendGrids(builder);
+        writeText(builder);
+    }
+
+    /**
+     * Adds the turn number and all the grids to the text being built
+     *
+     * @param builder where to add the text
+     */
+    public void appendGrids(StringBuilder builder) {
+        builder.append("Turn ").append(turn).append(":\n");
 
         // Output the types of grids
-        System.out.println("Pheromone Grid: ");
-        printGrid(pheromoneGrid);
-        System.out.println("Terrain Grid: ");
-        printGrid(terrainGrid);
-        System.out.println("Ant Grid: ");
-        printGrid(antGrid);
-
-        System.out.println("Enter your command: ");
-
-        System.out.println("QUIT: exit program");
-        System.out.println("HELP: tutorial on how to interpret/use the program");
-        System.out.println("PHEROMONE: overwrite the value of a pheromone at a specific row/column");
-        System.out.println("PHEROMONE STRENGTH: change the value of pheromone strength");
-        System.out.println("PHEROMONE DECAY: change the value of pheromone decay");
-        System.out.println("COLONY: change the location of the ant colony");
-        System.out.println("OBSTACLE: create or remove obstacle");
-        System.out.println("FOOD: overwrite food values");
-        System.out.println("EDIT ANT: flip the value of if ant has found food or not");
-        System.out.println("ADD ANT: add another ant");
-        System.out.println("DELETE ANT: delete an at");
-        System.out.println("Any other input: continue to next turn");
+        builder.append("Pheromone Grid: \n");
+        appendGrid(builder, pheromoneGrid);
+        builder.append("Terrain Grid: \n");
+        appendGrid(builder, terrainGrid);
+        builder.append("Ant Grid: \n");
+        appendGrid(builder, antGrid);
+    }
+
+    /**
+     * Prints a one line summary of the simulation
+     */
+    public void printSummary() {
+        StringBuilder builder = getTextBuffer();
+        appendSummary(builder);
+        writeText(builder);
+    }
+
+    /**
+     * Adds a one line summary of the simulation to the text being built
+     *
+     * @param builder where to add the text
+     */
+    public void appendSummary(StringBuilder builder) {
+        int carrying = getNumAntsCarryingFood();
+
+        builder.append("Turn ").append(turn)
+                .append(": food remaining ").append(getTotalFood())
+                .append(", ants searching ").append(numAnts - carrying)
+                .append(", ants returning ").append(carrying)
+                .append(", highest pheromone ").append(getPheromoneMax())
+                .append('\n');
+    }
+
+    /**
+     * Returns the reusable buffer for text output, emptied
+     *
+     * @return the empty buffer
+     */
+    private StringBuilder getTextBuffer() {
+        if (textBuffer == null) {
+            textBuffer = new StringBuilder(numRows * numColumns * 24);  // room for three grids of small numbers
+        }
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    /**
+     * Writes the built up text to the console in one go
+     *
+     * @param builder the text to write
+     */
+    private void writeText(StringBuilder builder) {
+        System.out.append(builder);
+        System.out.flush();
     }
 
     /**
      * Prints out information about the simulation and how it works
      */
     public void printHelp() {
-        System.out.println("HELP: ");
+        StringBuilder builder = getTextBuffer();
+        builder.append("HELP: \n");
+        SimulationEngine.appendCommands(builder);
+        writeText(builder);
     }
 
     /**
@@ -443,6 +1438,51 @@ public class AntColonyEngine implements Serializable {
         this.turn = turn;
     }
 
+    /**
+     * Returns the metrics the engine is recording into
+     *
+     * @return the metrics, or null if instrumentation is off
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Attaches metrics to record the timing of each turn into
+     *
+     * @param metrics the metrics, or null to turn instrumentation off
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the number of ants that changed tiles during the last turn
+     *
+     * @return number of ants that moved
+     */
+    public int getAntsMovedThisTurn() {
+        return antsMovedThisTurn;
+    }
+
+    /**
+     * Returns the units of food picked up during the last turn
+     *
+     * @return food picked up
+     */
+    public int getFoodPickedUpThisTurn() {
+        return foodPickedUpThisTurn;
+    }
+
+    /**
+     * Returns the units of food brought back to the colony during the last turn
+     *
+     * @return food delivered
+     */
+    public int getFoodDeliveredThisTurn() {
+        return foodDeliveredThisTurn;
+    }
+
     /**
      * Returns the number of ants
      *
@@ -579,6 +1619,9 @@ public class AntColonyEngine implements Serializable {
      * @param foundFood the new food status
      */
     public void setAntFoundFood(int index, boolean foundFood) {
+        if (foundFood != antFoundFood[index]) {
+            antsCarryingFood += foundFood ? 1 : -1;
+        }
         antFoundFood[index] = foundFood;
     }
 
@@ -601,7 +1644,7 @@ public class AntColonyEngine implements Serializable {
      * @param value  new pheromone strength
      */
     public void setPheromoneGrid(int row, int column, int value) {
-        pheromoneGrid[row][column] = value;
+        changePheromone(row, column, value);
     }
 
     /**
@@ -623,7 +1666,7 @@ public class AntColonyEngine implements Serializable {
      * @param value  new terrain type
      */
     public void setTerrainGrid(int row, int column, int value) {
-        terrainGrid[row][column] = value;
+        changeTerrain(row, column, value);
     }
 
     /**
@@ -635,7 +1678,7 @@ public class AntColonyEngine implements Serializable {
      * @param amount  amount of food to decrease
      */
     public void decreaseFood(int row, int column, int amount) {
-        terrainGrid[row][column] -= amount;
+        changeTerrain(row, column, terrainGrid[row][column] - amount);
     }
 
     /**
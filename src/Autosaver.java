@@ -0,0 +1,256 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves the simulation in the background, every few turns and whenever asked, so a long run survives a crash
+ * The thread running the turns only copies the engine between turns; writing and compressing the copy happen on a
+ * writer thread, so neither the simulation nor the GUI waits on the disk
+ *
+ * Saves are gzipped presets (<code>EngineFactory.load</code> reads both kinds). Each one is written to a temporary file
+ * in the same folder, flushed to the disk, and then renamed over the target in one step, so a crash in the middle of a
+ * save leaves the previous file whole instead of half written
+ * Checkpoints are named <code>name-00000500.txt</code> after their turn, and only the newest few are kept
+ * If a checkpoint is due while the last one is still being written, it waits and is written straight after; only the
+ * newest one waits, so a slow disk skips checkpoints in between rather than piling up copies, but never the last one
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class Autosaver implements TurnListener, AutoCloseable {
+    final private static Logger LOGGER = Logger.getLogger(Autosaver.class.getName());
+
+    final private File directory;
+    final private String name;
+    final private int every;
+    final private int keep;
+    final private Pattern checkpointName;  // name-00000500.txt, so other files that start with the name are left alone
+
+    final private ExecutorService writer;
+    private boolean checkpointPending = false;        // a periodic checkpoint is queued or being written; guarded by this
+    private SimulationEngine waitingCheckpoint;      // copy due while one was being written, written next; guarded by this
+    final private AtomicLong checkpointsWritten = new AtomicLong();
+    final private AtomicLong checkpointsSkipped = new AtomicLong();
+
+    /**
+     * Creates an autosaver
+     *
+     * @param directory folder for the checkpoints (created if needed)
+     * @param name      start of every checkpoint's file name
+     * @param every     save a checkpoint every this many turns, 0 to only save when asked
+     * @param keep      number of checkpoints to keep, older ones are deleted
+     */
+    public Autosaver(File directory, String name, int every, int keep) {
+        this.directory = directory;
+        this.name = name;
+        this.every = Math.max(0, every);
+        this.keep = Math.max(1, keep);
+        this.checkpointName = Pattern.compile(Pattern.quote(name) + "-\\d{8,}\\.txt");  // %08d goes past 8 digits after turn 99999999
+
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autosave-writer");
+            thread.setDaemon(true);  // a save cut short by exiting leaves the last file whole, so it doesn't keep the program open
+            return thread;
+        });
+    }
+
+    /**
+     * Saves a checkpoint every few turns; if the last one is still being written, this one waits for it
+     *
+     * @param engine the engine that finished a turn
+     */
+    @Override
+    public void turnCompleted(SimulationEngine engine) {
+        if (every == 0 || engine.getTurn() % every != 0) {
+            return;
+        }
+
+        SimulationEngine copy = engine.copy();
+        synchronized (this) {
+            if (checkpointPending) {
+                if (waitingCheckpoint != null) {
+                    checkpointsSkipped.incrementAndGet();  // a newer one replaces it
+                }
+                waitingCheckpoint = copy;
+                return;
+            }
+            checkpointPending = true;
+        }
+
+        // One task writes this checkpoint and then any that came due meanwhile, so close() waits for all of them
+        writer.execute(() -> {
+            SimulationEngine next = copy;
+            while (next != null) {
+                try {
+                    writeCheckpoint(next);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Checkpoint of turn " + next.getTurn() + " could not be saved", e);
+                }
+                synchronized (this) {
+                    next = waitingCheckpoint;
+                    waitingCheckpoint = null;
+                    checkpointPending = next != null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves a checkpoint of the engine now, named after its turn, then deletes the oldest checkpoints beyond the number kept
+     * Must be called between turns, from the thread that runs them
+     *
+     * @param engine the engine
+     * @return       future that completes with the file once it is written, or exceptionally if it couldn't be
+     */
+    public CompletableFuture<File> checkpoint(SimulationEngine engine) {
+        SimulationEngine copy = engine.copy();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return writeCheckpoint(copy);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);  // the future completes exceptionally with this
+            }
+        }, writer).whenComplete((saved, error) -> {
+            if (error != null) {
+                LOGGER.log(Level.WARNING, "Checkpoint of turn " + copy.getTurn() + " could not be saved", error);
+            }
+        });
+    }
+
+    /**
+     * Writes a checkpoint named after its turn, then deletes the oldest checkpoints; runs on the writer thread
+     *
+     * @param copy copy of the engine, which nothing else will change
+     * @return     the file written
+     */
+    private File writeCheckpoint(SimulationEngine copy) throws IOException {
+        File target = new File(directory, String.format("%s-%08d.txt", name, copy.getTurn()));
+        write(copy, target);
+        checkpointsWritten.incrementAndGet();
+        deleteOldCheckpoints();
+        return target;
+    }
+
+    /**
+     * Saves the engine to a file in the background
+     * The engine is copied straight away, so it must be called between turns, from the thread that runs them
+     *
+     * @param engine the engine
+     * @param target the file to write, replaced in one step if it exists
+     * @return       future that completes with the copy that was written once it is on the disk (nothing else changes the
+     *               copy, so it can be read on any thread), or exceptionally if it couldn't be written
+     */
+    public CompletableFuture<SimulationEngine> save(SimulationEngine engine, File target) {
+        SimulationEngine copy = engine.copy();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(copy, target);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);  // the future completes exceptionally with this
+            }
+            return copy;
+        }, writer);
+    }
+
+    /**
+     * Writes an engine to a file, gzipped, through a temporary file that is renamed over the target once it is complete
+     * Blocks until the file is on the disk; the engine must not change while it is written
+     *
+     * @param engine the engine
+     * @param target the file to write
+     */
+    public static void write(SimulationEngine engine, File target) throws IOException {
+        File folder = target.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+
+        File temporary = File.createTempFile(target.getName(), ".tmp", folder);  // same folder, so the rename can't cross disks
+        try {
+            try (FileOutputStream file = new FileOutputStream(temporary)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(file, 1 << 16));
+                ObjectOutputStream out = new ObjectOutputStream(gzip);
+                out.writeObject(engine);
+                out.flush();
+                gzip.finish();
+                gzip.flush();
+                file.getFD().sync();  // on the disk before it replaces anything
+            }
+
+            try {
+                Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temporary.delete();  // only still there if something failed
+        }
+    }
+
+    /**
+     * Deletes the oldest checkpoints, keeping the newest few; runs on the writer thread
+     */
+    private void deleteOldCheckpoints() {
+        File[] checkpoints = directory.listFiles((folder, fileName) -> checkpointName.matcher(fileName).matches());
+        if (checkpoints == null || checkpoints.length <= keep) {
+            return;
+        }
+
+        // Newest first; the turn in the name breaks ties, since a quick run can write several in the same millisecond
+        Arrays.sort(checkpoints, Comparator.comparingLong(File::lastModified).thenComparing(File::getName).reversed());
+        for (int i = keep; i < checkpoints.length; i++) {
+            if (!checkpoints[i].delete()) {
+                LOGGER.warning("Could not delete old checkpoint " + checkpoints[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of checkpoints written so far
+     *
+     * @return checkpoints written
+     */
+    public long getCheckpointsWritten() {
+        return checkpointsWritten.get();
+    }
+
+    /**
+     * Returns the number of periodic checkpoints skipped because a newer one came due while they waited to be written
+     *
+     * @return checkpoints skipped
+     */
+    public long getCheckpointsSkipped() {
+        return checkpointsSkipped.get();
+    }
+
+    /**
+     * Waits for every queued save to be written, including a checkpoint waiting for the one before it, then stops the writer thread
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * Distance from every tile back to the colony, found with one BFS starting at the colony
+ * Ants carrying food all go to the same place, so instead of every ant doing its own BFS every turn
+ * they can all look up their next move here
+ *
+ * The move given for a tile is the lowest direction (up, right, down, left) that gets one step closer, which is exactly
+ * the first move <code>AntColonyEngine.foundFoodNextMove</code> finds, since its BFS explores directions in that order
+ * The field has to be rebuilt whenever an obstacle or the colony moves
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class ColonyDistanceField {
+    final public static int UNREACHABLE = -1;
+
+    final private int numRows;
+    final private int numColumns;
+    final private int[] distance;         // moves to the colony from each tile (row * numColumns + column), or UNREACHABLE
+    final private byte[] nextDirection;   // direction to move from each tile, or -1 if there is no move
+    final private int[] queue;            // reused for each BFS
+
+    /**
+     * Creates an empty field; call <code>rebuild</code> before using it
+     *
+     * @param numRows    number of rows in the simulation
+     * @param numColumns number of columns in the simulation
+     */
+    public ColonyDistanceField(int numRows, int numColumns) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.distance = new int[numRows * numColumns];
+        this.nextDirection = new byte[numRows * numColumns];
+        this.queue = new int[numRows * numColumns];
+    }
+
+    /**
+     * Finds the distance of every tile to the colony, then the best move from every tile
+     *
+     * @param terrainGrid  terrain of each tile; obstacles can't be walked through
+     * @param colonyRow    row of the colony
+     * @param colonyColumn column of the colony
+     */
+    public void rebuild(int[][] terrainGrid, int colonyRow, int colonyColumn) {
+        Arrays.fill(distance, UNREACHABLE);
+
+        // BFS outwards from the colony
+        int head = 0;
+        int tail = 0;
+        int colony = colonyRow * numColumns + colonyColumn;
+        distance[colony] = 0;
+        queue[tail++] = colony;
+
+        while (head < tail) {
+            int tile = queue[head++];
+            int row = tile / numColumns;
+            int column = tile % numColumns;
+
+            for (int i = 0; i < 4; i++) {
+                int targetRow = row + AntColonyEngine.DIRECTIONS[i][0];
+                int targetColumn = column + AntColonyEngine.DIRECTIONS[i][1];
+                if (targetRow < 0 || targetRow >= numRows || targetColumn < 0 || targetColumn >= numColumns) {
+                    continue;
+                }
+                int target = targetRow * numColumns + targetColumn;
+                if (distance[target] == UNREACHABLE && terrainGrid[targetRow][targetColumn] != AntColonyEngine.OBSTACLE) {
+                    distance[target] = distance[tile] + 1;
+                    queue[tail++] = target;
+                }
+            }
+        }
+
+        // Every reachable tile moves to the first neighbour that is one step closer
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                int tile = row * numColumns + column;
+                nextDirection[tile] = -1;
+                if (distance[tile] <= 0) {  // unreachable, or the colony itself
+                    continue;
+                }
+
+                for (int i = 0; i < 4; i++) {
+                    int targetRow = row + AntColonyEngine.DIRECTIONS[i][0];
+                    int targetColumn = column + AntColonyEngine.DIRECTIONS[i][1];
+                    if (targetRow >= 0 && targetRow < numRows && targetColumn >= 0 && targetColumn < numColumns
+                            && distance[targetRow * numColumns + targetColumn] == distance[tile] - 1) {
+                        nextDirection[tile] = (byte) i;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of moves from a tile to the colony
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       the distance, or <code>UNREACHABLE</code>
+     */
+    public int getDistance(int row, int column) {
+        return distance[row * numColumns + column];
+    }
+
+    /**
+     * Returns the direction an ant on a tile should move to get back to the colony
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       the direction, or -1 if the tile is the colony or the colony can't be reached
+     */
+    public int getNextDirection(int row, int column) {
+        return nextDirection[row * numColumns + column];
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Runs a candidate engine next to the reference <code>AntColonyEngine</code> from the same state and seed,
+ * and checks after every turn that the two are still exactly the same
+ * A faster engine should only be trusted once it has run a preset for a long time without diverging
+ *
+ * Each engine's state is boiled down to hashes of the pheromone, terrain and ant grids and of the ant positions
+ * Grid hashes add up a hash of every tile, so a row's hash only has to be worked out again if something in the row
+ * changed since the last turn, and most rows of the terrain and ant grids don't change from turn to turn
+ * When the hashes differ, the row hashes show which row, and only that row is searched for the tile
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class DifferentialVerifier {
+    // Parts of the state that are hashed
+    final public static int PHEROMONE = 0;
+    final public static int TERRAIN = 1;
+    final public static int ANTS = 2;
+    final public static int ANTPOSITIONS = 3;
+    final public static String[] PART_NAMES = {"pheromone grid", "terrain grid", "ant grid", "ant positions"};
+
+    final private SimulationEngine reference;
+    final private SimulationEngine candidate;
+    final private StateHash referenceHash;
+    final private StateHash candidateHash;
+
+    /**
+     * Where the reference and candidate first stopped matching
+     */
+    public static class Divergence {
+        final public int turn;
+        final public int part;     // one of PHEROMONE, TERRAIN, ANTS or ANTPOSITIONS
+        final public int row;      // for ant positions, the index of the first ant that differs instead
+        final public int column;   // -1 for ant positions
+        final public String referenceValue;
+        final public String candidateValue;
+
+        /**
+         * Creates a divergence report
+         *
+         * @param turn           turn the engines had just finished
+         * @param part           which part of the state differs
+         * @param row            row of the tile that differs, or index of the ant
+         * @param column         column of the tile that differs, or -1
+         * @param referenceValue what the reference engine has
+         * @param candidateValue what the candidate engine has
+         */
+        public Divergence(int turn, int part, int row, int column, String referenceValue, String candidateValue) {
+            this.turn = turn;
+            this.part = part;
+            this.row = row;
+            this.column = column;
+            this.referenceValue = referenceValue;
+            this.candidateValue = candidateValue;
+        }
+
+        /**
+         * Describes the divergence in one line
+         *
+         * @return the description
+         */
+        public String toString() {
+            String where = column >= 0 ? "row " + row + ", column " + column : "ant #" + row;
+            return "Turn " + turn + ": " + PART_NAMES[part] + " differs at " + where
+                    + " (reference " + referenceValue + ", candidate " + candidateValue + ")";
+        }
+    }
+
+    /**
+     * Hashes of one engine's state, updated a turn at a time
+     */
+    private static class StateHash {
+        final private int numRows;
+        final private int numColumns;
+        private int[][] current;   // flat copies of the three grids, this turn
+        private int[][] previous;  // and last turn, to find the rows that changed
+        final private long[][] rowHashes = new long[3][];
+        final private long[] hashes = new long[4];  // whole hash of each part
+        private boolean first = true;
+
+        /**
+         * Creates empty hashes for an engine's size
+         *
+         * @param numRows    number of rows
+         * @param numColumns number of columns
+         */
+        StateHash(int numRows, int numColumns) {
+            this.numRows = numRows;
+            this.numColumns = numColumns;
+            this.current = new int[3][numRows * numColumns];
+            this.previous = new int[3][numRows * numColumns];
+            for (int part = 0; part < 3; part++) {
+                rowHashes[part] = new long[numRows];
+            }
+        }
+
+        /**
+         * Brings the hashes up to date with the engine
+         *
+         * @param engine the engine to hash
+         */
+        void update(SimulationEngine engine) {
+            engine.copyGrids(current[PHEROMONE], current[TERRAIN], current[ANTS]);
+
+            for (int part = 0; part < 3; part++) {
+                int[] grid = current[part];
+                int[] last = previous[part];
+                for (int row = 0; row < numRows; row++) {
+                    int from = row * numColumns;
+                    int to = from + numColumns;
+                    if (!first && Arrays.equals(grid, from, to, last, from, to)) {
+                        continue;  // nothing in the row changed, so neither did its hash
+                    }
+
+                    long rowHash = 0;
+                    for (int index = from; index < to; index++) {
+                        rowHash += mix(index, grid[index]);
+                    }
+                    hashes[part] += rowHash - rowHashes[part][row];
+                    rowHashes[part][row] = rowHash;
+                }
+            }
+
+            // Adding up is the same in any order, so engines that number their ants differently still match
+            long antHash = 0;
+            for (int i = 0; i < engine.getNumAnts(); i++) {
+                antHash += mix(engine.getAntRow(i) * numColumns + engine.getAntColumn(i), engine.getAntFoundFood(i) ? 1 : 0);
+            }
+            hashes[ANTPOSITIONS] = antHash;
+
+            int[][] swap = previous;
+            previous = current;  // the grids just hashed are the ones to compare against next turn
+            current = swap;
+            first = false;
+        }
+
+        /**
+         * Returns the latest copy of a grid
+         *
+         * @param part PHEROMONE, TERRAIN or ANTS
+         * @return     the grid, one row after another
+         */
+        int[] getGrid(int part) {
+            return previous[part];
+        }
+    }
+
+    /**
+     * Creates a verifier for two engines that are in the same state
+     * Both engines are given the same seed before the first turn
+     *
+     * @param reference the reference engine
+     * @param candidate the engine being checked
+     * @param seed      seed for both engines
+     */
+    public DifferentialVerifier(SimulationEngine reference, SimulationEngine candidate, long seed) {
+        if (reference.getNumRows() != candidate.getNumRows() || reference.getNumColumns() != candidate.getNumColumns()) {
+            throw new IllegalArgumentException("Engines have different sizes");
+        }
+        this.reference = reference;
+        this.candidate = candidate;
+        this.referenceHash = new StateHash(reference.getNumRows(), reference.getNumColumns());
+        this.candidateHash = new StateHash(candidate.getNumRows(), candidate.getNumColumns());
+
+        reference.setSeed(seed);
+        candidate.setSeed(seed);
+    }
+
+    /**
+     * Mixes a tile's position and value into a well spread out 64 bit number (the finalizer of MurmurHash3)
+     *
+     * @param index position of the tile, row * numColumns + column
+     * @param value value on the tile
+     * @return      the hash
+     */
+    private static long mix(int index, int value) {
+        long hash = ((long) index << 32 | (value & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Compares the engines as they are now
+     *
+     * @return where they first differ, or null if they are the same
+     */
+    public Divergence compare() {
+        referenceHash.update(reference);
+        candidateHash.update(candidate);
+        int turn = reference.getTurn();
+
+        for (int part = 0; part < 3; part++) {
+            if (referenceHash.hashes[part] == candidateHash.hashes[part]) {
+                continue;
+            }
+            // Find the first row whose hash differs, then the tile in it
+            for (int row = 0; row < reference.getNumRows(); row++) {
+                if (referenceHash.rowHashes[part][row] != candidateHash.rowHashes[part][row]) {
+                    int[] expected = referenceHash.getGrid(part);
+                    int[] actual = candidateHash.getGrid(part);
+                    int from = row * reference.getNumColumns();
+                    int column = Arrays.mismatch(expected, from, from + reference.getNumColumns(), actual, from, from + reference.getNumColumns());
+                    return new Divergence(turn, part, row, column, String.valueOf(expected[from + column]), String.valueOf(actual[from + column]));
+                }
+            }
+        }
+
+        if (reference.getNumAnts() != candidate.getNumAnts()) {
+            return new Divergence(turn, ANTPOSITIONS, Math.min(reference.getNumAnts(), candidate.getNumAnts()), -1,
+                    reference.getNumAnts() + " ants", candidate.getNumAnts() + " ants");
+        }
+        if (referenceHash.hashes[ANTPOSITIONS] != candidateHash.hashes[ANTPOSITIONS]) {
+            for (int i = 0; i < reference.getNumAnts(); i++) {
+                String expected = describeAnt(reference, i);
+                String actual = describeAnt(candidate, i);
+                if (!expected.equals(actual)) {
+                    return new Divergence(turn, ANTPOSITIONS, i, -1, expected, actual);
+                }
+            }
+        }
+        if (reference.getTurn() != candidate.getTurn()) {
+            return new Divergence(turn, ANTPOSITIONS, -1, -1, "turn " + reference.getTurn(), "turn " + candidate.getTurn());
+        }
+        return null;
+    }
+
+    /**
+     * Describes where an ant is, for the divergence report
+     *
+     * @param engine the engine
+     * @param index  index of the ant
+     * @return       the description
+     */
+    private static String describeAnt(SimulationEngine engine, int index) {
+        return "(" + engine.getAntRow(index) + ", " + engine.getAntColumn(index) + (engine.getAntFoundFood(index) ? ", carrying food)" : ")");
+    }
+
+    /**
+     * Runs one turn on both engines and compares them
+     *
+     * @return where they first differ, or null if they are the same
+     */
+    public Divergence step() {
+        reference.update();
+        candidate.update();
+        return compare();
+    }
+
+    /**
+     * Runs turns on both engines until they differ
+     *
+     * @param turns number of turns to run
+     * @return      the first divergence, or null if they matched on every turn
+     */
+    public Divergence run(int turns) {
+        for (int i = 0; i < turns; i++) {
+            Divergence divergence = step();
+            if (divergence != null) {
+                return divergence;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns one number standing for the whole state of the reference engine at the last comparison
+     *
+     * @return the combined hash
+     */
+    public long getStateHash() {
+        long hash = 0;
+        for (int part = 0; part < 4; part++) {
+            hash = hash * 31 + referenceHash.hashes[part];
+        }
+        return hash;
+    }
+
+    /**
+     * Checks an engine against the reference on a preset from the command line
+     * Arguments: <code>&lt;preset&gt; [engine] [turns] [seed] [print every]</code>
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java DifferentialVerifier <preset> [reference|fast|population] [turns] [seed] [print every]");
+            return;
+        }
+
+        SimulationEngine preset = EngineFactory.load(new File(args[0]));
+        EngineFactory.Type type = args.length > 1 ? EngineFactory.parseType(args[1]) : EngineFactory.Type.FAST;
+        int turns = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        int printEvery = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+
+        SimulationEngine reference = EngineFactory.convert(preset, EngineFactory.Type.REFERENCE);
+        SimulationEngine candidate = EngineFactory.convert(preset, type);
+        DifferentialVerifier verifier = new DifferentialVerifier(reference, candidate, seed);
+
+        long start = System.nanoTime();
+        Divergence divergence = verifier.compare();
+        for (int turn = 1; turn <= turns && divergence == null; turn++) {
+            divergence = verifier.step();
+            if (divergence == null && (turn % printEvery == 0 || turn == turns)) {
+                System.out.printf("Turn %d: state hash %016x%n", turn, verifier.getStateHash());
+            }
+        }
+
+        if (divergence != null) {
+            System.out.println(divergence);
+            System.exit(1);
+        }
+        System.out.printf("%s matched the reference for %d turns (%.1f turns per second)%n",
+                candidate.getClass().getName(), turns, turns / ((System.nanoTime() - start) / 1e9));
+    }
+}
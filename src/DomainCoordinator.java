@@ -0,0 +1,438 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs one simulation split across several worker processes on the same computer, for grids too big for one JVM
+ * The grid is cut into strips of rows, and each strip is owned by a <code>DomainWorker</code>
+ * The coordinator starts the workers, passes the rows at the edge of each strip (the halo) and the ants that cross
+ * from one strip to another between them over local sockets, keeps every worker on the same turn,
+ * and adds up each worker's statistics into totals for the whole grid
+ *
+ * Returning ants all head for the same colony, so the path home from every tile is worked out once here
+ * (with a <code>ColonyDistanceField</code>) and each worker is given the part for its strip
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class DomainCoordinator implements AutoCloseable {
+    /**
+     * Connection to one worker and what the coordinator knows about its strip
+     */
+    private static class Worker {
+        Socket socket;
+        DataInputStream in;
+        DataOutputStream out;
+        Process process;  // null if the worker is a thread in this JVM
+
+        int startRow;
+        int endRow;
+        int[] topTerrain;       // edge rows of the strip, sent to the neighbours as their halo
+        int[] topPheromone;
+        int[] bottomTerrain;
+        int[] bottomPheromone;
+        ArrayList<int[]> arriving = new ArrayList<>();  // ants moving into the strip: {row, column, carrying food}
+    }
+
+    final private SimulationEngine engine;  // the starting state, and where the final state is put back together
+    final private Worker[] workers;
+    final private ServerSocket serverSocket;
+
+    private int turn;
+
+    // Totals for the whole grid after the last turn
+    private long numAnts;
+    private long antsCarryingFood;
+    private long totalFood;
+    private long foodDelivered;
+    private long pheromoneSum;
+    private int pheromoneMax;
+
+    /**
+     * Splits a simulation between workers and sends each its strip
+     *
+     * @param engine      the simulation to run
+     * @param workerCount number of workers (no more than the number of rows)
+     * @param seed        seed for the workers' random numbers; each worker adds its own index
+     * @param inProcess   if true, run the workers as threads in this JVM instead of separate processes
+     */
+    public DomainCoordinator(SimulationEngine engine, int workerCount, long seed, boolean inProcess) throws IOException {
+        this.engine = engine;
+        this.turn = engine.getTurn();
+        int numRows = engine.getNumRows();
+        int numColumns = engine.getNumColumns();
+        workerCount = Math.max(1, Math.min(workerCount, numRows));
+
+        this.serverSocket = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress());
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker();
+            workers[i].startRow = numRows * i / workerCount;
+            workers[i].endRow = numRows * (i + 1) / workerCount;
+            startWorker(workers[i], inProcess);
+        }
+
+        ColonyDistanceField colonyField = new ColonyDistanceField(numRows, numColumns);
+        int[][] terrain = new int[numRows][numColumns];
+        int[] flatTerrain = new int[numRows * numColumns];
+        int[] flatPheromone = new int[numRows * numColumns];
+        engine.copyGrids(flatPheromone, flatTerrain, null);
+        for (int row = 0; row < numRows; row++) {
+            System.arraycopy(flatTerrain, row * numColumns, terrain[row], 0, numColumns);
+        }
+        colonyField.rebuild(terrain, engine.getColonyRow(), engine.getColonyColumn());
+
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = workers[i];
+            DataOutputStream out = worker.out;
+            out.writeInt(DomainWorker.INIT);
+            out.writeInt(numRows);
+            out.writeInt(numColumns);
+            out.writeInt(worker.startRow);
+            out.writeInt(worker.endRow);
+            out.writeInt(engine.getColonyRow());
+            out.writeInt(engine.getColonyColumn());
+            out.writeInt(engine.getPheromoneStrength());
+            out.writeInt(engine.getPheromoneDecay());
+            out.writeInt(engine.getMinimumPheromone());
+            out.writeLong(seed + i);
+
+            byte[] directions = new byte[numColumns];
+            int[] pheromoneRow = new int[numColumns];
+            for (int row = worker.startRow; row < worker.endRow; row++) {
+                DomainWorker.writeRow(out, terrain[row]);
+                System.arraycopy(flatPheromone, row * numColumns, pheromoneRow, 0, numColumns);
+                DomainWorker.writeRow(out, pheromoneRow);
+                for (int column = 0; column < numColumns; column++) {
+                    directions[column] = (byte) colonyField.getNextDirection(row, column);
+                }
+                out.write(directions);
+            }
+
+            ArrayList<Integer> ants = new ArrayList<>();
+            for (int ant = 0; ant < engine.getNumAnts(); ant++) {
+                if (engine.getAntRow(ant) >= worker.startRow && engine.getAntRow(ant) < worker.endRow) {
+                    ants.add(ant);
+                }
+            }
+            out.writeInt(ants.size());
+            for (int ant : ants) {
+                out.writeInt(engine.getAntRow(ant));
+                out.writeInt(engine.getAntColumn(ant));
+                out.writeBoolean(engine.getAntFoundFood(ant));
+            }
+            out.flush();
+
+            worker.topTerrain = terrain[worker.startRow];
+            worker.bottomTerrain = terrain[worker.endRow - 1];
+            worker.topPheromone = Arrays.copyOfRange(flatPheromone, worker.startRow * numColumns, (worker.startRow + 1) * numColumns);
+            worker.bottomPheromone = Arrays.copyOfRange(flatPheromone, (worker.endRow - 1) * numColumns, worker.endRow * numColumns);
+        }
+    }
+
+    /**
+     * Starts a worker and waits for it to connect
+     *
+     * @param worker    the worker to start
+     * @param inProcess if true, start it as a thread instead of a process
+     */
+    private void startWorker(Worker worker, boolean inProcess) throws IOException {
+        int port = serverSocket.getLocalPort();
+        if (inProcess) {
+            Thread thread = new Thread(() -> {
+                try {
+                    DomainWorker.main(new String[]{String.valueOf(port)});
+                } catch (IOException e) {
+                    System.err.println("Worker failed: " + e.getMessage());
+                }
+            }, "domain-worker");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            worker.process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "DomainWorker", String.valueOf(port))
+                    .inheritIO()
+                    .start();
+        }
+
+        worker.socket = serverSocket.accept();
+        worker.socket.setTcpNoDelay(true);
+        worker.in = new DataInputStream(new BufferedInputStream(worker.socket.getInputStream(), 1 << 16));
+        worker.out = new DataOutputStream(new BufferedOutputStream(worker.socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Runs one turn on every worker, in lockstep
+     */
+    public void update() throws IOException {
+        // Step 1: every worker moves its ants, using its neighbours' edge rows from the end of the last turn
+        for (int i = 0; i < workers.length; i++) {
+            DataOutputStream out = workers[i].out;
+            out.writeInt(DomainWorker.MOVE);
+            if (i > 0) {
+                DomainWorker.writeRow(out, workers[i - 1].bottomTerrain);
+                DomainWorker.writeRow(out, workers[i - 1].bottomPheromone);
+            }
+            if (i < workers.length - 1) {
+                DomainWorker.writeRow(out, workers[i + 1].topTerrain);
+                DomainWorker.writeRow(out, workers[i + 1].topPheromone);
+            }
+            out.flush();
+        }
+        for (Worker worker : workers) {
+            int count = worker.in.readInt();
+            for (int ant = 0; ant < count; ant++) {
+                int[] leaving = {worker.in.readInt(), worker.in.readInt(), worker.in.readInt()};
+                workers[ownerOf(leaving[0])].arriving.add(leaving);
+            }
+        }
+
+        // Step 2: ants that crossed over arrive, then every worker reports its edge pheromones
+        for (Worker worker : workers) {
+            DataOutputStream out = worker.out;
+            out.writeInt(DomainWorker.ARRIVE);
+            out.writeInt(worker.arriving.size());
+            for (int[] ant : worker.arriving) {
+                out.writeInt(ant[0]);
+                out.writeInt(ant[1]);
+                out.writeInt(ant[2]);
+            }
+            worker.arriving.clear();
+            out.flush();
+        }
+        for (Worker worker : workers) {
+            DomainWorker.readRow(worker.in, worker.topPheromone);
+            DomainWorker.readRow(worker.in, worker.bottomPheromone);
+        }
+
+        // Step 3: pheromones spread across the edges, then the totals are added up
+        for (int i = 0; i < workers.length; i++) {
+            DataOutputStream out = workers[i].out;
+            out.writeInt(DomainWorker.DIFFUSE);
+            if (i > 0) {
+                DomainWorker.writeRow(out, workers[i - 1].bottomPheromone);
+            }
+            if (i < workers.length - 1) {
+                DomainWorker.writeRow(out, workers[i + 1].topPheromone);
+            }
+            out.flush();
+        }
+
+        numAnts = 0;
+        antsCarryingFood = 0;
+        totalFood = 0;
+        pheromoneSum = 0;
+        pheromoneMax = Integer.MIN_VALUE;
+        for (Worker worker : workers) {
+            DataInputStream in = worker.in;
+            numAnts += in.readInt();
+            antsCarryingFood += in.readInt();
+            totalFood += in.readLong();
+            foodDelivered += in.readInt();
+            pheromoneSum += in.readLong();
+            pheromoneMax = Math.max(pheromoneMax, in.readInt());
+
+            DomainWorker.readRow(in, worker.topTerrain);
+            DomainWorker.readRow(in, worker.topPheromone);
+            DomainWorker.readRow(in, worker.bottomTerrain);
+            DomainWorker.readRow(in, worker.bottomPheromone);
+        }
+
+        turn++;
+    }
+
+    /**
+     * Finds the worker that owns a row
+     *
+     * @param row the row
+     * @return    index of the worker
+     */
+    private int ownerOf(int row) {
+        for (int i = 0; i < workers.length; i++) {
+            if (row < workers[i].endRow) {
+                return i;
+            }
+        }
+        return workers.length - 1;
+    }
+
+    /**
+     * Collects every strip and ant from the workers and puts them back together into one engine
+     *
+     * @return an engine with the current state of the whole simulation
+     */
+    public AntColonyEngine gather() throws IOException {
+        int numRows = engine.getNumRows();
+        int numColumns = engine.getNumColumns();
+        int[][] terrain = new int[numRows][numColumns];
+        int[][] pheromone = new int[numRows][numColumns];
+        ArrayList<int[]> ants = new ArrayList<>();
+
+        for (Worker worker : workers) {
+            worker.out.writeInt(DomainWorker.GATHER);
+            worker.out.flush();
+        }
+        for (Worker worker : workers) {
+            for (int row = worker.startRow; row < worker.endRow; row++) {
+                DomainWorker.readRow(worker.in, terrain[row]);
+                DomainWorker.readRow(worker.in, pheromone[row]);
+            }
+            int count = worker.in.readInt();
+            for (int i = 0; i < count; i++) {
+                ants.add(new int[]{worker.in.readInt(), worker.in.readInt(), worker.in.readBoolean() ? 1 : 0});
+            }
+        }
+
+        int[] antRow = new int[ants.size()];
+        int[] antColumn = new int[ants.size()];
+        for (int i = 0; i < ants.size(); i++) {
+            antRow[i] = ants.get(i)[0];
+            antColumn[i] = ants.get(i)[1];
+        }
+
+        AntColonyEngine gathered = new AntColonyEngine(numRows, numColumns, engine.getColonyRow(), engine.getColonyColumn(), antRow, antColumn, terrain);
+        gathered.setTurn(turn);
+        gathered.setPheromoneStrength(engine.getPheromoneStrength());
+        gathered.setPheromoneDecay(engine.getPheromoneDecay());
+        gathered.setMinimumPheromone(engine.getMinimumPheromone());
+        for (int i = 0; i < ants.size(); i++) {
+            gathered.setAntFoundFood(i, ants.get(i)[2] == 1);
+        }
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                gathered.setPheromoneGrid(row, column, pheromone[row][column]);
+            }
+        }
+
+        return gathered;
+    }
+
+    /**
+     * Appends a one line summary of the whole simulation
+     *
+     * @param builder where to add the text
+     */
+    public void appendSummary(StringBuilder builder) {
+        builder.append("Turn ").append(turn)
+                .append(": ants ").append(numAnts)
+                .append(", returning ").append(antsCarryingFood)
+                .append(", food remaining ").append(totalFood)
+                .append(", delivered ").append(foodDelivered)
+                .append(", pheromone sum ").append(pheromoneSum)
+                .append(", highest pheromone ").append(pheromoneMax)
+                .append('\n');
+    }
+
+    /**
+     * Returns the current turn
+     *
+     * @return the turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the food brought back to the colony since the simulation was split up
+     *
+     * @return units of food delivered
+     */
+    public long getFoodDelivered() {
+        return foodDelivered;
+    }
+
+    /**
+     * Returns the number of ants on every strip after the last turn
+     *
+     * @return number of ants
+     */
+    public long getNumAnts() {
+        return numAnts;
+    }
+
+    /**
+     * Tells every worker to stop and waits for the processes to end
+     */
+    @Override
+    public void close() throws IOException {
+        for (Worker worker : workers) {
+            try {
+                worker.out.writeInt(DomainWorker.QUIT);
+                worker.out.flush();
+                worker.socket.close();
+                if (worker.process != null) {
+                    worker.process.waitFor();
+                }
+            } catch (IOException e) {
+                // the worker is already gone
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        serverSocket.close();
+    }
+
+    /**
+     * Runs a preset split across worker processes
+     * Arguments: <code>&lt;preset&gt; [workers] [turns] [seed] [print every] [--threads] [--save &lt;file&gt;]</code>
+     * <code>--threads</code> runs the workers inside this JVM, which is handy for testing;
+     * <code>--save</code> puts the strips back together at the end and saves them as a preset
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        ArrayList<String> positional = new ArrayList<>();
+        boolean inProcess = false;
+        String saveFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                inProcess = true;
+            } else if (args[i].equals("--save") && i + 1 < args.length) {
+                saveFile = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.isEmpty()) {
+            System.out.println("Usage: java DomainCoordinator <preset> [workers] [turns] [seed] [print every] [--threads] [--save <file>]");
+            return;
+        }
+
+        SimulationEngine preset = EngineFactory.load(new File(positional.get(0)));
+        int workerCount = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : Runtime.getRuntime().availableProcessors();
+        int turns = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 1000;
+        long seed = positional.size() > 3 ? Long.parseLong(positional.get(3)) : System.nanoTime();
+        int printEvery = positional.size() > 4 ? Integer.parseInt(positional.get(4)) : 100;
+
+        StringBuilder builder = new StringBuilder();
+        long start = System.nanoTime();
+        try (DomainCoordinator coordinator = new DomainCoordinator(preset, workerCount, seed, inProcess)) {
+            for (int i = 1; i <= turns; i++) {
+                coordinator.update();
+                if (i % printEvery == 0 || i == turns) {
+                    builder.setLength(0);
+                    coordinator.appendSummary(builder);
+                    System.out.print(builder);
+                }
+            }
+            System.out.printf("%.1f turns per second%n", turns / ((System.nanoTime() - start) / 1e9));
+
+            if (saveFile != null) {
+                try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(saveFile))) {
+                    out.writeObject(coordinator.gather());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * One worker process of a split up simulation, owning a strip of rows of the grid and the ants on it
+ * Started by <code>DomainCoordinator</code>, which it talks to over a local socket
+ *
+ * Besides its own rows the worker keeps a halo: a copy of the row just above and just below its strip,
+ * which belong to the neighbouring workers and are sent over by the coordinator every turn
+ * Each turn has three steps, and the coordinator waits for every worker to finish a step before starting the next:
+ *   MOVE    - receive the halo rows, move every ant; ants that leave the strip are sent back to be passed on
+ *   ARRIVE  - receive the ants that moved into the strip, then send the strip's edge pheromone rows
+ *   DIFFUSE - receive the neighbours' edge pheromone rows, spread and decay pheromones, then send statistics
+ *             and the new edge rows for the next turn's halo
+ *
+ * Ants behave the same as in <code>AntColonyEngine</code>, except that an ant moving onto another strip picks up
+ * food or drops it off at the colony when it arrives there, after the ants that started on that strip have moved
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class DomainWorker {
+    // Messages from the coordinator
+    final public static int INIT = 1;
+    final public static int MOVE = 2;
+    final public static int ARRIVE = 3;
+    final public static int DIFFUSE = 4;
+    final public static int GATHER = 5;
+    final public static int QUIT = 6;
+
+    final private DataInputStream in;
+    final private DataOutputStream out;
+
+    private int numRows;
+    private int numColumns;
+    private int startRow;   // first row of the strip
+    private int endRow;     // row after the last row of the strip
+    private int colonyRow;
+    private int colonyColumn;
+    private int pheromoneStrength;
+    private int pheromoneDecay;
+    private int minimumPheromone;
+    private Random random;
+
+    // Local row i is global row startRow + i - 1, so row 0 and the last row are the halo
+    private int[][] terrainGrid;
+    private int[][] pheromoneGrid;
+    private byte[][] homeDirection;  // direction back to the colony from each tile of the strip (no halo)
+
+    private int[] antRow = new int[16];
+    private int[] antColumn = new int[16];
+    private boolean[] antFoundFood = new boolean[16];
+    private int numAnts = 0;
+
+    // Ants leaving the strip this turn: row, column, 1 if carrying food
+    private int[] leaving = new int[48];
+    private int numLeaving = 0;
+
+    private int deliveredThisTurn = 0;
+
+    /**
+     * Connects to the coordinator
+     *
+     * @param socket the connection
+     */
+    public DomainWorker(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);  // messages are small and always answered, so don't wait to fill packets
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Answers the coordinator's messages until it says to quit
+     */
+    public void run() throws IOException {
+        while (true) {
+            int message = in.readInt();
+            if (message == INIT) {
+                init();
+            } else if (message == MOVE) {
+                readHalo(true);
+                moveAnts();
+                writeLeaving();
+            } else if (message == ARRIVE) {
+                receiveAnts();
+                writeRow(out, pheromoneGrid[1]);
+                writeRow(out, pheromoneGrid[endRow - startRow]);
+            } else if (message == DIFFUSE) {
+                readHalo(false);
+                diffusePheromones();
+                writeStatistics();
+            } else if (message == GATHER) {
+                writeState();
+            } else if (message == QUIT) {
+                return;
+            } else {
+                throw new IOException("Unknown message " + message);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the strip, its ants and the settings
+     */
+    private void init() throws IOException {
+        numRows = in.readInt();
+        numColumns = in.readInt();
+        startRow = in.readInt();
+        endRow = in.readInt();
+        colonyRow = in.readInt();
+        colonyColumn = in.readInt();
+        pheromoneStrength = in.readInt();
+        pheromoneDecay = in.readInt();
+        minimumPheromone = in.readInt();
+        random = new Random(in.readLong());
+
+        int stripRows = endRow - startRow;
+        terrainGrid = new int[stripRows + 2][numColumns];
+        pheromoneGrid = new int[stripRows + 2][numColumns];
+        homeDirection = new byte[stripRows][numColumns];
+        for (int row = 1; row <= stripRows; row++) {
+            readRow(in, terrainGrid[row]);
+            readRow(in, pheromoneGrid[row]);
+            in.readFully(homeDirection[row - 1]);
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addAnt(in.readInt(), in.readInt(), in.readBoolean());
+        }
+    }
+
+    /**
+     * Reads the rows above and below the strip, if there are any
+     *
+     * @param withTerrain true to read terrain and pheromone rows, false for just pheromone rows
+     */
+    private void readHalo(boolean withTerrain) throws IOException {
+        int bottom = endRow - startRow + 1;
+        if (startRow > 0) {
+            if (withTerrain) {
+                readRow(in, terrainGrid[0]);
+            }
+            readRow(in, pheromoneGrid[0]);
+        }
+        if (endRow < numRows) {
+            if (withTerrain) {
+                readRow(in, terrainGrid[bottom]);
+            }
+            readRow(in, pheromoneGrid[bottom]);
+        }
+    }
+
+    /**
+     * Checks if an ant can be on a tile, which has to be in the strip or its halo
+     *
+     * @param row    global row
+     * @param column column
+     * @return       whether the tile is inside the grid and not an obstacle
+     */
+    private boolean isValidTileForAnt(int row, int column) {
+        return row >= 0 && row < numRows && column >= 0 && column < numColumns
+                && terrainGrid[row - startRow + 1][column] != AntColonyEngine.OBSTACLE;
+    }
+
+    /**
+     * Moves every ant one tile, the same way <code>AntColonyEngine.moveAnts</code> does
+     * Ants that end up outside the strip are removed and listed in <code>leaving</code>
+     */
+    private void moveAnts() {
+        int[] possibleMoves = {AntColonyEngine.UP, AntColonyEngine.RIGHT, AntColonyEngine.DOWN, AntColonyEngine.LEFT};
+        int[] weights = new int[4];
+        numLeaving = 0;
+        deliveredThisTurn = 0;
+
+        int kept = 0;  // ants that stay in the strip are packed to the front of the arrays
+        for (int i = 0; i < numAnts; i++) {
+            int row = antRow[i];
+            int column = antColumn[i];
+            int direction = -1;
+
+            if (!antFoundFood[i]) {
+                int legalMoves = 0;
+                for (int d = 0; d < 4 && direction < 0; d++) {
+                    int targetRow = row + AntColonyEngine.DIRECTIONS[d][0];
+                    int targetColumn = column + AntColonyEngine.DIRECTIONS[d][1];
+                    weights[d] = 0;
+                    if (!isValidTileForAnt(targetRow, targetColumn)) {
+                        continue;
+                    }
+                    legalMoves++;
+                    if (terrainGrid[targetRow - startRow + 1][targetColumn] > 0) {
+                        direction = d;  // food next door
+                    } else {
+                        // {row, row} instead of {row, column}, to match AntColonyEngine
+                        weights[d] = pheromoneGrid[targetRow - startRow + 1][targetRow];
+                    }
+                }
+                if (direction < 0 && legalMoves > 0) {
+                    direction = Utils.weightedRandomChoice(possibleMoves, weights, random);
+                }
+            } else {
+                direction = homeDirection[row - startRow][column];
+            }
+
+            if (direction >= 0) {
+                row += AntColonyEngine.DIRECTIONS[direction][0];
+                column += AntColonyEngine.DIRECTIONS[direction][1];
+            }
+
+            if (row < startRow || row >= endRow) {
+                if (numLeaving + 3 > leaving.length) {
+                    leaving = Arrays.copyOf(leaving, leaving.length * 2);
+                }
+                leaving[numLeaving++] = row;
+                leaving[numLeaving++] = column;
+                leaving[numLeaving++] = antFoundFood[i] ? 1 : 0;
+                continue;
+            }
+
+            antRow[kept] = row;
+            antColumn[kept] = column;
+            antFoundFood[kept] = antFoundFood[i];
+            arrive(kept);
+            kept++;
+        }
+        numAnts = kept;
+    }
+
+    /**
+     * Picks up food or drops it off for an ant that just got to its tile
+     *
+     * @param index index of the ant
+     */
+    private void arrive(int index) {
+        int localRow = antRow[index] - startRow + 1;
+        int column = antColumn[index];
+
+        if (!antFoundFood[index] && terrainGrid[localRow][column] > 0) {
+            antFoundFood[index] = true;
+            terrainGrid[localRow][column]--;
+            pheromoneGrid[localRow][column] += pheromoneStrength;
+        } else if (antFoundFood[index] && antRow[index] == colonyRow && column == colonyColumn) {
+            antFoundFood[index] = false;
+            deliveredThisTurn++;
+        }
+    }
+
+    /**
+     * Adds an ant to the end of the arrays
+     *
+     * @param row       row of the ant
+     * @param column    column of the ant
+     * @param foundFood if the ant is carrying food
+     */
+    private void addAnt(int row, int column, boolean foundFood) {
+        if (numAnts == antRow.length) {
+            antRow = Arrays.copyOf(antRow, numAnts * 2);
+            antColumn = Arrays.copyOf(antColumn, numAnts * 2);
+            antFoundFood = Arrays.copyOf(antFoundFood, numAnts * 2);
+        }
+        antRow[numAnts] = row;
+        antColumn[numAnts] = column;
+        antFoundFood[numAnts] = foundFood;
+        numAnts++;
+    }
+
+    /**
+     * Sends the ants that left the strip
+     */
+    private void writeLeaving() throws IOException {
+        out.writeInt(numLeaving / 3);
+        for (int i = 0; i < numLeaving; i++) {
+            out.writeInt(leaving[i]);
+        }
+    }
+
+    /**
+     * Reads the ants that moved into the strip and lets them pick up or drop off food
+     */
+    private void receiveAnts() throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addAnt(in.readInt(), in.readInt(), in.readInt() == 1);
+            arrive(numAnts - 1);
+        }
+    }
+
+    /**
+     * Spreads and decays the pheromones of the strip, the same way <code>AntColonyEngine.diffusePheromones</code> does
+     */
+    private void diffusePheromones() {
+        int stripRows = endRow - startRow;
+        int[][] newPheromoneGrid = new int[stripRows + 2][];
+        newPheromoneGrid[0] = pheromoneGrid[0];
+        newPheromoneGrid[stripRows + 1] = pheromoneGrid[stripRows + 1];
+
+        for (int localRow = 1; localRow <= stripRows; localRow++) {
+            int row = startRow + localRow - 1;
+            newPheromoneGrid[localRow] = new int[numColumns];
+
+            for (int column = 0; column < numColumns; column++) {
+                long sum = pheromoneGrid[localRow][column];
+                int counter = 1;
+                for (int d = 0; d < 4; d++) {
+                    if (isValidTileForAnt(row + AntColonyEngine.DIRECTIONS[d][0], column + AntColonyEngine.DIRECTIONS[d][1])) {
+                        sum += pheromoneGrid[localRow + AntColonyEngine.DIRECTIONS[d][0]][column + AntColonyEngine.DIRECTIONS[d][1]];
+                        counter++;
+                    }
+                }
+
+                int value = (int) (sum / counter) - pheromoneDecay;
+                newPheromoneGrid[localRow][column] = Math.max(value, minimumPheromone);
+            }
+        }
+
+        pheromoneGrid = newPheromoneGrid;
+    }
+
+    /**
+     * Sends the strip's totals for this turn, then its edge rows for the neighbours' halos
+     */
+    private void writeStatistics() throws IOException {
+        int stripRows = endRow - startRow;
+        long food = 0;
+        long pheromoneSum = 0;
+        int pheromoneMax = Integer.MIN_VALUE;
+        for (int localRow = 1; localRow <= stripRows; localRow++) {
+            for (int column = 0; column < numColumns; column++) {
+                if (terrainGrid[localRow][column] > 0) {
+                    food += terrainGrid[localRow][column];
+                }
+                pheromoneSum += pheromoneGrid[localRow][column];
+                pheromoneMax = Math.max(pheromoneMax, pheromoneGrid[localRow][column]);
+            }
+        }
+        int carrying = 0;
+        for (int i = 0; i < numAnts; i++) {
+            if (antFoundFood[i]) {
+                carrying++;
+            }
+        }
+
+        out.writeInt(numAnts);
+        out.writeInt(carrying);
+        out.writeLong(food);
+        out.writeInt(deliveredThisTurn);
+        out.writeLong(pheromoneSum);
+        out.writeInt(pheromoneMax);
+
+        writeRow(out, terrainGrid[1]);
+        writeRow(out, pheromoneGrid[1]);
+        writeRow(out, terrainGrid[stripRows]);
+        writeRow(out, pheromoneGrid[stripRows]);
+    }
+
+    /**
+     * Sends every row of the strip and every ant, so the coordinator can put the whole simulation back together
+     */
+    private void writeState() throws IOException {
+        for (int localRow = 1; localRow <= endRow - startRow; localRow++) {
+            writeRow(out, terrainGrid[localRow]);
+            writeRow(out, pheromoneGrid[localRow]);
+        }
+        out.writeInt(numAnts);
+        for (int i = 0; i < numAnts; i++) {
+            out.writeInt(antRow[i]);
+            out.writeInt(antColumn[i]);
+            out.writeBoolean(antFoundFood[i]);
+        }
+    }
+
+    /**
+     * Writes a row of integers in one go
+     *
+     * @param out where to write
+     * @param row the row
+     */
+    static void writeRow(DataOutputStream out, int[] row) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(row.length * 4);
+        bytes.asIntBuffer().put(row);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Reads a row of integers written by <code>writeRow</code>
+     *
+     * @param in  where to read from
+     * @param row where to put the integers; its length is the number read
+     */
+    static void readRow(DataInputStream in, int[] row) throws IOException {
+        byte[] bytes = new byte[row.length * 4];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(row);
+    }
+
+    /**
+     * Starts a worker process
+     * Arguments: <code>&lt;coordinator port&gt;</code>
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            new DomainWorker(socket).run();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Edits waiting to be made to an engine, so they never happen in the middle of a turn
+ * Any thread can add edits (the GUI's buttons, a script, a network handler), and the engine applies them all,
+ * in the order they were added, at the start of its next turn
+ * The queue is a <code>ConcurrentLinkedQueue</code>, so adding an edit never waits on a lock or on a turn that is running
+ *
+ * Each edit is run in full before the next one and before the turn starts, so a turn only ever sees an edit completely
+ * done or not done at all. An edit that throws is reported and skipped; it should check what it needs before changing
+ * anything, since whatever it changed before throwing stays changed
+ * Edits read the engine when they run, not when they are added, so an edit that refers to an ant by its index should
+ * check that the ant is still the one it meant, since turns can renumber ants
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class EditQueue {
+    final private static Logger LOGGER = Logger.getLogger(EditQueue.class.getName());
+
+    /**
+     * A change to make to the engine between turns
+     */
+    public interface Edit {
+        /**
+         * Makes the change
+         *
+         * @param engine the engine to change
+         */
+        void apply(SimulationEngine engine);
+    }
+
+    /**
+     * An edit and the future to complete once it is done, if anyone asked for one
+     */
+    private static class Pending {
+        final private Edit edit;
+        final private CompletableFuture<Void> done;  // null if nobody is waiting
+
+        /**
+         * Creates a pending edit
+         *
+         * @param edit the edit
+         * @param done future to complete when it has been applied, or null
+         */
+        Pending(Edit edit, CompletableFuture<Void> done) {
+            this.edit = edit;
+            this.done = done;
+        }
+    }
+
+    final private SimulationEngine engine;
+    final private ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates an empty queue for an engine
+     *
+     * @param engine the engine the edits are applied to
+     */
+    public EditQueue(SimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Adds an edit without waiting for it, from any thread
+     *
+     * @param edit the edit
+     */
+    public void post(Edit edit) {
+        pending.add(new Pending(edit, null));
+    }
+
+    /**
+     * Adds an edit from any thread, and returns a future that completes once it has been applied
+     * The future completes on the thread running the turns; it completes exceptionally if the edit threw
+     *
+     * @param edit the edit
+     * @return     future that completes when the edit is done
+     */
+    public CompletableFuture<Void> submit(Edit edit) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        pending.add(new Pending(edit, done));
+        return done;
+    }
+
+    /**
+     * Applies every waiting edit, in the order they were added
+     * Only the thread running the engine's turns should call this; engines call it themselves at the start of every turn
+     *
+     * @return number of edits applied
+     */
+    public int drain() {
+        int applied = 0;
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            try {
+                next.edit.apply(engine);
+                if (next.done != null) {
+                    next.done.complete(null);
+                }
+            } catch (RuntimeException e) {
+                if (next.done != null) {
+                    next.done.completeExceptionally(e);
+                } else {
+                    LOGGER.log(Level.WARNING, "Edit failed and was skipped", e);
+                }
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Checks if there are edits waiting
+     *
+     * @return whether the queue is empty
+     */
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+}
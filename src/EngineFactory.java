@@ -0,0 +1,182 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Creates and loads engines, so the text and GUI simulations never have to name an engine class
+ * The kind of engine is picked with the <code>ant.engine</code> system property (for example <code>-Dant.engine=fast</code>);
+ * without it new simulations use the reference engine and presets keep whatever engine they were saved with
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class EngineFactory {
+    /**
+     * The kinds of engine that can be picked
+     */
+    public enum Type {
+        REFERENCE,   // AntColonyEngine, one ant at a time
+        FAST,        // FastAntColonyEngine, same moves as the reference but with shared paths and parallel diffusion
+        POPULATION   // PopulationEngine, ant counts per tile instead of single ants
+    }
+
+    final public static String PROPERTY = "ant.engine";
+
+    /**
+     * Returns the kind of engine picked with the system property
+     *
+     * @return the picked type, or null if none was picked
+     */
+    public static Type getSelectedType() {
+        String name = System.getProperty(PROPERTY);
+        return name == null || name.isEmpty() ? null : parseType(name);
+    }
+
+    /**
+     * Turns the name of an engine (any case) into its type
+     *
+     * @param name name of the engine, like "fast"
+     * @return     the type
+     */
+    public static Type parseType(String name) {
+        try {
+            return Type.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown engine \"" + name + "\", expected reference, fast or population");
+        }
+    }
+
+    /**
+     * Returns which kind of engine an engine is
+     *
+     * @param engine the engine
+     * @return       its type
+     */
+    public static Type typeOf(SimulationEngine engine) {
+        if (engine instanceof PopulationEngine) {
+            return Type.POPULATION;
+        } else if (engine instanceof FastAntColonyEngine) {  // checked first since it is also an AntColonyEngine
+            return Type.FAST;
+        }
+        return Type.REFERENCE;
+    }
+
+    /**
+     * Creates a new simulation from the very beginning, using the picked kind of engine (the reference engine if none)
+     *
+     * @param numRows      number of rows in the simulation
+     * @param numColumns   number of columns in the simulation
+     * @param colonyRow    row of the colony
+     * @param colonyColumn column of the colony
+     * @param antRow       <code>antRow[i]</code> contains the row of the ith ant
+     * @param antColumn    same thing
+     * @param terrainGrid  contains the terrain of each tile
+     * @return             the new engine
+     */
+    public static SimulationEngine create(int numRows, int numColumns, int colonyRow, int colonyColumn, int[] antRow, int[] antColumn, int[][] terrainGrid) {
+        Type type = getSelectedType();
+        if (type == Type.FAST) {
+            return new FastAntColonyEngine(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
+        }
+
+        AntColonyEngine engine = new AntColonyEngine(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
+        return type == Type.POPULATION ? new PopulationEngine(engine) : engine;
+    }
+
+    /**
+     * Moves a simulation to another kind of engine
+     * The source is left alone; if it is already the right kind, a copy of it is returned
+     *
+     * @param source the simulation to move
+     * @param type   the kind of engine to move it to
+     * @return       a new engine in the same state
+     */
+    public static SimulationEngine convert(SimulationEngine source, Type type) {
+        if (typeOf(source) == type) {
+            return source.copy();
+        }
+
+        switch (type) {
+            case FAST:
+                return new FastAntColonyEngine(source);
+            case POPULATION:
+                return new PopulationEngine(source);
+            default:
+                return new AntColonyEngine(source);
+        }
+    }
+
+    /**
+     * Reads a simulation saved as a preset, plain or gzipped
+     * If a kind of engine was picked, the simulation is moved to it, otherwise it keeps the engine it was saved with
+     *
+     * @param file the preset file
+     * @return     the engine stored in the file
+     */
+    public static SimulationEngine load(File file) throws IOException, ClassNotFoundException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Reads a simulation saved as a preset from a stream, plain or gzipped, for example one that reports how much has been read
+     * If a kind of engine was picked, the simulation is moved to it, otherwise it keeps the engine it was saved with
+     * The stream is left open
+     *
+     * @param in the stream
+     * @return   the engine stored in the stream
+     */
+    public static SimulationEngine load(InputStream in) throws IOException, ClassNotFoundException {
+        return toSelectedType(read(in));
+    }
+
+    /**
+     * Reads a simulation saved as a preset, plain or gzipped, in the engine it was saved with whatever kind was picked
+     *
+     * @param file the preset file
+     * @return     the engine stored in the file
+     */
+    public static SimulationEngine read(File file) throws IOException, ClassNotFoundException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a simulation saved as a preset from a stream, plain or gzipped, in the engine it was saved with
+     * The stream is left open
+     *
+     * @param in the stream
+     * @return   the engine stored in the stream
+     */
+    public static SimulationEngine read(InputStream in) throws IOException, ClassNotFoundException {
+        // Autosaves are gzipped, presets saved before them aren't; gzip files always start with 1f 8b
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        boolean gzipped = buffered.read() == 0x1F && buffered.read() == 0x8B;
+        buffered.reset();
+
+        InputStream data = gzipped ? new GZIPInputStream(buffered, 1 << 16) : buffered;
+        return (SimulationEngine) new ObjectInputStream(data).readObject();
+    }
+
+    /**
+     * Moves a simulation to the kind of engine that was picked, if one was
+     *
+     * @param engine the simulation
+     * @return       the same engine if no kind was picked or it is already that kind, otherwise a new one in the same state
+     */
+    public static SimulationEngine toSelectedType(SimulationEngine engine) {
+        Type type = getSelectedType();
+        if (type != null && type != typeOf(engine)) {
+            engine = convert(engine, type);
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,230 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how long each phase of <code>AntColonyEngine.update()</code> takes, plus counters of what happened
+ * An engine only records into this if one is attached with <code>setMetrics</code>, otherwise the timing code is skipped
+ * Registered with the platform MBean server so it can be watched live from JConsole or VisualVM
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+    final public static String OBJECT_NAME = "AntColonySimulation:type=EngineMetrics";
+
+    private static EngineMetrics shared;  // the registered instance, shared by every engine the GUI creates
+
+    final private TimingHistogram turnHistogram = new TimingHistogram();
+    final private TimingHistogram searchingMoveHistogram = new TimingHistogram();
+    final private TimingHistogram returningMoveHistogram = new TimingHistogram();  // does not include path lookup
+    final private TimingHistogram pathLookupHistogram = new TimingHistogram();
+    final private TimingHistogram diffusionHistogram = new TimingHistogram();
+
+    final private AtomicLong turns = new AtomicLong();
+    final private AtomicLong antsMoved = new AtomicLong();
+    final private AtomicLong foodPickedUp = new AtomicLong();
+    final private AtomicLong foodDelivered = new AtomicLong();
+
+    // Timings of the most recent turn, for live displays
+    private volatile long lastTurnNanos;
+    private volatile long lastMoveNanos;  // searching and returning moves, not counting path lookup
+    private volatile long lastPathLookupNanos;
+    private volatile long lastDiffusionNanos;
+
+    /**
+     * Returns the metrics registered with the platform MBean server, registering them the first time
+     *
+     * @return the shared metrics
+     */
+    public static synchronized EngineMetrics getShared() {
+        if (shared == null) {
+            shared = new EngineMetrics();
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(shared, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // Still usable without JMX, it just can't be watched from outside
+                System.err.println("Could not register engine metrics: " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Attaches the shared metrics to an engine if the <code>ant.metrics</code> system property is true
+     * Run with <code>-Dant.metrics=true</code> to turn instrumentation on
+     *
+     * @param engine the engine to instrument
+     */
+    public static void attachIfEnabled(SimulationEngine engine) {
+        if (Boolean.getBoolean("ant.metrics")) {
+            engine.setMetrics(getShared());
+        }
+    }
+
+    /**
+     * Records one turn of the simulation
+     *
+     * @param turnNanos          time for the whole turn
+     * @param searchingMoveNanos time spent moving ants that are searching for food
+     * @param returningMoveNanos time spent moving ants that are returning, not counting path lookup
+     * @param pathLookupNanos    time spent finding the path back to the colony
+     * @param diffusionNanos     time spent on pheromone diffusion and decay
+     * @param moved              number of ants that changed tiles
+     * @param pickedUp           units of food picked up
+     * @param delivered          units of food brought back to the colony
+     */
+    public void recordTurn(long turnNanos, long searchingMoveNanos, long returningMoveNanos, long pathLookupNanos, long diffusionNanos,
+                           int moved, int pickedUp, int delivered) {
+        turnHistogram.record(turnNanos);
+        searchingMoveHistogram.record(searchingMoveNanos);
+        returningMoveHistogram.record(returningMoveNanos);
+        pathLookupHistogram.record(pathLookupNanos);
+        diffusionHistogram.record(diffusionNanos);
+
+        lastTurnNanos = turnNanos;
+        lastMoveNanos = searchingMoveNanos + returningMoveNanos;
+        lastPathLookupNanos = pathLookupNanos;
+        lastDiffusionNanos = diffusionNanos;
+
+        turns.incrementAndGet();
+        antsMoved.addAndGet(moved);
+        foodPickedUp.addAndGet(pickedUp);
+        foodDelivered.addAndGet(delivered);
+    }
+
+    @Override
+    public long getTurns() {
+        return turns.get();
+    }
+
+    @Override
+    public long getAntsMoved() {
+        return antsMoved.get();
+    }
+
+    @Override
+    public long getFoodPickedUp() {
+        return foodPickedUp.get();
+    }
+
+    @Override
+    public long getFoodDelivered() {
+        return foodDelivered.get();
+    }
+
+    @Override
+    public double getMeanTurnNanos() {
+        return turnHistogram.getMeanNanos();
+    }
+
+    @Override
+    public double getMeanSearchingMoveNanos() {
+        return searchingMoveHistogram.getMeanNanos();
+    }
+
+    @Override
+    public double getMeanReturningMoveNanos() {
+        return returningMoveHistogram.getMeanNanos();
+    }
+
+    @Override
+    public double getMeanPathLookupNanos() {
+        return pathLookupHistogram.getMeanNanos();
+    }
+
+    @Override
+    public double getMeanDiffusionNanos() {
+        return diffusionHistogram.getMeanNanos();
+    }
+
+    @Override
+    public long getMaxTurnNanos() {
+        return turnHistogram.getMaxNanos();
+    }
+
+    @Override
+    public long getTurnNanosP50() {
+        return turnHistogram.getPercentileNanos(50);
+    }
+
+    @Override
+    public long getTurnNanosP99() {
+        return turnHistogram.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getDiffusionNanosP99() {
+        return diffusionHistogram.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getLastTurnNanos() {
+        return lastTurnNanos;
+    }
+
+    @Override
+    public long getLastMoveNanos() {
+        return lastMoveNanos;
+    }
+
+    @Override
+    public long getLastPathLookupNanos() {
+        return lastPathLookupNanos;
+    }
+
+    @Override
+    public long getLastDiffusionNanos() {
+        return lastDiffusionNanos;
+    }
+
+    @Override
+    public long[] getTurnHistogram() {
+        return turnHistogram.getBuckets();
+    }
+
+    @Override
+    public long[] getSearchingMoveHistogram() {
+        return searchingMoveHistogram.getBuckets();
+    }
+
+    @Override
+    public long[] getReturningMoveHistogram() {
+        return returningMoveHistogram.getBuckets();
+    }
+
+    @Override
+    public long[] getPathLookupHistogram() {
+        return pathLookupHistogram.getBuckets();
+    }
+
+    @Override
+    public long[] getDiffusionHistogram() {
+        return diffusionHistogram.getBuckets();
+    }
+
+    @Override
+    public void reset() {
+        turnHistogram.reset();
+        searchingMoveHistogram.reset();
+        returningMoveHistogram.reset();
+        pathLookupHistogram.reset();
+        diffusionHistogram.reset();
+
+        turns.set(0);
+        antsMoved.set(0);
+        foodPickedUp.set(0);
+        foodDelivered.set(0);
+
+        // Otherwise the live displays keep showing the turn before the reset until the next one finishes
+        lastTurnNanos = 0;
+        lastMoveNanos = 0;
+        lastPathLookupNanos = 0;
+        lastDiffusionNanos = 0;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Management interface for <code>EngineMetrics</code>, which is what JConsole and VisualVM see
+ * Times are in nanoseconds and are totals per turn unless the name says otherwise
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public interface EngineMetricsMBean {
+    long getTurns();
+    long getAntsMoved();
+    long getFoodPickedUp();
+    long getFoodDelivered();
+
+    double getMeanTurnNanos();
+    double getMeanSearchingMoveNanos();
+    double getMeanReturningMoveNanos();
+    double getMeanPathLookupNanos();
+    double getMeanDiffusionNanos();
+
+    long getMaxTurnNanos();
+    long getTurnNanosP50();
+    long getTurnNanosP99();
+    long getDiffusionNanosP99();
+
+    long getLastTurnNanos();
+    long getLastMoveNanos();
+    long getLastPathLookupNanos();
+    long getLastDiffusionNanos();
+
+    long[] getTurnHistogram();
+    long[] getSearchingMoveHistogram();
+    long[] getReturningMoveHistogram();
+    long[] getPathLookupHistogram();
+    long[] getDiffusionHistogram();
+
+    void reset();
+}
@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering one phase of a turn (ant movement, or pheromone diffusion)
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+@Name("antcolony.Phase")
+@Label("Simulation Phase")
+@Category({"Ant Colony Simulation"})
+@Description("One phase of a turn of the ant colony simulation")
+@Threshold("10 ms")
+public class EnginePhaseEvent extends Event {
+    final public static String MOVEMENT = "movement";
+    final public static String DIFFUSION = "diffusion";
+
+    @Label("Turn")
+    int turn;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Ants")
+    int numAnts;
+
+    @Label("Tiles Processed")
+    @Description("Ants moved for the movement phase, tiles updated for the diffusion phase")
+    int tilesProcessed;
+}
@@ -0,0 +1,332 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only copy of an engine at the end of a turn, for readers on other threads
+ * Snapshots come from a <code>SnapshotBuffer</code>: <code>acquire()</code> pins the latest one, and closing it unpins it
+ * While pinned, a snapshot never changes, so a reader can scan the whole grid and see a single turn without any locks
+ * Once every reader has closed it, the buffer reuses it for a later turn, so a snapshot must not be read after closing
+ *
+ * The getters are named like the engine's, so reading code can move from the engine to a snapshot easily
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class EngineSnapshot implements AutoCloseable {
+    final private SnapshotBuffer owner;
+    final AtomicInteger pins = new AtomicInteger();  // readers holding this snapshot, it is only reused at 0
+
+    final private int numRows;
+    final private int numColumns;
+    final private int[] pheromone;  // one row after another, like copyGrids
+    final private int[] terrain;
+    final private int[] ants;
+
+    private long version;  // counts up by one for every snapshot the buffer publishes
+    private int turn;
+    private int colonyRow;
+    private int colonyColumn;
+
+    // Ants, only copied if the buffer was asked to
+    private int numAnts;
+    private int[] antRow;
+    private int[] antColumn;
+    private boolean[] antFoundFood;
+
+    // Totals and settings
+    private int totalFood;
+    private int antsCarryingFood;
+    private int foodDeliveredThisTurn;
+    private long pheromoneSum;
+    private int pheromoneMax;
+    private int pheromoneStrength;
+    private int pheromoneDecay;
+    private int minimumPheromone;
+
+    /**
+     * Creates an empty snapshot for a grid size
+     *
+     * @param owner      the buffer the snapshot belongs to
+     * @param numRows    number of rows
+     * @param numColumns number of columns
+     */
+    EngineSnapshot(SnapshotBuffer owner, int numRows, int numColumns) {
+        this.owner = owner;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.pheromone = new int[numRows * numColumns];
+        this.terrain = new int[numRows * numColumns];
+        this.ants = new int[numRows * numColumns];
+    }
+
+    /**
+     * Copies an engine into this snapshot; only called by the buffer, while no reader holds it
+     *
+     * @param engine      the engine, between turns
+     * @param version     version number of the new snapshot
+     * @param includeAnts whether to copy every ant as well as the grids
+     */
+    void fill(SimulationEngine engine, long version, boolean includeAnts) {
+        this.version = version;
+        this.turn = engine.getTurn();
+        this.colonyRow = engine.getColonyRow();
+        this.colonyColumn = engine.getColonyColumn();
+        engine.copyGrids(pheromone, terrain, ants);
+
+        this.numAnts = engine.getNumAnts();
+        if (includeAnts) {
+            if (antRow == null || antRow.length < numAnts) {
+                antRow = new int[numAnts];
+                antColumn = new int[numAnts];
+                antFoundFood = new boolean[numAnts];
+            }
+            for (int i = 0; i < numAnts; i++) {
+                antRow[i] = engine.getAntRow(i);
+                antColumn[i] = engine.getAntColumn(i);
+                antFoundFood[i] = engine.getAntFoundFood(i);
+            }
+        }
+
+        this.totalFood = engine.getTotalFood();
+        this.antsCarryingFood = engine.getNumAntsCarryingFood();
+        this.foodDeliveredThisTurn = engine.getFoodDeliveredThisTurn();
+        this.pheromoneSum = engine.getPheromoneSum();
+        this.pheromoneMax = engine.getPheromoneMax();
+        this.pheromoneStrength = engine.getPheromoneStrength();
+        this.pheromoneDecay = engine.getPheromoneDecay();
+        this.minimumPheromone = engine.getMinimumPheromone();
+    }
+
+    /**
+     * Unpins the snapshot, so the buffer can reuse it; call exactly once per <code>acquire()</code>
+     */
+    public void close() {
+        owner.release(this);
+    }
+
+    /**
+     * Returns the version of the snapshot; a higher version is a later snapshot
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the turn the engine was on when the snapshot was taken
+     *
+     * @return the turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the row of the colony
+     *
+     * @return the row
+     */
+    public int getColonyRow() {
+        return colonyRow;
+    }
+
+    /**
+     * Returns the column of the colony
+     *
+     * @return the column
+     */
+    public int getColonyColumn() {
+        return colonyColumn;
+    }
+
+    /**
+     * Returns the pheromone level of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       pheromone level
+     */
+    public int getPheromoneGrid(int row, int column) {
+        return pheromone[row * numColumns + column];
+    }
+
+    /**
+     * Returns the terrain of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       food on the tile, or <code>EMPTY</code>, <code>OBSTACLE</code> or <code>COLONY</code>
+     */
+    public int getTerrainGrid(int row, int column) {
+        return terrain[row * numColumns + column];
+    }
+
+    /**
+     * Returns the number of ants on a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       number of ants
+     */
+    public int getAntGrid(int row, int column) {
+        return ants[row * numColumns + column];
+    }
+
+    /**
+     * Copies the grids into flat arrays, one row after another, the same as the engine's <code>copyGrids</code>
+     *
+     * @param pheromone destination for the pheromone grid (or null to skip)
+     * @param terrain   destination for the terrain grid (or null to skip)
+     * @param ants      destination for the ant grid (or null to skip)
+     */
+    public void copyGrids(int[] pheromone, int[] terrain, int[] ants) {
+        if (pheromone != null) {
+            System.arraycopy(this.pheromone, 0, pheromone, 0, this.pheromone.length);
+        }
+        if (terrain != null) {
+            System.arraycopy(this.terrain, 0, terrain, 0, this.terrain.length);
+        }
+        if (ants != null) {
+            System.arraycopy(this.ants, 0, ants, 0, this.ants.length);
+        }
+    }
+
+    /**
+     * Returns the number of ants
+     *
+     * @return number of ants
+     */
+    public int getNumAnts() {
+        return numAnts;
+    }
+
+    /**
+     * Checks if the snapshot has every ant's position, or only the ant grid
+     *
+     * @return whether <code>getAntRow</code> and the like can be used
+     */
+    public boolean hasAnts() {
+        return antRow != null;
+    }
+
+    /**
+     * Returns the row of an ant
+     *
+     * @param index index of the ant
+     * @return      the row
+     */
+    public int getAntRow(int index) {
+        return antRow[index];
+    }
+
+    /**
+     * Returns the column of an ant
+     *
+     * @param index index of the ant
+     * @return      the column
+     */
+    public int getAntColumn(int index) {
+        return antColumn[index];
+    }
+
+    /**
+     * Returns whether an ant was carrying food back to the colony
+     *
+     * @param index index of the ant
+     * @return      whether it had found food
+     */
+    public boolean getAntFoundFood(int index) {
+        return antFoundFood[index];
+    }
+
+    /**
+     * Returns the food left on every tile, added up
+     *
+     * @return total amount of food on the grid
+     */
+    public int getTotalFood() {
+        return totalFood;
+    }
+
+    /**
+     * Returns the number of ants that were carrying food back to the colony
+     *
+     * @return number of ants that had found food
+     */
+    public int getNumAntsCarryingFood() {
+        return antsCarryingFood;
+    }
+
+    /**
+     * Returns the food brought back to the colony during the turn
+     *
+     * @return units of food delivered
+     */
+    public int getFoodDeliveredThisTurn() {
+        return foodDeliveredThisTurn;
+    }
+
+    /**
+     * Returns the pheromone level of every tile, added up
+     *
+     * @return sum of the pheromone grid
+     */
+    public long getPheromoneSum() {
+        return pheromoneSum;
+    }
+
+    /**
+     * Returns the highest pheromone level on any tile
+     *
+     * @return the highest pheromone level
+     */
+    public int getPheromoneMax() {
+        return pheromoneMax;
+    }
+
+    /**
+     * Returns the pheromones an ant leaves behind when it picks up food
+     *
+     * @return pheromone strength
+     */
+    public int getPheromoneStrength() {
+        return pheromoneStrength;
+    }
+
+    /**
+     * Returns how much pheromones decay per turn
+     *
+     * @return pheromone decay
+     */
+    public int getPheromoneDecay() {
+        return pheromoneDecay;
+    }
+
+    /**
+     * Returns the minimum pheromone level on any tile
+     *
+     * @return minimum pheromone level
+     */
+    public int getMinimumPheromone() {
+        return minimumPheromone;
+    }
+}
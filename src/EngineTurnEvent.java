@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering one call to <code>AntColonyEngine.update()</code>
+ * Only turns slower than the threshold are recorded, so it is cheap to leave on in long recordings
+ * The threshold can be changed in the recording settings, e.g. <code>antcolony.Turn#threshold=0 ms</code> to record every turn
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+@Name("antcolony.Turn")
+@Label("Simulation Turn")
+@Category({"Ant Colony Simulation"})
+@Description("One turn of the ant colony simulation")
+@Threshold("20 ms")
+public class EngineTurnEvent extends Event {
+    @Label("Turn")
+    int turn;
+
+    @Label("Ants")
+    int numAnts;
+
+    @Label("Ants Carrying Food")
+    int antsCarryingFood;
+
+    @Label("Ants Moved")
+    int antsMoved;
+
+    @Label("Tiles")
+    int tiles;
+}
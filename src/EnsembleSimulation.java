@@ -0,0 +1,250 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many seeded copies (replicas) of the same simulation and combines their results
+ * Ant movement is random, so a single run says little; the ensemble reports the mean, a 95% confidence interval
+ * and quantiles of each metric for every turn
+ * Replicas are run in parallel batches, and no more batches are started once the confidence interval of every metric
+ * on the last turn is narrow enough
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class EnsembleSimulation {
+    // Metrics recorded every turn
+    final public static int FOOD_REMAINING = 0;
+    final public static int ANTS_CARRYING_FOOD = 1;
+    final public static int FOOD_DELIVERED = 2;
+    final public static String[] METRIC_NAMES = {"Food remaining", "Ants carrying food", "Food delivered"};
+
+    final public static double[] QUANTILES = {0.05, 0.5, 0.95};
+    final public static double Z_95 = 1.96;  // z-score for a 95% confidence interval
+
+    final private SimulationEngine baseEngine;  // never updated, every replica starts from a copy of it
+    final private int turns;
+    final private int batchSize;    // number of replicas run at the same time
+    final private int maxReplicas;  // hard limit on the number of replicas, bounds the CPU cost
+    final private double tolerance; // stop once every confidence half width is below tolerance * |mean|
+    final private long seed;
+
+    // statistics[turn][metric] combines the value of the metric on that turn across all replicas
+    final private RunningStatistics[][] statistics;
+    final private QuantileSketch[][][] quantileSketches;  // [turn][metric][quantile]
+
+    private int replicasRun = 0;
+
+    /**
+     * Creates a new ensemble
+     *
+     * @param baseEngine  starting state of every replica
+     * @param turns       number of turns each replica runs for
+     * @param batchSize   number of replicas run in parallel before checking the confidence intervals
+     * @param maxReplicas maximum number of replicas
+     * @param tolerance   relative half width of the confidence interval needed to stop early
+     * @param seed        seed used to generate each replica's seed
+     */
+    public EnsembleSimulation(SimulationEngine baseEngine, int turns, int batchSize, int maxReplicas, double tolerance, long seed) {
+        this.baseEngine = baseEngine;
+        this.turns = turns;
+        this.batchSize = batchSize;
+        this.maxReplicas = maxReplicas;
+        this.tolerance = tolerance;
+        this.seed = seed;
+
+        this.statistics = new RunningStatistics[turns + 1][METRIC_NAMES.length];  // turn 0 is the starting state
+        this.quantileSketches = new QuantileSketch[turns + 1][METRIC_NAMES.length][QUANTILES.length];
+        for (int turn = 0; turn <= turns; turn++) {
+            for (int metric = 0; metric < METRIC_NAMES.length; metric++) {
+                statistics[turn][metric] = new RunningStatistics();
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    quantileSketches[turn][metric][i] = new QuantileSketch(QUANTILES[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs batches of replicas until the confidence intervals are narrow enough or the replica limit is reached
+     *
+     * @return number of replicas that were run
+     */
+    public int run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(batchSize, Runtime.getRuntime().availableProcessors()));
+        Random seedGenerator = new Random(seed);  // replica seeds come from here, so the whole ensemble is reproducible
+
+        try {
+            while (replicasRun < maxReplicas) {
+                List<Callable<double[][]>> batch = new ArrayList<>();
+                for (int i = 0; i < batchSize && replicasRun + i < maxReplicas; i++) {
+                    final long replicaSeed = seedGenerator.nextLong();
+                    batch.add(() -> runReplica(replicaSeed));
+                }
+
+                // Added in replica order, not the order the threads finish in, since the quantile sketches depend on the order
+                for (Future<double[][]> result : pool.invokeAll(batch)) {
+                    double[][] values;
+                    try {
+                        values = result.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Replica failed", e.getCause());
+                    }
+                    for (int turn = 0; turn <= turns; turn++) {
+                        record(turn, values[turn]);
+                    }
+                }
+                replicasRun += batch.size();
+
+                if (hasConverged()) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return replicasRun;
+    }
+
+    /**
+     * Runs one replica from the base state
+     * Only the metrics of each turn are kept, not the replica's grids
+     *
+     * @param replicaSeed seed for this replica's ant movement
+     * @return            <code>values[turn][metric]</code>, the value of each metric on each turn
+     */
+    private double[][] runReplica(long replicaSeed) {
+        SimulationEngine replica = baseEngine.copy();
+        replica.setSeed(replicaSeed);
+
+        double[][] values = new double[turns + 1][METRIC_NAMES.length];
+
+        for (int turn = 0; turn <= turns; turn++) {
+            if (turn > 0) {
+                replica.update();
+            }
+
+            values[turn][FOOD_REMAINING] = replica.getTotalFood();
+            values[turn][ANTS_CARRYING_FOOD] = replica.getNumAntsCarryingFood();
+            values[turn][FOOD_DELIVERED] = replica.getFoodDeliveredTotal();  // the copy starts counting from 0
+        }
+        return values;
+    }
+
+    /**
+     * Adds one replica's values for a turn to the statistics
+     * Only called from the thread running the ensemble, once the replica's batch has finished
+     *
+     * @param turn   the turn the values are from
+     * @param values value of each metric
+     */
+    private void record(int turn, double[] values) {
+        for (int metric = 0; metric < values.length; metric++) {
+            statistics[turn][metric].add(values[metric]);
+            for (QuantileSketch sketch : quantileSketches[turn][metric]) {
+                sketch.add(values[metric]);
+            }
+        }
+    }
+
+    /**
+     * Checks if the confidence interval of every metric on the final turn is within the tolerance
+     *
+     * @return whether enough replicas have been run
+     */
+    public boolean hasConverged() {
+        for (RunningStatistics metric : statistics[turns]) {
+            if (metric.getConfidenceHalfWidth(Z_95) > tolerance * Math.max(Math.abs(metric.getMean()), 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the combined statistics of a metric on a turn
+     *
+     * @param turn   the turn
+     * @param metric one of the metric constants, like <code>FOOD_REMAINING</code>
+     * @return       the statistics
+     */
+    public RunningStatistics getStatistics(int turn, int metric) {
+        return statistics[turn][metric];
+    }
+
+    /**
+     * Returns the estimated quantile of a metric on a turn
+     *
+     * @param turn          the turn
+     * @param metric        one of the metric constants
+     * @param quantileIndex index into <code>QUANTILES</code>
+     * @return              the estimate
+     */
+    public double getQuantile(int turn, int metric, int quantileIndex) {
+        return quantileSketches[turn][metric][quantileIndex].getEstimate();
+    }
+
+    /**
+     * Returns the number of replicas that have finished
+     *
+     * @return number of replicas
+     */
+    public int getReplicasRun() {
+        return replicasRun;
+    }
+
+    /**
+     * Prints a table of every metric, one line per printed turn
+     *
+     * @param every print every this many turns (the last turn is always printed)
+     */
+    public void printSummary(int every) {
+        System.out.println("Replicas: " + replicasRun + (hasConverged() ? " (converged)" : " (replica limit reached)"));
+
+        for (int metric = 0; metric < METRIC_NAMES.length; metric++) {
+            System.out.println(METRIC_NAMES[metric] + ":");
+            System.out.printf("%6s %12s %12s %10s %10s %10s%n", "turn", "mean", "95% CI +/-", "p05", "median", "p95");
+
+            for (int turn = 0; turn <= turns; turn++) {
+                if (turn % every == 0 || turn == turns) {
+                    RunningStatistics stats = statistics[turn][metric];
+                    System.out.printf("%6d %12.3f %12.3f %10.1f %10.1f %10.1f%n", turn, stats.getMean(), stats.getConfidenceHalfWidth(Z_95),
+                            getQuantile(turn, metric, 0), getQuantile(turn, metric, 1), getQuantile(turn, metric, 2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an ensemble from the command line
+     * Arguments: preset file, then optionally turns, batch size, max replicas, tolerance, seed and print interval
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: EnsembleSimulation <preset file> [turns] [batch size] [max replicas] [tolerance] [seed] [print every]");
+            return;
+        }
+
+        SimulationEngine engine = EngineFactory.load(new File(args[0]));
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxReplicas = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        double tolerance = args.length > 4 ? Double.parseDouble(args[4]) : 0.05;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+        int every = args.length > 6 ? Integer.parseInt(args[6]) : 10;
+
+        EnsembleSimulation ensemble = new EnsembleSimulation(engine, turns, batchSize, maxReplicas, tolerance, seed);
+        ensemble.run();
+        ensemble.printSummary(every);
+    }
+}
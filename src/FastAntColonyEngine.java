@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+
+/**
+ * Engine that gives exactly the same turns as <code>AntColonyEngine</code> (same seed, same moves), but faster on big grids
+ * - Ants carrying food can look up their next move in a <code>ColonyDistanceField</code> instead of each doing a BFS
+ *   every turn; the field is only rebuilt after the terrain or the colony is edited
+ * - Pheromone diffusion can be split into tiles that are done on several threads at once
+ *
+ * Which of these pays off depends on the size of the grid and the number of ants, so <code>StrategyTuner</code>s time
+ * the options for the first few turns after the engine is created or loaded and keep the fastest,
+ * timing them again if the number of ants or the active area changes tenfold
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class FastAntColonyEngine extends AntColonyEngine {
+    private static final long serialVersionUID = 1L;
+
+    final private static int TILESIZE = 128;
+    final private static int TRIALTURNS = 3;  // turns each option is timed for
+    final private static int PATHFLOOR = 64;         // ants carrying food, below this the numbers are too small to matter
+    final private static int DIFFUSIONFLOOR = 4096;  // ants or active tiles
+
+    // Options for finding the way back to the colony
+    final private static int BFS = 0;
+    final private static int DISTANCEFIELD = 1;
+
+    private transient ColonyDistanceField colonyField;  // null until needed, and again after every edit that could change it
+
+    // Created the first time they are needed, so they start over whenever the engine is loaded or copied
+    private transient StrategyTuner pathTuner;
+    private transient StrategyTuner diffusionTuner;
+    private transient TiledDiffusion[] diffusions;  // one per diffusion option, null for the plain loop
+    private transient TiledDiffusion turnDiffusion;
+    private transient int pathStrategy = DISTANCEFIELD;
+
+    /**
+     * Constructor to initialize another instance of the simulation
+     * Simulation always starts from the very beginning
+     *
+     * @param numRows      number of rows in the simulation
+     * @param numColumns   number of columns in the simulation
+     * @param antRow       <code>antRow[i]</code> contains the row of the ith ant
+     * @param antColumn    same thing
+     * @param terrainGrid  contains the terrain of each tile
+     */
+    FastAntColonyEngine(int numRows, int numColumns, int colonyRow, int colonyColumn, int[] antRow, int[] antColumn, int[][] terrainGrid) {
+        super(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
+    }
+
+    /**
+     * Constructor that copies the current state of any engine
+     *
+     * @param source the engine to copy
+     */
+    public FastAntColonyEngine(SimulationEngine source) {
+        super(source);
+    }
+
+    /**
+     * Creates a deep copy of the simulation, so the copy can be updated without affecting this engine
+     *
+     * @return the copy
+     */
+    public FastAntColonyEngine copy() {
+        return new FastAntColonyEngine(this);
+    }
+
+    /**
+     * Finds the best move for ants that found food and are returning to the colony
+     * Same move as the BFS in <code>AntColonyEngine</code>; ants the field has no move for (on the colony, stuck,
+     * or standing on an obstacle) are left to the BFS so they behave exactly the same
+     *
+     * @param antIndex index of the ant to generate move for
+     * @return         coordinates {row, column} of where the ant should move to
+     */
+    public int[] foundFoodNextMove(int antIndex) {
+        if (pathStrategy == BFS) {
+            return super.foundFoodNextMove(antIndex);
+        }
+        if (colonyField == null) {
+            colonyField = new ColonyDistanceField(getNumRows(), getNumColumns());
+            int[][] terrain = new int[getNumRows()][getNumColumns()];
+            for (int row = 0; row < getNumRows(); row++) {
+                for (int column = 0; column < getNumColumns(); column++) {
+                    terrain[row][column] = getTerrainGrid(row, column);
+                }
+            }
+            colonyField.rebuild(terrain, getColonyRow(), getColonyColumn());
+        }
+
+        int row = getAntRow(antIndex);
+        int column = getAntColumn(antIndex);
+        int direction = colonyField.getNextDirection(row, column);
+        if (direction == -1 || getTerrainGrid(row, column) == OBSTACLE) {
+            return super.foundFoodNextMove(antIndex);
+        }
+        return convertToMove(row, column, direction);
+    }
+
+    /**
+     * Moves the ants, finding the way back to the colony with whichever option has been the fastest
+     * Turns with no ants carrying food say nothing about the options, so they aren't timed
+     */
+    protected void moveAnts() {
+        if (pathTuner == null) {
+            pathTuner = new StrategyTuner("Path to colony (" + getNumRows() + "x" + getNumColumns() + ")",
+                    new String[]{"BFS per ant", "distance field"}, TRIALTURNS, PATHFLOOR);
+        }
+
+        int carrying = getNumAntsCarryingFood();
+        if (carrying == 0) {
+            pathStrategy = pathTuner.getChosen() == BFS ? BFS : DISTANCEFIELD;
+            super.moveAnts();
+            return;
+        }
+
+        pathStrategy = pathTuner.choose(carrying, getActiveTileCount());
+        long start = System.nanoTime();
+        super.moveAnts();
+        pathTuner.record(pathStrategy, System.nanoTime() - start);
+    }
+
+    /**
+     * Spreads and decays the pheromones with whichever option has been the fastest
+     */
+    protected void diffusePheromones() {
+        if (diffusionTuner == null) {
+            createDiffusionOptions();
+        }
+
+        int option = diffusionTuner.choose(getNumAnts(), getActiveTileCount());
+        turnDiffusion = diffusions[option];
+        long start = System.nanoTime();
+        super.diffusePheromones();
+        diffusionTuner.record(option, System.nanoTime() - start);
+    }
+
+    /**
+     * Works out the ways diffusion can be done on this grid: the plain loop, tiles on one thread,
+     * and tiles on 2, 4, 8... threads up to the number of processors
+     * A grid that fits in one tile has nothing to split up, so only the plain loop is offered
+     */
+    private void createDiffusionOptions() {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<TiledDiffusion> options = new ArrayList<>();
+        names.add("plain loop");
+        options.add(null);
+
+        if (getNumRows() > TILESIZE || getNumColumns() > TILESIZE) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads < processors; threads *= 2) {
+                names.add("tiles on " + threads + (threads == 1 ? " thread" : " threads"));
+                options.add(new TiledDiffusion(TILESIZE, threads));
+            }
+            names.add("tiles on " + processors + (processors == 1 ? " thread" : " threads"));
+            options.add(new TiledDiffusion(TILESIZE, processors));
+        }
+
+        diffusions = options.toArray(new TiledDiffusion[0]);
+        diffusionTuner = new StrategyTuner("Diffusion (" + getNumRows() + "x" + getNumColumns() + ")", names.toArray(new String[0]), TRIALTURNS,
+                DIFFUSIONFLOOR);
+    }
+
+    /**
+     * Returns the tiled diffusion picked for this turn
+     *
+     * @return the tiled diffusion, or null for the plain loop
+     */
+    protected TiledDiffusion getTurnDiffusion() {
+        return turnDiffusion;
+    }
+
+    /**
+     * Creates a tiled diffusion that splits its tiles between all the processors
+     *
+     * @return a new tiled diffusion
+     */
+    protected TiledDiffusion createTiledDiffusion() {
+        return new TiledDiffusion(TILESIZE, true);
+    }
+
+    // Edits that can change the paths back to the colony
+
+    /**
+     * Rebuilds the neighbour masks after obstacles were added or removed, and forgets the distance field
+     * Called once per edit, however many tiles it changed
+     *
+     * @param fromRow    top row of the rectangle that changed
+     * @param fromColumn left column of the rectangle
+     * @param toRow      bottom row of the rectangle
+     * @param toColumn   right column of the rectangle
+     */
+    protected void obstaclesChanged(int fromRow, int fromColumn, int toRow, int toColumn) {
+        colonyField = null;
+        super.obstaclesChanged(fromRow, fromColumn, toRow, toColumn);
+    }
+
+    /**
+     * Moves the colony to another row, and forgets the distance field
+     *
+     * @param colonyRow the new row
+     */
+    public void setColonyRow(int colonyRow) {
+        colonyField = null;
+        super.setColonyRow(colonyRow);
+    }
+
+    /**
+     * Moves the colony to another column, and forgets the distance field
+     *
+     * @param colonyColumn the new column
+     */
+    public void setColonyColumn(int colonyColumn) {
+        colonyField = null;
+        super.setColonyColumn(colonyColumn);
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Index of every tile that has food on it, so food can be found without scanning the whole terrain grid
+ * The grid is split into square buckets, and each bucket keeps a list of its food tiles
+ * Finding the nearest food only looks at the buckets around the tile, in rings, until nothing closer is possible,
+ * so on a big map with a little food it is much faster than a scan
+ *
+ * Distances are measured in ant moves (up, down, left and right), ignoring obstacles
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class FoodIndex {
+    final private int numRows;
+    final private int numColumns;
+    final private int bucketSize;         // rows and columns of tiles in each bucket
+    final private int bucketRows;
+    final private int bucketColumns;
+
+    final private int[][] bucketTiles;    // tiles (row * numColumns + column) with food in each bucket, in no order
+    final private int[] bucketCounts;     // number of tiles in use at the start of each bucketTiles array
+    final private int[] slotOfTile;       // where each tile is in its bucket's array, or -1 if it has no food
+    private int size = 0;
+
+    /**
+     * Creates an empty index
+     *
+     * @param numRows    number of rows in the simulation
+     * @param numColumns number of columns in the simulation
+     * @param bucketSize rows and columns of tiles in each bucket
+     */
+    public FoodIndex(int numRows, int numColumns, int bucketSize) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.bucketSize = bucketSize;
+        this.bucketRows = (numRows + bucketSize - 1) / bucketSize;
+        this.bucketColumns = (numColumns + bucketSize - 1) / bucketSize;
+
+        this.bucketTiles = new int[bucketRows * bucketColumns][];
+        this.bucketCounts = new int[bucketRows * bucketColumns];
+        this.slotOfTile = new int[numRows * numColumns];
+        Arrays.fill(slotOfTile, -1);
+    }
+
+    /**
+     * Creates an index with 16 by 16 buckets
+     *
+     * @param numRows    number of rows in the simulation
+     * @param numColumns number of columns in the simulation
+     */
+    public FoodIndex(int numRows, int numColumns) {
+        this(numRows, numColumns, 16);
+    }
+
+    /**
+     * Marks a tile as having food; does nothing if it already does
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     */
+    public void add(int row, int column) {
+        int tile = row * numColumns + column;
+        if (slotOfTile[tile] >= 0) {
+            return;
+        }
+
+        int bucket = bucketOf(row, column);
+        if (bucketTiles[bucket] == null) {
+            bucketTiles[bucket] = new int[4];
+        } else if (bucketCounts[bucket] == bucketTiles[bucket].length) {
+            bucketTiles[bucket] = Arrays.copyOf(bucketTiles[bucket], bucketCounts[bucket] * 2);
+        }
+
+        bucketTiles[bucket][bucketCounts[bucket]] = tile;
+        slotOfTile[tile] = bucketCounts[bucket];
+        bucketCounts[bucket]++;
+        size++;
+    }
+
+    /**
+     * Marks a tile as having no food; does nothing if it already has none
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     */
+    public void remove(int row, int column) {
+        int tile = row * numColumns + column;
+        int slot = slotOfTile[tile];
+        if (slot < 0) {
+            return;
+        }
+
+        // Move the last tile of the bucket into the gap, since the order doesn't matter
+        int bucket = bucketOf(row, column);
+        int last = bucketTiles[bucket][bucketCounts[bucket] - 1];
+        bucketTiles[bucket][slot] = last;
+        slotOfTile[last] = slot;
+        slotOfTile[tile] = -1;
+        bucketCounts[bucket]--;
+        size--;
+    }
+
+    /**
+     * Returns whether a tile has food
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       if the tile is in the index
+     */
+    public boolean contains(int row, int column) {
+        return slotOfTile[row * numColumns + column] >= 0;
+    }
+
+    /**
+     * Returns the number of tiles with food
+     *
+     * @return number of tiles in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the food tile closest to a tile
+     * Ties are broken by whichever is found first
+     *
+     * @param row    row to search from
+     * @param column column to search from
+     * @return       {row, column} of the nearest food, or null if there is no food
+     */
+    public int[] findNearest(int row, int column) {
+        int bestTile = -1;
+        int bestDistance = Integer.MAX_VALUE;
+
+        int centerBucketRow = row / bucketSize;
+        int centerBucketColumn = column / bucketSize;
+        int maxRing = Math.max(Math.max(centerBucketRow, bucketRows - 1 - centerBucketRow),
+                Math.max(centerBucketColumn, bucketColumns - 1 - centerBucketColumn));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every tile in this ring is at least this far away, so stop once something closer has been found
+            if (ring > 0 && (ring - 1) * bucketSize + 1 > bestDistance) {
+                break;
+            }
+
+            for (int bucketRow = centerBucketRow - ring; bucketRow <= centerBucketRow + ring; bucketRow++) {
+                if (bucketRow < 0 || bucketRow >= bucketRows) {
+                    continue;
+                }
+                // Only the edge of the ring: every column on the top and bottom rows, the two ends on the others
+                boolean edgeRow = bucketRow == centerBucketRow - ring || bucketRow == centerBucketRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+
+                for (int bucketColumn = centerBucketColumn - ring; bucketColumn <= centerBucketColumn + ring; bucketColumn += step) {
+                    if (bucketColumn < 0 || bucketColumn >= bucketColumns) {
+                        continue;
+                    }
+
+                    int bucket = bucketRow * bucketColumns + bucketColumn;
+                    for (int i = 0; i < bucketCounts[bucket]; i++) {
+                        int tile = bucketTiles[bucket][i];
+                        int distance = Math.abs(tile / numColumns - row) + Math.abs(tile % numColumns - column);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            bestTile = tile;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (bestTile < 0) {
+            return null;
+        }
+        return new int[]{bestTile / numColumns, bestTile % numColumns};
+    }
+
+    /**
+     * Returns the number of moves from a tile to the nearest food, ignoring obstacles
+     *
+     * @param row    row to search from
+     * @param column column to search from
+     * @return       the distance, or -1 if there is no food
+     */
+    public int findNearestDistance(int row, int column) {
+        int[] nearest = findNearest(row, column);
+        if (nearest == null) {
+            return -1;
+        }
+        return Math.abs(nearest[0] - row) + Math.abs(nearest[1] - column);
+    }
+
+    /**
+     * Counts the food tiles inside a rectangle (corners included)
+     * Buckets completely inside the rectangle are counted without looking at their tiles
+     *
+     * @param row1    row of one corner
+     * @param column1 column of one corner
+     * @param row2    row of the opposite corner
+     * @param column2 column of the opposite corner
+     * @return        number of food tiles in the rectangle
+     */
+    public int countInRange(int row1, int column1, int row2, int column2) {
+        int top = Math.max(0, Math.min(row1, row2));
+        int bottom = Math.min(numRows - 1, Math.max(row1, row2));
+        int left = Math.max(0, Math.min(column1, column2));
+        int right = Math.min(numColumns - 1, Math.max(column1, column2));
+        int count = 0;
+
+        for (int bucketRow = top / bucketSize; bucketRow <= bottom / bucketSize; bucketRow++) {
+            for (int bucketColumn = left / bucketSize; bucketColumn <= right / bucketSize; bucketColumn++) {
+                int bucket = bucketRow * bucketColumns + bucketColumn;
+                boolean inside = bucketRow * bucketSize >= top && (bucketRow + 1) * bucketSize - 1 <= bottom
+                        && bucketColumn * bucketSize >= left && (bucketColumn + 1) * bucketSize - 1 <= right;
+
+                if (inside) {
+                    count += bucketCounts[bucket];
+                } else {
+                    for (int i = 0; i < bucketCounts[bucket]; i++) {
+                        if (inRange(bucketTiles[bucket][i], top, left, bottom, right)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the food tiles inside a rectangle (corners included)
+     *
+     * @param row1    row of one corner
+     * @param column1 column of one corner
+     * @param row2    row of the opposite corner
+     * @param column2 column of the opposite corner
+     * @return        {row, column} of each food tile in the rectangle, in no particular order
+     */
+    public ArrayList<int[]> findInRange(int row1, int column1, int row2, int column2) {
+        int top = Math.max(0, Math.min(row1, row2));
+        int bottom = Math.min(numRows - 1, Math.max(row1, row2));
+        int left = Math.max(0, Math.min(column1, column2));
+        int right = Math.min(numColumns - 1, Math.max(column1, column2));
+        ArrayList<int[]> tiles = new ArrayList<>();
+
+        for (int bucketRow = top / bucketSize; bucketRow <= bottom / bucketSize; bucketRow++) {
+            for (int bucketColumn = left / bucketSize; bucketColumn <= right / bucketSize; bucketColumn++) {
+                int bucket = bucketRow * bucketColumns + bucketColumn;
+                for (int i = 0; i < bucketCounts[bucket]; i++) {
+                    int tile = bucketTiles[bucket][i];
+                    if (inRange(tile, top, left, bottom, right)) {
+                        tiles.add(new int[]{tile / numColumns, tile % numColumns});
+                    }
+                }
+            }
+        }
+
+        return tiles;
+    }
+
+    /**
+     * Returns which bucket a tile is in
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       index of the bucket
+     */
+    private int bucketOf(int row, int column) {
+        return (row / bucketSize) * bucketColumns + column / bucketSize;
+    }
+
+    /**
+     * Checks if a tile is inside a rectangle
+     *
+     * @param tile   the tile (row * numColumns + column)
+     * @param top    lowest row
+     * @param left   lowest column
+     * @param bottom highest row
+     * @param right  highest column
+     * @return       if the tile is inside
+     */
+    private boolean inRange(int tile, int top, int left, int bottom, int right) {
+        int row = tile / numColumns;
+        int column = tile % numColumns;
+        return row >= top && row <= bottom && column >= left && column <= right;
+    }
+}
@@ -0,0 +1,378 @@
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Saves the pheromone grid, ant density and terrain as PNG images every few turns, for reports and videos
+ * The simulation thread only copies the grids into a buffer from a small pool; colouring and PNG encoding happen on a
+ * pool of worker threads, so neither the simulation nor the GUI waits on the disk
+ * Images are named <code>pheromone_000042.png</code>, <code>ants_000042.png</code> and <code>terrain_000042.png</code>
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class FrameExporter implements TurnListener, AutoCloseable {
+    // Colours match the GUI
+    final private static int COLONYCOLOR = 0x00FF00;
+    final private static int OBSTACLECOLOR = 0xFF0000;
+    final private static int EMPTYCOLOR = 0xFFFFFF;
+
+    final private static int[] HEATMAP = createHeatmap();  // 256 colours from black through red and yellow to white
+
+    final public static int AUTOSCALE = 0;  // pick the scale from the grid size, see chooseScale
+    final private static int MAXSCALE = 4;
+    final private static long AUTOSCALEPIXELS = 4096L * 4096;  // automatic scales keep images below this many pixels
+
+    /**
+     * Copy of the grids for one frame, and the image it is coloured into; reused once the frame has been written
+     */
+    private static class FrameBuffer {
+        int turn;
+        final int numRows;
+        final int numColumns;
+        final int scale;  // pixels per tile, in each direction
+        final int[] pheromone;
+        final int[] terrain;
+        final int[] ants;
+        final BufferedImage image;
+        final int[] pixels;  // the image's own pixel array, so colours are written straight into it
+
+        /**
+         * Creates a buffer for a grid size
+         *
+         * @param numRows    number of rows
+         * @param numColumns number of columns
+         * @param scale      pixels per tile, in each direction
+         */
+        FrameBuffer(int numRows, int numColumns, int scale) {
+            this.numRows = numRows;
+            this.numColumns = numColumns;
+            this.scale = scale;
+            pheromone = new int[numRows * numColumns];
+            terrain = new int[numRows * numColumns];
+            ants = new int[numRows * numColumns];
+            image = new BufferedImage(numColumns * scale, numRows * scale, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        /**
+         * Returns about how much memory a buffer takes
+         *
+         * @param numRows    number of rows
+         * @param numColumns number of columns
+         * @param scale      pixels per tile, in each direction
+         * @return           bytes for the three grid copies and the image
+         */
+        static long bytesFor(int numRows, int numColumns, int scale) {
+            long tiles = (long) numRows * numColumns;
+            return tiles * 3 * Integer.BYTES + tiles * scale * scale * Integer.BYTES;
+        }
+    }
+
+    final private File directory;
+    final private int every;  // export a frame every this many turns
+    final private int requestedScale;  // pixels per tile, or AUTOSCALE
+    final private boolean dropWhenBusy;
+    final private long maxBufferBytes;  // all buffers together stay below this (but there is always at least one)
+
+    final private BlockingQueue<FrameBuffer> freeBuffers;
+    final private int maxPoolSize;
+    final private ExecutorService writers;
+    final private AtomicLong framesWritten = new AtomicLong();
+    final private AtomicLong framesDropped = new AtomicLong();
+    private volatile IOException writeError;
+
+    private volatile int numRows = -1;     // size of the buffers in the pool
+    private volatile int numColumns = -1;
+    private int scale;          // scale of the buffers in the pool
+    private int poolSize;       // buffers allowed for this grid size, at most maxPoolSize
+    private int buffersCreated; // buffers created for this grid size; only touched by the simulation thread
+
+    /**
+     * Creates an exporter
+     * Buffers are only created when every existing one is busy, up to two per writer, and only as many as fit in
+     * <code>maxBufferBytes</code>; with fewer buffers than writers, some writers just sit idle
+     *
+     * @param directory      folder to write the images to (created if needed)
+     * @param every          export a frame every this many turns
+     * @param scale          pixels per tile, in each direction, or <code>AUTOSCALE</code> to pick one from the grid size
+     * @param writerCount    number of threads encoding images
+     * @param dropWhenBusy   if true, skip a frame when every buffer is in use; if false, wait for a buffer instead
+     * @param maxBufferBytes memory all the buffers together may take
+     */
+    public FrameExporter(File directory, int every, int scale, int writerCount, boolean dropWhenBusy, long maxBufferBytes) {
+        this.directory = directory;
+        this.every = Math.max(1, every);
+        this.requestedScale = Math.max(AUTOSCALE, scale);
+        this.dropWhenBusy = dropWhenBusy;
+        this.maxBufferBytes = maxBufferBytes;
+
+        this.writers = Executors.newFixedThreadPool(writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "frame-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPoolSize = writerCount * 2;  // enough to keep every writer busy while the next frames are copied
+        this.freeBuffers = new ArrayBlockingQueue<>(maxPoolSize);
+
+        directory.mkdirs();
+    }
+
+    /**
+     * Creates an exporter whose buffers may take up to a quarter of the heap (256 MB at most)
+     *
+     * @param directory    folder to write the images to (created if needed)
+     * @param every        export a frame every this many turns
+     * @param scale        pixels per tile, in each direction, or <code>AUTOSCALE</code>
+     * @param writerCount  number of threads encoding images
+     * @param dropWhenBusy if true, skip a frame when every buffer is in use; if false, wait for a buffer instead
+     */
+    public FrameExporter(File directory, int every, int scale, int writerCount, boolean dropWhenBusy) {
+        this(directory, every, scale, writerCount, dropWhenBusy, Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    /**
+     * Creates an exporter with one writer per processor that picks its scale from the grid size and waits instead of dropping frames
+     *
+     * @param directory folder to write the images to
+     * @param every     export a frame every this many turns
+     */
+    public FrameExporter(File directory, int every) {
+        this(directory, every, AUTOSCALE, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    @Override
+    public void turnCompleted(SimulationEngine engine) {
+        if (engine.getTurn() % every == 0) {
+            exportFrame(engine);
+        }
+    }
+
+    /**
+     * Copies the engine's grids and queues them to be written as images
+     *
+     * @param engine the engine to export
+     */
+    public void exportFrame(SimulationEngine engine) {
+        FrameBuffer buffer = takeBuffer(engine.getNumRows(), engine.getNumColumns());
+        if (buffer == null) {
+            framesDropped.incrementAndGet();
+            return;
+        }
+
+        buffer.turn = engine.getTurn();
+        engine.copyGrids(buffer.pheromone, buffer.terrain, buffer.ants);
+
+        writers.execute(() -> {
+            try {
+                writeFrame(buffer);
+                framesWritten.incrementAndGet();
+            } catch (IOException e) {
+                writeError = e;
+            } finally {
+                if (buffer.numRows == numRows && buffer.numColumns == numColumns) {  // don't return buffers of an old size
+                    freeBuffers.offer(buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a free buffer, creating a new one only if every buffer is busy and the pool isn't full yet
+     *
+     * @param rows    number of rows in the engine
+     * @param columns number of columns in the engine
+     * @return        a buffer, or null if none are free and frames should be dropped
+     */
+    private FrameBuffer takeBuffer(int rows, int columns) {
+        if (rows != numRows || columns != numColumns) {
+            // A different engine size, so the old buffers are the wrong size; ones still being written are dropped when done
+            freeBuffers.clear();
+            numRows = rows;
+            numColumns = columns;
+            scale = requestedScale == AUTOSCALE ? chooseScale(rows, columns) : requestedScale;
+            long bufferBytes = FrameBuffer.bytesFor(rows, columns, scale);
+            poolSize = (int) Math.max(1, Math.min(maxPoolSize, maxBufferBytes / bufferBytes));
+            buffersCreated = 0;
+        }
+
+        FrameBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (buffersCreated < poolSize) {
+            buffersCreated++;
+            return new FrameBuffer(rows, columns, scale);
+        }
+
+        if (dropWhenBusy) {
+            return null;
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Picks the scale for a grid: up to four pixels per tile, but fewer on big grids so an image stays below
+     * <code>AUTOSCALEPIXELS</code> (a 2000 by 2000 grid gets two, anything over 4096 tiles across gets one)
+     *
+     * @param rows    number of rows
+     * @param columns number of columns
+     * @return        pixels per tile, in each direction
+     */
+    static int chooseScale(int rows, int columns) {
+        int chosen = (int) Math.sqrt((double) AUTOSCALEPIXELS / ((long) rows * columns));
+        return Math.max(1, Math.min(MAXSCALE, chosen));
+    }
+
+    /**
+     * Colours each grid into the buffer's image and writes it as a PNG
+     * Runs on a writer thread
+     *
+     * @param buffer the frame to write
+     */
+    private void writeFrame(FrameBuffer buffer) throws IOException {
+        String suffix = String.format("_%06d.png", buffer.turn);
+
+        // Pheromones are coloured on a log scale, since a fresh trail is thousands of times stronger than the background
+        int highest = 1;
+        for (int value : buffer.pheromone) {
+            highest = Math.max(highest, value);
+        }
+        final double pheromoneScale = 255 / Math.log1p(highest);
+        colour(buffer, tile -> HEATMAP[(int) (Math.log1p(Math.max(0, buffer.pheromone[tile])) * pheromoneScale)]);
+        ImageIO.write(buffer.image, "png", new File(directory, "pheromone" + suffix));
+
+        int mostAnts = 1;
+        for (int value : buffer.ants) {
+            mostAnts = Math.max(mostAnts, value);
+        }
+        final double antScale = 255.0 / mostAnts;
+        colour(buffer, tile -> {
+            if (buffer.terrain[tile] == AntColonyEngine.OBSTACLE) {
+                return OBSTACLECOLOR;
+            }
+            return HEATMAP[(int) (buffer.ants[tile] * antScale)];
+        });
+        ImageIO.write(buffer.image, "png", new File(directory, "ants" + suffix));
+
+        int mostFood = 1;
+        for (int value : buffer.terrain) {
+            mostFood = Math.max(mostFood, value);
+        }
+        final int finalMostFood = mostFood;
+        colour(buffer, tile -> {
+            int value = buffer.terrain[tile];
+            if (value == AntColonyEngine.COLONY) {
+                return COLONYCOLOR;
+            } else if (value == AntColonyEngine.OBSTACLE) {
+                return OBSTACLECOLOR;
+            } else if (value == AntColonyEngine.EMPTY) {
+                return EMPTYCOLOR;
+            }
+            int shade = 255 - 200 * value / finalMostFood;  // more food is a deeper orange
+            return 0xFF0000 | (((shade + 255) / 2) << 8) | shade / 4;
+        });
+        ImageIO.write(buffer.image, "png", new File(directory, "terrain" + suffix));
+    }
+
+    /**
+     * Way of choosing the colour of a tile
+     */
+    private interface TileColouring {
+        int colourOf(int tile);
+    }
+
+    /**
+     * Fills the image one tile at a time, splitting the rows across threads
+     *
+     * @param buffer    the frame being drawn
+     * @param colouring gives the colour of each tile (index row * numColumns + column)
+     */
+    private void colour(FrameBuffer buffer, TileColouring colouring) {
+        final int columns = buffer.numColumns;
+        final int scale = buffer.scale;
+        final int width = columns * scale;
+
+        IntStream.range(0, buffer.numRows).parallel().forEach(row -> {
+            int pixelRow = row * scale;
+            for (int column = 0; column < columns; column++) {
+                int colour = colouring.colourOf(row * columns + column);
+                for (int dy = 0; dy < scale; dy++) {
+                    int start = (pixelRow + dy) * width + column * scale;
+                    for (int dx = 0; dx < scale; dx++) {
+                        buffer.pixels[start + dx] = colour;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the black-red-yellow-white colour scale
+     *
+     * @return 256 RGB colours
+     */
+    private static int[] createHeatmap() {
+        int[] colours = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int red = Math.min(255, i * 3);
+            int green = Math.min(255, Math.max(0, i * 3 - 255));
+            int blue = Math.min(255, Math.max(0, i * 3 - 510));
+            colours[i] = (red << 16) | (green << 8) | blue;
+        }
+        return colours;
+    }
+
+    /**
+     * Returns the number of frames written so far
+     *
+     * @return frames written
+     */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    /**
+     * Returns the number of frames skipped because every buffer was busy
+     *
+     * @return frames dropped
+     */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /**
+     * Waits for every queued frame to be written, then stops the writer threads
+     *
+     * @throws IOException if any frame could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        writers.shutdown();
+        try {
+            writers.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+}
@@ -7,6 +7,13 @@ import java.awt.event.*;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 
 import static java.awt.Component.CENTER_ALIGNMENT;
 
@@ -62,7 +69,7 @@ public class GUISimulation {
     private String[] columnOptions = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
     private String[] booleanOptions = {"false", "true"};
 
-    private AntColonyEngine engine;
+    private SimulationEngine engine;
 
     private int selectedRow = 0;
     private int selectedColumn = 0;
@@ -74,10 +81,62 @@ public class GUISimulation {
 
     private Timer turnTimer;
 
+    private PerformanceHud performanceHud;  // created once and reused every time the simulation is redrawn
+
+    private TurnPublisher turns;           // turns of the engine, published for drawing
+    private EngineSnapshot shownSnapshot;  // the turn on the screen right now
+
+    final private PresetLibrary presetLibrary = new PresetLibrary();  // sidecars and recently opened engines
+    private SwingWorker<Void, PresetLibrary.Info> presetScan;        // fills in the preset browser, cancelled when it is left
+
+    // Checkpoints go to presets/autosave every ant.autosave turns (0 for only when asked), keeping the newest ant.autosaveKeep
+    // Each simulation gets its own autosaver, named after its preset, so one simulation never rotates away another's checkpoints
+    private volatile Autosaver autosaver;  // null while no simulation is running
+    final private Set<Autosaver> closingAutosavers = ConcurrentHashMap.newKeySet();  // left simulations still writing their last saves
+
     /**
      * Initialize the GUI simulation, by first showing a splash screen
+     * The splash screen is skipped if the <code>ant.fastStart</code> system property is true
      */
     public GUISimulation() {
+        this(Boolean.getBoolean("ant.fastStart"), null, false);
+    }
+
+    /**
+     * Initialize the GUI simulation, with or without the splash screen
+     *
+     * @param fastStart     if true, skip the splash screen and go straight to the main menu
+     * @param presetName    name of a preset in the presets folder (".txt" can be left out) to open straight away, or null
+     * @param exitWhenReady if true, exit once the first screen is up (and one turn has run, if a preset was opened);
+     *                      used to time startup and to record which classes startup loads
+     */
+    public GUISimulation(boolean fastStart, String presetName, boolean exitWhenReady) {
+        // Saves are written on daemon threads, so exiting would cut one short and leave its temporary file behind
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeAutosavers, "autosave-close"));
+
+        if (fastStart || presetName != null) {
+            showMainMenu();
+            Runnable ready = () -> {
+                if (exitWhenReady) {
+                    if (engine != null) {
+                        stepSimulation();
+                    }
+                    SwingUtilities.invokeLater(() -> System.exit(0));  // after the turn has been drawn and painted
+                }
+            };
+
+            if (presetName != null) {
+                File presetFile = new File("presets/" + presetName);
+                if (!presetFile.exists()) {
+                    presetFile = new File("presets/" + presetName + ".txt");
+                }
+                openPreset(presetFile, ready);
+            } else {
+                SwingUtilities.invokeLater(ready);
+            }
+            return;
+        }
+
         // Create the splash screen frame
         JWindow splashScreen = new JWindow();
         splashScreen.setSize(SCREENWIDTH, SCREENHEIGHT);
@@ -93,6 +152,9 @@ public class GUISimulation {
         Timer timer = new Timer(6000, e -> {
             splashScreen.dispose(); // Close splash screen
             showMainMenu();         // Proceed to main menu
+            if (exitWhenReady) {
+                SwingUtilities.invokeLater(() -> System.exit(0));
+            }
         });
         timer.setRepeats(false);
         timer.start();
@@ -219,7 +281,8 @@ public class GUISimulation {
 
                 + "<p><strong>Presets:</strong><br>"
                 + "You can save simulation states as presets. The data will be stored in text files in the presets directory.<br>"
-                + "Use this to save maps you've created, like complicated mazes.</p>"
+                + "Use this to save maps you've created, like complicated mazes.<br>"
+                + "The simulation is also saved every few hundred turns in the autosave folder inside presets, and shows up at the end of the list.</p>"
                 + "</div></html>");
 
         // Add the label to the center-aligned panel
@@ -249,6 +312,103 @@ public class GUISimulation {
 
     }
 
+    /**
+     * Opens a preset and starts the simulation in it
+     * The preset is read on a background thread while a progress bar is shown, so large presets don't freeze the window
+     *
+     * @param presetFile the preset file
+     * @param afterOpen  run on the event dispatch thread once the simulation has started (or failed to), after the screen
+     *                   has subscribed to its turns; may be null
+     */
+    private void openPreset(File presetFile, Runnable afterOpen) {
+        if (presetScan != null) {
+            presetScan.cancel(false);
+        }
+
+        // Delete previous GUI
+        frame.getContentPane().removeAll();
+
+        JPanel loadingPanel = new JPanel();
+        loadingPanel.setLayout(new BoxLayout(loadingPanel, BoxLayout.Y_AXIS));
+        frame.add(loadingPanel);
+        loadingPanel.add(Box.createVerticalGlue());
+
+        JLabel loadingLabel = new JLabel("Loading " + presetFile.getName() + "...");
+        loadingLabel.setAlignmentX(CENTER_ALIGNMENT);
+        loadingPanel.add(loadingLabel);
+
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setMaximumSize(new Dimension(MAXSLIDERWIDTH, MAXSLIDERHEIGHT));
+        progressBar.setAlignmentX(CENTER_ALIGNMENT);
+        loadingPanel.add(progressBar);
+        loadingPanel.add(Box.createVerticalGlue());
+
+        frame.revalidate();
+        frame.repaint();
+
+        // Open the engine object written to the file
+        SwingWorker<SimulationEngine, Void> loader = new SwingWorker<SimulationEngine, Void>() {
+            @Override
+            protected SimulationEngine doInBackground() throws Exception {
+                return presetLibrary.open(new File(presetFile.getAbsolutePath()), fraction -> setProgress((int) (fraction * 100)));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    startSimulation(get(), autosaveName(presetFile));
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof ClassNotFoundException || ex.getCause() instanceof ClassCastException) {
+                        JOptionPane.showMessageDialog(null, "Error: corrupted save file", "Error", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(null, "Error opening simulation", "Error", JOptionPane.WARNING_MESSAGE);
+                    }
+                    loadPreset();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                if (afterOpen != null) {
+                    SwingUtilities.invokeLater(afterOpen);
+                }
+            }
+        };
+        loader.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setValue((Integer) event.getNewValue());
+            }
+        });
+        loader.execute();
+    }
+
+    /**
+     * Starts running a simulation that was just created or opened
+     *
+     * @param newEngine    the engine
+     * @param autosaveName start of the file names of its checkpoints
+     */
+    private void startSimulation(SimulationEngine newEngine, String autosaveName) {
+        closeAutosaver();
+        engine = newEngine;
+        engine.setMetrics(EngineMetrics.getShared());  // the performance HUD reads the timings
+        autosaver = new Autosaver(new File("presets/autosave"), autosaveName, Integer.getInteger("ant.autosave", 500),
+                Integer.getInteger("ant.autosaveKeep", 5));
+        engine.addTurnListener(autosaver);
+        startPublishing();
+
+        // Initialize the timer with the default delay
+        turnTimer = new Timer((int) timerDelay * 100, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!paused) {
+                    stepSimulation();  // Call the method that advances the simulation, the screen redraws itself when the turn is published
+                }
+            }
+        });
+
+        turnTimer.start();
+    }
+
     /**
      * Search for all the files in the presets folder, and allow the user to select a preset
      */
@@ -269,56 +429,91 @@ public class GUISimulation {
         infoLabel.setAlignmentX(CENTER_ALIGNMENT);
         presetPanel.add(infoLabel);
 
-        // Create a button for each simulation found
-        for (File file : getFiles("presets/")) {
+        // Create a button for each simulation found, in a scrolling list since there can be hundreds
+        JPanel listPanel = new JPanel();
+        listPanel.setLayout(new BoxLayout(listPanel, BoxLayout.Y_AXIS));
+        HashMap<File, JButton> fileButtons = new HashMap<>();
+
+        // Autosaves are listed after the presets, newest last since they are named after their turn
+        File[] presetFiles = getFiles("presets/");
+        File[] autosaveFiles = getFiles("presets/autosave/");
+        Arrays.sort(presetFiles);
+        Arrays.sort(autosaveFiles);
+        File[] files = Arrays.copyOf(presetFiles, presetFiles.length + autosaveFiles.length);
+        System.arraycopy(autosaveFiles, 0, files, presetFiles.length, autosaveFiles.length);
+        for (File file : files) {
             final File currentFile = file;
             JButton fileButton = new JButton(currentFile.getName());
             fileButton.setAlignmentX(CENTER_ALIGNMENT);
             fileButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    // Open the engine object written to the file
-                    try {
-                        FileInputStream fi = new FileInputStream(new File(currentFile.getAbsolutePath()));
-                        ObjectInputStream oi = new ObjectInputStream(fi);
-
-                        engine = (AntColonyEngine) oi.readObject();
-
-                        // Initialize the simulation
-                        // Initialize the timer with the default delay
-                        turnTimer = new Timer((int) timerDelay * 100, new ActionListener() {
-                            @Override
-                            public void actionPerformed(ActionEvent e) {
-                                if (!paused) {
-                                    engine.update();  // Call the method that advances the simulation
-                                    drawSimulation();  // Redraw the grid after each turn
-                                }
-                            }
-                        });
-
+                    openPreset(currentFile, null);
+                }
+            });
+            listPanel.add(fileButton);
+            fileButtons.put(currentFile, fileButton);
+        }
 
+        JScrollPane listScrollPane = new JScrollPane(listPanel);
+        listScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        presetPanel.add(listScrollPane);
 
-                        turnTimer.start();
+        // Fill in the size, ants, food and a thumbnail of each preset in the background
+        // Up to date sidecars are read first, then the presets without one are read in full (which writes their sidecar)
+        if (presetScan != null) {
+            presetScan.cancel(false);
+        }
+        presetScan = new SwingWorker<Void, PresetLibrary.Info>() {
+            @Override
+            protected Void doInBackground() {
+                ArrayList<File> undescribed = new ArrayList<>();
+                for (File file : files) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    PresetLibrary.Info info = presetLibrary.getCachedInfo(file);
+                    if (info != null) {
+                        publish(info);
+                    } else {
+                        undescribed.add(file);
+                    }
+                }
 
-                        drawSimulation();  // start the simulation
-                    } catch (FileNotFoundException ex) {
-                        JOptionPane.showMessageDialog(null, "Error opening simulation", "Error", JOptionPane.WARNING_MESSAGE);
-                    } catch (IOException ex) {
-                        JOptionPane.showMessageDialog(null, "Error opening simulation", "Error", JOptionPane.WARNING_MESSAGE);
-                    } catch (ClassNotFoundException ex) {
-                        JOptionPane.showMessageDialog(null, "Error: corrupted save file", "Error", JOptionPane.WARNING_MESSAGE);
+                for (File file : undescribed) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    try {
+                        publish(presetLibrary.describe(file));
+                    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                        // Leave it as just its name, opening it will show the error
                     }
+                }
+                return null;
+            }
 
+            @Override
+            protected void process(java.util.List<PresetLibrary.Info> infos) {
+                for (PresetLibrary.Info info : infos) {
+                    JButton fileButton = fileButtons.get(info.getFile());
+                    if (fileButton != null) {
+                        fileButton.setIcon(new ImageIcon(info.getThumbnail()));
+                        fileButton.setText("<html><b>" + info.getFile().getName() + "</b><br>" + info.getNumRows() + " x " + info.getNumColumns()
+                                + ", " + info.getNumAnts() + " ants, " + info.getTotalFood() + " food</html>");
+                    }
                 }
-            });
-            presetPanel.add(fileButton);
-        }
+                listPanel.revalidate();
+            }
+        };
+        presetScan.execute();
 
         JButton backButton = new JButton("Back to Menu");
         backButton.setAlignmentX(Component.CENTER_ALIGNMENT);  // Align the button horizontally
         backButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                presetScan.cancel(false);
                 mainMenu();
             }
         });
@@ -512,10 +707,14 @@ public class GUISimulation {
         JLabel hoverLabel = new JLabel("");  // label which shows the coordinates of the current tile mouse is hovering over
         hoverLabel.setAlignmentX(CENTER_ALIGNMENT);
 
+        final JPanel[][] cells = new JPanel[numRows][numColumns];  // kept so a drag can recolour the tiles it paints
+        final int[] stroke = {-1, -1, AntColonyEngine.OBSTACLE};   // row, column and value of the drag, row is -1 if not painting
+
         // Add grid cells to the panel
         for (int row = 0; row < numRows; row++) {
             for (int column = 0; column < numColumns; column++) {
                 JPanel cell = new JPanel();
+                cells[row][column] = cell;
                 cell.setPreferredSize(new Dimension(cellWidth, cellHeight));
                 cell.setBorder(BorderFactory.createLineBorder(Color.BLACK)); // draw grid lines
 
@@ -535,13 +734,29 @@ public class GUISimulation {
 
                     @Override
                     public void mouseDragged(MouseEvent e) {
-                        // Do nothing because Java requires me to override this method
+                        // Drag events all go to the tile the drag started on, so find the tile the mouse is really over
+                        int[] tile = tileUnderMouse(e, gridPanel);
+                        if (tile == null) {
+                            return;
+                        }
+                        hoverLabel.setText("Row: " + tile[0] + ", Column: " + tile[1]);
+
+                        RegionEdit painted = paintStroke(stroke, tile[0], tile[1], false);
+                        for (int i = 0; i < painted.size(); i++) {
+                            int paintedRow = painted.getRow(i);
+                            int paintedColumn = painted.getColumn(i);
+                            if (terrainGrid[paintedRow][paintedColumn] != AntColonyEngine.COLONY) {  // the colony is never painted over
+                                cells[paintedRow][paintedColumn].setBackground(
+                                        terrainGrid[paintedRow][paintedColumn] == AntColonyEngine.OBSTACLE ? obstacleColor : emptyColor);
+                            }
+                        }
                     }
                 });
                 cell.addMouseListener(new MouseAdapter() {
                     @Override
-                    public void mouseClicked(MouseEvent e) {
-                        // Check if the tile is not a colony, then flip the obstacle state
+                    public void mousePressed(MouseEvent e) {
+                        // Check if the tile is not a colony, then flip the obstacle state, and keep painting that state while dragging
+                        stroke[0] = -1;
                         if (terrainGrid[currentRow][currentColumn] != AntColonyEngine.COLONY) {
                             if (terrainGrid[currentRow][currentColumn] == AntColonyEngine.OBSTACLE) {
                                 terrainGrid[currentRow][currentColumn] = AntColonyEngine.EMPTY;
@@ -550,7 +765,9 @@ public class GUISimulation {
                                 terrainGrid[currentRow][currentColumn] = AntColonyEngine.OBSTACLE;
                                 cell.setBackground(obstacleColor);
                             }
-
+                            stroke[0] = currentRow;
+                            stroke[1] = currentColumn;
+                            stroke[2] = terrainGrid[currentRow][currentColumn];
                         }
                     }
                 });
@@ -563,7 +780,7 @@ public class GUISimulation {
         JPanel controlPanel = new JPanel();
         controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
 
-        JLabel infoLabel1 = new JLabel("Click on a tile to change it to an obstacle, or vice versa.");
+        JLabel infoLabel1 = new JLabel("Click on a tile to change it to an obstacle, or vice versa. Drag to paint.");
         infoLabel1.setAlignmentX(CENTER_ALIGNMENT);
         controlPanel.add(infoLabel1);
 
@@ -611,6 +828,9 @@ public class GUISimulation {
         JLabel hoverLabel = new JLabel("");  // label which shows the coordinates of the current tile mouse is hovering over
         hoverLabel.setAlignmentX(CENTER_ALIGNMENT);
 
+        final JLabel[][] foodLabels = new JLabel[numRows][numColumns];  // kept so a drag can update the tiles it paints
+        final int[] stroke = {-1, -1, 0};  // row, column and amount of food of the drag, row is -1 if not painting
+
         // Add grid cells to the panel
         for (int row = 0; row < numRows; row++) {
             for (int column = 0; column < numColumns; column++) {
@@ -632,6 +852,7 @@ public class GUISimulation {
                 foodLabel.setVerticalAlignment(SwingConstants.TOP);
                 foodLabel.setHorizontalAlignment(SwingConstants.LEFT);
                 cell.add(foodLabel);
+                foodLabels[row][column] = foodLabel;
                 if (terrainGrid[row][column] != AntColonyEngine.COLONY && terrainGrid[row][column] != AntColonyEngine.OBSTACLE) {
                     foodLabel.setText("" + terrainGrid[row][column]);
                 }
@@ -647,13 +868,29 @@ public class GUISimulation {
 
                     @Override
                     public void mouseDragged(MouseEvent e) {
-                        // Do nothing because Java requires me to override this method
+                        // Drag events all go to the tile the drag started on, so find the tile the mouse is really over
+                        int[] tile = tileUnderMouse(e, gridPanel);
+                        if (tile == null) {
+                            return;
+                        }
+                        hoverLabel.setText("Row: " + tile[0] + ", Column: " + tile[1]);
+
+                        RegionEdit painted = paintStroke(stroke, tile[0], tile[1], true);
+                        for (int i = 0; i < painted.size(); i++) {
+                            int paintedRow = painted.getRow(i);
+                            int paintedColumn = painted.getColumn(i);
+                            if (terrainGrid[paintedRow][paintedColumn] >= 0) {
+                                foodLabels[paintedRow][paintedColumn].setText("" + terrainGrid[paintedRow][paintedColumn]);
+                            }
+                        }
                     }
                 });
                 cell.addMouseListener(new MouseAdapter() {
                     @Override
-                    public void mouseClicked(MouseEvent e) {
+                    public void mousePressed(MouseEvent e) {
                         // Check if there is food on this tile, then check if it is right/left click, then increase/decrease food
+                        // Dragging afterwards paints the new amount onto every tile the mouse passes over
+                        stroke[0] = -1;
                         if (terrainGrid[currentRow][currentColumn] != AntColonyEngine.COLONY && terrainGrid[currentRow][currentColumn] != AntColonyEngine.OBSTACLE) {
                             if (e.getButton() == MouseEvent.BUTTON1) {  // left click
                                 terrainGrid[currentRow][currentColumn]++;
@@ -664,6 +901,9 @@ public class GUISimulation {
                                     foodLabel.setText("" + terrainGrid[currentRow][currentColumn]);
                                 }
                             }
+                            stroke[0] = currentRow;
+                            stroke[1] = currentColumn;
+                            stroke[2] = terrainGrid[currentRow][currentColumn];
                         }
                     }
                 });
@@ -676,7 +916,7 @@ public class GUISimulation {
         JPanel controlPanel = new JPanel();
         controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
 
-        JLabel infoLabel1 = new JLabel("Left click on a tile to increase amount of food, right click to decrease amount of food.");
+        JLabel infoLabel1 = new JLabel("Left click on a tile to increase amount of food, right click to decrease amount of food. Drag to paint that amount.");
         infoLabel1.setAlignmentX(CENTER_ALIGNMENT);
         controlPanel.add(infoLabel1);
 
@@ -710,6 +950,48 @@ public class GUISimulation {
         frame.repaint();
     }
 
+    /**
+     * Finds the tile the mouse is over during a drag on one of the setup screens
+     * Swing sends every drag event to the cell the drag started on, so the point is moved into the grid panel first
+     *
+     * @param e         the drag event
+     * @param gridPanel the panel holding the cells, one per tile in row order
+     * @return          {row, column} of the tile, or null if the mouse is off the grid
+     */
+    private int[] tileUnderMouse(MouseEvent e, JPanel gridPanel) {
+        Point point = SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), gridPanel);
+        Component cell = gridPanel.getComponentAt(point);
+        if (cell == null || cell == gridPanel) {
+            return null;
+        }
+        int index = gridPanel.getComponentZOrder(cell);
+        return new int[]{index / numColumns, index % numColumns};
+    }
+
+    /**
+     * Paints the setup terrain grid from the last tile of a drag to the tile the mouse is over now
+     * The whole line is painted in one go, so a fast drag doesn't skip tiles
+     *
+     * @param stroke        {row, column, value} of the drag; the row is -1 if the drag isn't painting, and the position is moved to this tile
+     * @param row           row the mouse is over
+     * @param column        column the mouse is over
+     * @param skipObstacles leave obstacles alone, for painting food
+     * @return              the tiles that were painted
+     */
+    private RegionEdit paintStroke(int[] stroke, int row, int column, boolean skipObstacles) {
+        RegionEdit edit = new RegionEdit(numRows, numColumns);
+        if (stroke[0] < 0 || (stroke[0] == row && stroke[1] == column)) {
+            return edit;
+        }
+        if (skipObstacles) {
+            edit.skipObstacles();
+        }
+        edit.stroke(stroke[0], stroke[1], row, column, 0, stroke[2]).applyTo(terrainGrid);
+        stroke[0] = row;
+        stroke[1] = column;
+        return edit;
+    }
+
     /**
      * Allow the user to place starting ants on the simulation
      */
@@ -728,6 +1010,9 @@ public class GUISimulation {
         JLabel hoverLabel = new JLabel("");  // label which shows the coordinates of the current tile mouse is hovering over
         hoverLabel.setAlignmentX(CENTER_ALIGNMENT);
 
+        final JLabel[][] foodLabels = new JLabel[numRows][numColumns];  // kept so a drag can update the tiles it paints
+        final int[] stroke = {-1, -1, 0};  // row, column and amount of food of the drag, row is -1 if not painting
+
         // Add grid cells to the panel
         for (int row = 0; row < numRows; row++) {
             for (int column = 0; column < numColumns; column++) {
@@ -838,22 +1123,8 @@ public class GUISimulation {
                 }
 
                 // Initialize the engine
-                engine = new AntColonyEngine(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
-
-                // Initialize the timer with the default delay
-                turnTimer = new Timer((int) timerDelay * 100, new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        if (!paused) {
-                            engine.update();  // Call the method that advances the simulation
-                            drawSimulation();  // Redraw the grid after each turn
-                        }
-                    }
-                });
-
-                turnTimer.start();
-
-                drawSimulation();  // start the simulation
+                startSimulation(EngineFactory.create(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid),
+                        String.format("session-%tY%<tm%<td-%<tH%<tM%<tS", new Date()));
             }
         });
         nextButton.setAlignmentX(CENTER_ALIGNMENT);
@@ -869,34 +1140,231 @@ public class GUISimulation {
         frame.repaint();
     }
 
+    /**
+     * Advances the simulation by one turn, measuring it for the performance HUD
+     */
+    private void stepSimulation() {
+        getPerformanceHud().beforeTurn();
+        engine.update();
+        getPerformanceHud().afterTurn();
+    }
+
+    /**
+     * Makes a change to the engine through its edit queue, so it can never land in the middle of a turn
+     * While the simulation is running, the change is made at the start of the next turn, which redraws the screen anyway
+     * While it is paused, nothing else would apply it, so it is applied and published straight away
+     *
+     * @param edit the change
+     */
+    private void editEngine(EditQueue.Edit edit) {
+        engine.getEditQueue().submit(edit).exceptionally(error -> {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Could not make the change: " + error.getMessage(),
+                    "Error", JOptionPane.WARNING_MESSAGE));
+            return null;
+        });
+
+        if (paused) {
+            engine.getEditQueue().drain();
+            turns.publish(engine);
+        }
+    }
+
+    /**
+     * Makes sure an ant is still on the tile it was listed on, since turns and other edits can renumber the ants
+     * before a queued edit is made
+     *
+     * @param target the engine
+     * @param index  index of the ant when it was listed
+     * @param row    row it was listed on
+     * @param column column it was listed on
+     */
+    private static void checkAntStillOnTile(SimulationEngine target, int index, int row, int column) {
+        if (index >= target.getNumAnts() || target.getAntRow(index) != row || target.getAntColumn(index) != column) {
+            throw new IllegalStateException("ant #" + index + " has moved since it was listed");
+        }
+    }
+
+    /**
+     * Returns the name for the checkpoints of a simulation opened from a preset: the preset's name, without the turn
+     * if it is a checkpoint itself, so carrying on from a checkpoint keeps adding to the same checkpoints
+     *
+     * @param presetFile the preset file
+     * @return           the name
+     */
+    private static String autosaveName(File presetFile) {
+        return presetFile.getName().replaceFirst("\\.txt$", "").replaceFirst("-\\d{8,}$", "");
+    }
+
+    /**
+     * Stops checkpointing the simulation that is being left; saves already queued are still written, in the background
+     */
+    private void closeAutosaver() {
+        Autosaver finished = autosaver;
+        if (finished == null) {
+            return;
+        }
+        autosaver = null;
+        engine.removeTurnListener(finished);
+        closingAutosavers.add(finished);
+        CompletableFuture.runAsync(() -> {
+            finished.close();
+            closingAutosavers.remove(finished);
+        });
+    }
+
+    /**
+     * Waits for every autosaver to finish writing, when the program exits
+     */
+    private void closeAutosavers() {
+        Autosaver current = autosaver;
+        if (current != null) {
+            current.close();
+        }
+        for (Autosaver closing : closingAutosavers) {
+            closing.close();
+        }
+    }
+
+    /**
+     * Starts publishing the turns of a newly opened engine, and subscribes the screen to them
+     * The screen asks for one turn at a time and draws it on the event dispatch thread; if turns finish faster than
+     * they can be drawn, it skips to the latest one instead of falling behind or holding up the timer
+     */
+    private void startPublishing() {
+        stopPublishing();
+        turns = new TurnPublisher(true);
+        turns.attach(engine);
+        turns.subscribe(new ScreenSubscriber(turns), SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Stops publishing turns of the current engine, if there is one, and lets go of the snapshot on the screen
+     */
+    private void stopPublishing() {
+        if (turns != null) {
+            turns.detach(engine);
+            turns.close();
+            turns = null;
+        }
+        if (shownSnapshot != null) {
+            shownSnapshot.close();
+            shownSnapshot = null;
+        }
+    }
+
+    /**
+     * Draws the turns published for the screen, one at a time
+     */
+    private class ScreenSubscriber implements Flow.Subscriber<EngineSnapshot> {
+        final private TurnPublisher publisher;  // snapshots from any other publisher are left over from an engine that was closed
+        private Flow.Subscription subscription;
+
+        /**
+         * Creates a subscriber for a publisher
+         *
+         * @param publisher the publisher it will subscribe to
+         */
+        ScreenSubscriber(TurnPublisher publisher) {
+            this.publisher = publisher;
+        }
+
+        /**
+         * Asks for the first turn
+         *
+         * @param subscription the subscription
+         */
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        /**
+         * Puts a turn on the screen, then asks for the next one
+         *
+         * @param snapshot the turn, which is closed once another one replaces it on the screen
+         */
+        public void onNext(EngineSnapshot snapshot) {
+            if (publisher != turns) {
+                snapshot.close();
+                subscription.cancel();
+                return;
+            }
+            if (shownSnapshot != null) {
+                shownSnapshot.close();
+            }
+            shownSnapshot = snapshot;
+            drawSimulation();
+            subscription.request(1);
+        }
+
+        /**
+         * Reports an error from the publisher
+         *
+         * @param error the error
+         */
+        public void onError(Throwable error) {
+            JOptionPane.showMessageDialog(null, "Could not draw the simulation: " + error.getMessage(), "Error", JOptionPane.WARNING_MESSAGE);
+        }
+
+        /**
+         * Does nothing, the publisher is only closed along with the simulation
+         */
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Returns the performance HUD, creating it the first time
+     *
+     * @return the performance HUD
+     */
+    private PerformanceHud getPerformanceHud() {
+        if (performanceHud == null) {
+            performanceHud = new PerformanceHud(EngineMetrics.getShared());
+        }
+        performanceHud.setTurnBudgetMillis(timerDelay * 100);
+        return performanceHud;
+    }
+
     /**
      * Creates the GUI for the simulation. selectedRow and selectedColumn is the tile to display detailed information about in the control panel
      */
     public void drawSimulation() {
+        RenderEvent renderEvent = new RenderEvent();
+        renderEvent.begin();
+        long renderStart = System.nanoTime();
+
+        // Draw from a snapshot, so the screen shows a single turn even if the engine moves on while it is drawn
+        // It stays pinned while it is on the screen, since the hover label reads it later
+        if (shownSnapshot == null) {
+            shownSnapshot = turns.acquire();
+        }
+        EngineSnapshot view = shownSnapshot;
+
         // Delete previous GUI
         frame.getContentPane().removeAll();
 
         // Create the grid panel (left side)
         JPanel gridPanel = new JPanel();
-        gridPanel.setLayout(new GridLayout(engine.getNumRows(), engine.getNumColumns()));
+        gridPanel.setLayout(new GridLayout(view.getNumRows(), view.getNumColumns()));
 
         // Calculate the size of each cell based on screen dimensions
-        int cellWidth = (int) (SCREENWIDTH * gridPanelPercentage / engine.getNumColumns()); // leave space for the control panel
-        int cellHeight = SCREENHEIGHT / engine.getNumRows();
+        int cellWidth = (int) (SCREENWIDTH * gridPanelPercentage / view.getNumColumns()); // leave space for the control panel
+        int cellHeight = SCREENHEIGHT / view.getNumRows();
 
         JLabel hoverLabel = new JLabel("");  // label which shows the coordinates of the current tile mouse is hovering over
         hoverLabel.setAlignmentX(CENTER_ALIGNMENT);
 
         // Add grid cells to the panel
-        for (int row = 0; row < engine.getNumRows(); row++) {
-            for (int column = 0; column < engine.getNumColumns(); column++) {
+        for (int row = 0; row < view.getNumRows(); row++) {
+            for (int column = 0; column < view.getNumColumns(); column++) {
                 JPanel cell = new JPanel();
                 cell.setPreferredSize(new Dimension(cellWidth, cellHeight));
                 cell.setBorder(BorderFactory.createLineBorder(Color.BLACK)); // draw grid lines
 
-                if (engine.getTerrainGrid(row, column) == AntColonyEngine.COLONY) {
+                if (view.getTerrainGrid(row, column) == AntColonyEngine.COLONY) {
                     cell.setBackground(colonyColor);
-                } else if (engine.getTerrainGrid(row, column) == AntColonyEngine.OBSTACLE) {
+                } else if (view.getTerrainGrid(row, column) == AntColonyEngine.OBSTACLE) {
                     cell.setBackground(obstacleColor);
                 }
 
@@ -904,9 +1372,9 @@ public class GUISimulation {
                 cell.setLayout(new BorderLayout());
 
                 // Only display food on non-obstacle and non-colony tiles
-                if (engine.getTerrainGrid(row, column) != AntColonyEngine.COLONY && engine.getTerrainGrid(row, column) != AntColonyEngine.OBSTACLE) {
-                    if (engine.getTerrainGrid(row, column) > 0) {
-                        final JLabel foodLabel = new JLabel("" + engine.getTerrainGrid(row, column));
+                if (view.getTerrainGrid(row, column) != AntColonyEngine.COLONY && view.getTerrainGrid(row, column) != AntColonyEngine.OBSTACLE) {
+                    if (view.getTerrainGrid(row, column) > 0) {
+                        final JLabel foodLabel = new JLabel("" + view.getTerrainGrid(row, column));
                         foodLabel.setVerticalAlignment(SwingConstants.TOP);
                         foodLabel.setHorizontalAlignment(SwingConstants.LEFT);
                         cell.add(foodLabel, BorderLayout.NORTH);
@@ -914,9 +1382,9 @@ public class GUISimulation {
                 }
 
                 // Only display ants on non-obstacle tiles
-                if (engine.getTerrainGrid(row, column) != AntColonyEngine.OBSTACLE) {
-                    if (engine.getAntGrid(row, column) > 0) {
-                        final JLabel antLabel = new JLabel("" + engine.getAntGrid(row, column));
+                if (view.getTerrainGrid(row, column) != AntColonyEngine.OBSTACLE) {
+                    if (view.getAntGrid(row, column) > 0) {
+                        final JLabel antLabel = new JLabel("" + view.getAntGrid(row, column));
                         antLabel.setVerticalAlignment(SwingConstants.BOTTOM);
                         antLabel.setHorizontalAlignment(SwingConstants.RIGHT);
                         cell.add(antLabel, BorderLayout.SOUTH);
@@ -930,7 +1398,7 @@ public class GUISimulation {
                 cell.addMouseMotionListener(new MouseMotionListener() {
                     @Override
                     public void mouseMoved(MouseEvent e) {  // check if the mouse moved onto this tile, then update the hover label
-                        hoverLabel.setText("Row: " + currentRow + ", Column: " + currentColumn + ", Pheromone strength: " + engine.getPheromoneGrid(currentRow, currentColumn));
+                        hoverLabel.setText("Row: " + currentRow + ", Column: " + currentColumn + ", Pheromone strength: " + view.getPheromoneGrid(currentRow, currentColumn));
                     }
 
                     @Override
@@ -961,14 +1429,14 @@ public class GUISimulation {
 
         controlPanel.add(hoverLabel);
 
+        controlPanel.add(getPerformanceHud());
+
         JButton nextButton = new JButton("Next turn");
         nextButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // Call method to update game state
-                engine.update();
-
-                drawSimulation();  // start the next turn
+                // Call method to update game state; the screen redraws itself when the turn is published
+                stepSimulation();
             }
         });
         nextButton.setAlignmentX(CENTER_ALIGNMENT);
@@ -981,7 +1449,7 @@ public class GUISimulation {
         JLabel defaultPheromoneStrengthLabel = new JLabel("Default pheromone strength: ");
         defaultPheromoneStrengthPanel.add(defaultPheromoneStrengthLabel);
 
-        JTextArea defaultPheromoneStrengthTextArea = new JTextArea(String.valueOf(engine.getPheromoneStrength()));
+        JTextArea defaultPheromoneStrengthTextArea = new JTextArea(String.valueOf(view.getPheromoneStrength()));
         defaultPheromoneStrengthTextArea.setMaximumSize(new Dimension(MAXTEXTAREAWIDTH, MAXTEXTAREAHEIGHT));
         defaultPheromoneStrengthPanel.add(defaultPheromoneStrengthTextArea);
 
@@ -989,8 +1457,8 @@ public class GUISimulation {
         defaultPheromoneStrengthButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                engine.setPheromoneStrength(Integer.parseInt(defaultPheromoneStrengthTextArea.getText()));
-                drawSimulation();
+                int pheromoneStrength = Integer.parseInt(defaultPheromoneStrengthTextArea.getText());
+                editEngine(target -> target.setPheromoneStrength(pheromoneStrength));
             }
         });
         defaultPheromoneStrengthPanel.add(defaultPheromoneStrengthButton);
@@ -1003,7 +1471,7 @@ public class GUISimulation {
         JLabel minimumPheromoneStrengthLabel = new JLabel("Minimum pheromone strength: ");
         minimumPheromoneStrengthPanel.add(minimumPheromoneStrengthLabel);
 
-        JTextArea minimumPheromoneStrengthTextArea = new JTextArea(String.valueOf(engine.getMinimumPheromone()));
+        JTextArea minimumPheromoneStrengthTextArea = new JTextArea(String.valueOf(view.getMinimumPheromone()));
         minimumPheromoneStrengthTextArea.setMaximumSize(new Dimension(MAXTEXTAREAWIDTH, MAXTEXTAREAHEIGHT));
         minimumPheromoneStrengthPanel.add(minimumPheromoneStrengthTextArea);
 
@@ -1011,8 +1479,8 @@ public class GUISimulation {
         minimumPheromoneStrengthButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                engine.setMinimumPheromone(Integer.parseInt(minimumPheromoneStrengthTextArea.getText()));
-                drawSimulation();
+                int minimumPheromone = Integer.parseInt(minimumPheromoneStrengthTextArea.getText());
+                editEngine(target -> target.setMinimumPheromone(minimumPheromone));
             }
         });
         minimumPheromoneStrengthPanel.add(minimumPheromoneStrengthButton);
@@ -1025,7 +1493,7 @@ public class GUISimulation {
         JLabel pheromoneDecayLabel = new JLabel("Pheromone decay rate: ");
         pheromoneDecayPanel.add(pheromoneDecayLabel);
 
-        JTextArea pheromoneDecayTextArea = new JTextArea(String.valueOf(engine.getPheromoneDecay()));
+        JTextArea pheromoneDecayTextArea = new JTextArea(String.valueOf(view.getPheromoneDecay()));
         pheromoneDecayTextArea.setMaximumSize(new Dimension(MAXTEXTAREAWIDTH, MAXTEXTAREAHEIGHT));
         pheromoneDecayPanel.add(pheromoneDecayTextArea);
 
@@ -1033,8 +1501,8 @@ public class GUISimulation {
         pheromoneDecayButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                engine.setPheromoneDecay(Integer.parseInt(pheromoneDecayTextArea.getText()));
-                drawSimulation();
+                int pheromoneDecay = Integer.parseInt(pheromoneDecayTextArea.getText());
+                editEngine(target -> target.setPheromoneDecay(pheromoneDecay));
             }
         });
         pheromoneDecayPanel.add(pheromoneDecayButton);
@@ -1056,7 +1524,7 @@ public class GUISimulation {
         JLabel pheromoneStrengthLabel = new JLabel("Pheromone strength: ");
         pheromonePanel.add(pheromoneStrengthLabel);
 
-        JTextArea pheromoneTextArea = new JTextArea(String.valueOf(engine.getPheromoneGrid(selectedRow, selectedColumn)));
+        JTextArea pheromoneTextArea = new JTextArea(String.valueOf(view.getPheromoneGrid(selectedRow, selectedColumn)));
         pheromoneTextArea.setMaximumSize(new Dimension(MAXTEXTAREAWIDTH, MAXTEXTAREAHEIGHT));
         pheromonePanel.add(pheromoneTextArea);
 
@@ -1064,8 +1532,10 @@ public class GUISimulation {
         pheromoneButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                engine.setPheromoneGrid(selectedRow, selectedColumn, Integer.parseInt(pheromoneTextArea.getText()));
-                drawSimulation();
+                int row = selectedRow;  // the selection can change before the edit is made
+                int column = selectedColumn;
+                int pheromone = Integer.parseInt(pheromoneTextArea.getText());
+                editEngine(target -> target.setPheromoneGrid(row, column, pheromone));
             }
         });
         pheromonePanel.add(pheromoneButton);
@@ -1080,6 +1550,7 @@ public class GUISimulation {
             public void stateChanged(ChangeEvent e) {
                 timerDelay = (int) delaySlider.getValue();
                 turnTimer.setDelay(timerDelay * 100);  // Update the timer's delay
+                getPerformanceHud().setTurnBudgetMillis(timerDelay * 100);
             }
         });
         delaySlider.setMajorTickSpacing(maxTimerDelay - minTimerDelay);
@@ -1118,14 +1589,14 @@ public class GUISimulation {
         selectedTilePanel.add(pheromonePanel);
 
         // Only display food stats if the tile is not an obstacle or colony
-        if (engine.getTerrainGrid(selectedRow, selectedColumn) >= 0) {
+        if (view.getTerrainGrid(selectedRow, selectedColumn) >= 0) {
             JPanel numFoodPanel = new JPanel();
             numFoodPanel.setLayout(new BoxLayout(numFoodPanel, BoxLayout.X_AXIS));
 
             JLabel numFoodLabel = new JLabel("Amount of food: ");
             numFoodPanel.add(numFoodLabel);
 
-            JTextArea numFoodTextArea = new JTextArea(String.valueOf(engine.getTerrainGrid(selectedRow, selectedColumn)));
+            JTextArea numFoodTextArea = new JTextArea(String.valueOf(view.getTerrainGrid(selectedRow, selectedColumn)));
             numFoodTextArea.setMaximumSize(new Dimension(MAXTEXTAREAWIDTH, MAXTEXTAREAHEIGHT));
             numFoodPanel.add(numFoodTextArea);
 
@@ -1133,8 +1604,14 @@ public class GUISimulation {
             numFoodButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    engine.setTerrainGrid(selectedRow, selectedColumn, Integer.parseInt(numFoodTextArea.getText()));
-                    drawSimulation();
+                    int row = selectedRow;
+                    int column = selectedColumn;
+                    int food = Integer.parseInt(numFoodTextArea.getText());
+                    editEngine(target -> {
+                        if (target.getTerrainGrid(row, column) >= 0) {  // an ant could have emptied it, but it can't have become an obstacle
+                            target.setTerrainGrid(row, column, food);
+                        }
+                    });
                 }
             });
             numFoodPanel.add(numFoodButton);
@@ -1144,7 +1621,7 @@ public class GUISimulation {
         }
 
         // Only allow change colony location to here if it is not an obstacle
-        if (engine.getTerrainGrid(selectedRow, selectedColumn) != AntColonyEngine.OBSTACLE) {
+        if (view.getTerrainGrid(selectedRow, selectedColumn) != AntColonyEngine.OBSTACLE) {
             JPanel changeColonyPanel = new JPanel();
             changeColonyPanel.setLayout(new BoxLayout(changeColonyPanel, BoxLayout.X_AXIS));
 
@@ -1152,12 +1629,14 @@ public class GUISimulation {
             changeColonyButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    engine.setTerrainGrid(engine.getColonyRow(), engine.getColonyColumn(), AntColonyEngine.EMPTY);
-                    engine.setTerrainGrid(selectedRow, selectedColumn, AntColonyEngine.COLONY);
-                    engine.setColonyRow(selectedRow);
-                    engine.setColonyColumn(selectedColumn);
-
-                    drawSimulation();
+                    int row = selectedRow;
+                    int column = selectedColumn;
+                    editEngine(target -> {
+                        target.setTerrainGrid(target.getColonyRow(), target.getColonyColumn(), AntColonyEngine.EMPTY);
+                        target.setTerrainGrid(row, column, AntColonyEngine.COLONY);
+                        target.setColonyRow(row);
+                        target.setColonyColumn(column);
+                    });
                 }
             });
             changeColonyPanel.add(changeColonyButton);
@@ -1167,7 +1646,7 @@ public class GUISimulation {
         }
 
         // Display change to obstacle or remove obstacle depending on what is on the tile
-        if (engine.getTerrainGrid(selectedRow, selectedColumn) == AntColonyEngine.OBSTACLE) {
+        if (view.getTerrainGrid(selectedRow, selectedColumn) == AntColonyEngine.OBSTACLE) {
             JPanel changeObstaclePanel = new JPanel();
             changeObstaclePanel.setLayout(new BoxLayout(changeObstaclePanel, BoxLayout.X_AXIS));
 
@@ -1175,16 +1654,16 @@ public class GUISimulation {
             changeObstacleButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    engine.setTerrainGrid(selectedRow, selectedColumn, AntColonyEngine.EMPTY);
-
-                    drawSimulation();
+                    int row = selectedRow;
+                    int column = selectedColumn;
+                    editEngine(target -> target.setTerrainGrid(row, column, AntColonyEngine.EMPTY));
                 }
             });
             changeObstaclePanel.add(changeObstacleButton);
 
             selectedTilePanel.add(changeObstaclePanel);
 
-        } else if (engine.getTerrainGrid(selectedRow, selectedColumn) == AntColonyEngine.EMPTY) {
+        } else if (view.getTerrainGrid(selectedRow, selectedColumn) == AntColonyEngine.EMPTY) {
             JPanel changeObstaclePanel = new JPanel();
             changeObstaclePanel.setLayout(new BoxLayout(changeObstaclePanel, BoxLayout.X_AXIS));
 
@@ -1192,9 +1671,13 @@ public class GUISimulation {
             changeObstacleButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    engine.setTerrainGrid(selectedRow, selectedColumn, AntColonyEngine.OBSTACLE);
-
-                    drawSimulation();
+                    int row = selectedRow;
+                    int column = selectedColumn;
+                    editEngine(target -> {
+                        if (target.getTerrainGrid(row, column) >= 0) {  // never over the colony
+                            target.setTerrainGrid(row, column, AntColonyEngine.OBSTACLE);
+                        }
+                    });
                 }
             });
             changeObstaclePanel.add(changeObstacleButton);
@@ -1204,7 +1687,7 @@ public class GUISimulation {
         }
 
         // Option to add ants only if tile is not an obstacle
-        if (engine.getTerrainGrid(selectedRow, selectedColumn) != AntColonyEngine.OBSTACLE) {
+        if (view.getTerrainGrid(selectedRow, selectedColumn) != AntColonyEngine.OBSTACLE) {
             JPanel addAntPanel = new JPanel();
             addAntPanel.setLayout(new BoxLayout(addAntPanel, BoxLayout.X_AXIS));
 
@@ -1212,9 +1695,9 @@ public class GUISimulation {
             addAntButton.addActionListener(new ActionListener() {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    engine.addAnt(selectedRow, selectedColumn, true);
-
-                    drawSimulation();
+                    int row = selectedRow;
+                    int column = selectedColumn;
+                    editEngine(target -> target.addAnt(row, column, true));
                 }
             });
             addAntPanel.add(addAntButton);
@@ -1224,10 +1707,12 @@ public class GUISimulation {
         }
 
         // if there are ants on the tile, list out all of them, with the option to toggle found food or not, and button to delete them
-        if (engine.getAntGrid(selectedRow, selectedColumn) > 0) {
-            for (int i = 0; i < engine.getNumAnts(); i++) {
-                if (engine.getAntRow(i) == selectedRow && engine.getAntColumn(i) == selectedColumn) {
+        if (view.getAntGrid(selectedRow, selectedColumn) > 0) {
+            for (int i = 0; i < view.getNumAnts(); i++) {
+                if (view.getAntRow(i) == selectedRow && view.getAntColumn(i) == selectedColumn) {
                     int finalI = i;  // final copy of index variable
+                    int listedRow = selectedRow;  // where the ant was when it was listed
+                    int listedColumn = selectedColumn;
 
                     JPanel antPanel = new JPanel();
                     antPanel.setLayout(new BoxLayout(antPanel, BoxLayout.X_AXIS));
@@ -1236,14 +1721,16 @@ public class GUISimulation {
                     antPanel.add(numFoodLabel);
 
                     JComboBox foundFoodComboBox = new JComboBox(booleanOptions);
-                    foundFoodComboBox.setSelectedItem(Boolean.toString(engine.getAntFoundFood(finalI)));
+                    foundFoodComboBox.setSelectedItem(Boolean.toString(view.getAntFoundFood(finalI)));
                     foundFoodComboBox.setMaximumSize(new Dimension(MAXCOMBOBOXWIDTH, MAXCOMBOBOXHEIGHT));
                     foundFoodComboBox.addActionListener(new ActionListener() {
                         @Override
                         public void actionPerformed(ActionEvent e) {
-                            engine.setAntFoundFood(finalI, Boolean.parseBoolean(foundFoodComboBox.getSelectedItem().toString()));
-
-                            drawSimulation();
+                            boolean foundFood = Boolean.parseBoolean(foundFoodComboBox.getSelectedItem().toString());
+                            editEngine(target -> {
+                                checkAntStillOnTile(target, finalI, listedRow, listedColumn);
+                                target.setAntFoundFood(finalI, foundFood);
+                            });
                         }
                     });
                     antPanel.add(foundFoodComboBox);
@@ -1252,9 +1739,10 @@ public class GUISimulation {
                     deleteAntButton.addActionListener(new ActionListener() {
                         @Override
                         public void actionPerformed(ActionEvent e) {
-                            engine.deleteAnt(finalI);
-
-                            drawSimulation();
+                            editEngine(target -> {
+                                checkAntStillOnTile(target, finalI, listedRow, listedColumn);
+                                target.deleteAnt(finalI);
+                            });
                         }
                     });
                     antPanel.add(deleteAntButton);
@@ -1281,24 +1769,43 @@ public class GUISimulation {
         numFoodButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                // Write the engine object to a file
-                try {
-                    FileOutputStream f = new FileOutputStream(new File("presets/" + saveNameTextArea.getText() + ".txt"));
-                    ObjectOutputStream o = new ObjectOutputStream(f);
-
-                    o.writeObject(engine);
-                    f.close();
-                    o.close();
-
-                    JOptionPane.showMessageDialog(null, "Simulation saved successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                } catch (IOException exception) {
-                    JOptionPane.showMessageDialog(null, "Error saving simulation", "Error", JOptionPane.WARNING_MESSAGE);
-                }
-
+                // Copy the engine now and write it in the background, so the simulation keeps running while it is saved
+                File presetFile = new File("presets/" + saveNameTextArea.getText() + ".txt");
+                autosaver.save(engine, presetFile).whenComplete((saved, error) -> {
+                    if (error == null) {
+                        try {
+                            presetLibrary.saved(presetFile, saved);  // so the preset browser can show it without reading it
+                        } catch (IOException exception) {
+                            // Only the sidecar is missing, the browser will make it again
+                        }
+                    }
+                    SwingUtilities.invokeLater(() -> {
+                        if (error == null) {
+                            JOptionPane.showMessageDialog(null, "Simulation saved successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(null, "Error saving simulation", "Error", JOptionPane.WARNING_MESSAGE);
+                        }
+                    });
+                });
             }
         });
         savePanel.add(numFoodButton);
 
+        JButton checkpointButton = new JButton("Autosave now");
+        checkpointButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                autosaver.checkpoint(engine).whenComplete((checkpoint, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error == null) {
+                        JOptionPane.showMessageDialog(null, "Simulation saved as " + checkpoint.getPath(), "Success", JOptionPane.INFORMATION_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(null, "Error saving simulation", "Error", JOptionPane.WARNING_MESSAGE);
+                    }
+                }));
+            }
+        });
+        savePanel.add(checkpointButton);
+
         selectedTilePanel.add(savePanel);
 
         JButton exitButton = new JButton("Exit Simulation");
@@ -1307,6 +1814,8 @@ public class GUISimulation {
             public void actionPerformed(ActionEvent e) {
                 // stop the timer and return to main menu
                 turnTimer.stop();
+                stopPublishing();
+                closeAutosaver();
                 mainMenu();
             }
         });
@@ -1321,5 +1830,15 @@ public class GUISimulation {
         // Update the screen
         frame.revalidate();
         frame.repaint();
+
+        getPerformanceHud().recordRender(System.nanoTime() - renderStart);
+
+        renderEvent.end();
+        if (renderEvent.shouldCommit()) {
+            renderEvent.turn = view.getTurn();
+            renderEvent.numAnts = view.getNumAnts();
+            renderEvent.tiles = view.getNumRows() * view.getNumColumns();
+            renderEvent.commit();
+        }
     }
 }
@@ -5,7 +5,28 @@
  * @since 1.0
  */
 public class Main {
+    /**
+     * Starts the GUI simulation
+     * Optional arguments: <code>--fast-start</code> skips the splash screen,
+     * <code>--preset &lt;name&gt;</code> skips the splash screen and opens a preset from the presets folder straight away,
+     * <code>--exit-when-ready</code> exits as soon as the first screen is up (for timing startup)
+     *
+     * @param args command line arguments
+     */
     public static void main(String[] args) {
-        GUISimulation simulation = new GUISimulation();
+        boolean fastStart = Boolean.getBoolean("ant.fastStart");
+        String presetName = null;
+        boolean exitWhenReady = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--fast-start")) {
+                fastStart = true;
+            } else if (args[i].equals("--preset") && i + 1 < args.length) {
+                presetName = args[i + 1];
+            } else if (args[i].equals("--exit-when-ready")) {
+                exitWhenReady = true;
+            }
+        }
+
+        GUISimulation simulation = new GUISimulation(fastStart, presetName, exitWhenReady);
     }
-}
\ No newline at end of file
+}
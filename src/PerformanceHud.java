@@ -0,0 +1,138 @@
+import javax.swing.*;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Small panel in the simulation control panel that shows how fast the simulation is running
+ * The panel is created once and only its labels change, so refreshing it doesn't rebuild the GUI
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class PerformanceHud extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    final private int REFRESHDELAY = 500;  // milliseconds between refreshes
+
+    final private JLabel turnRateLabel = new JLabel();
+    final private JLabel phaseLabel = new JLabel();
+    final private JLabel allocationLabel = new JLabel();
+    final private JLabel heapLabel = new JLabel();
+
+    final private EngineMetrics metrics;
+    final private com.sun.management.ThreadMXBean threadBean;  // null if the JVM can't measure allocations
+
+    private int turnsSinceRefresh = 0;
+    private long lastRefreshNanos = System.nanoTime();
+    private long lastRenderNanos = 0;
+    private long lastTurnAllocatedBytes = 0;
+    private long allocatedBeforeTurn = 0;
+    private int turnBudgetMillis = Integer.MAX_VALUE;  // time available per turn before the simulation falls behind
+
+    /**
+     * Creates the HUD and starts refreshing it
+     *
+     * @param metrics metrics the engine records phase timings into
+     */
+    public PerformanceHud(EngineMetrics metrics) {
+        this.metrics = metrics;
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            this.threadBean = (com.sun.management.ThreadMXBean) bean;
+            this.threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.threadBean = null;
+        }
+
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        setBorder(BorderFactory.createTitledBorder("Performance"));
+        setAlignmentX(CENTER_ALIGNMENT);
+        setMaximumSize(new Dimension(400, 110));
+
+        Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        for (JLabel label : new JLabel[]{turnRateLabel, phaseLabel, allocationLabel, heapLabel}) {
+            label.setFont(font);
+            add(label);
+        }
+
+        refresh();
+
+        Timer refreshTimer = new Timer(REFRESHDELAY, e -> refresh());
+        refreshTimer.start();
+    }
+
+    /**
+     * Call just before the engine updates, to start measuring allocations
+     */
+    public void beforeTurn() {
+        allocatedBeforeTurn = allocatedBytes();
+    }
+
+    /**
+     * Call just after the engine updates
+     */
+    public void afterTurn() {
+        lastTurnAllocatedBytes = allocatedBytes() - allocatedBeforeTurn;
+        turnsSinceRefresh++;
+    }
+
+    /**
+     * Records how long the last redraw of the simulation took
+     *
+     * @param nanos duration of the redraw
+     */
+    public void recordRender(long nanos) {
+        lastRenderNanos = nanos;
+    }
+
+    /**
+     * Sets how long a turn and its redraw can take before the simulation falls behind the turn timer
+     * The HUD turns red when that happens
+     *
+     * @param turnBudgetMillis the turn timer's delay
+     */
+    public void setTurnBudgetMillis(int turnBudgetMillis) {
+        this.turnBudgetMillis = turnBudgetMillis;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far
+     *
+     * @return allocated bytes, or 0 if the JVM can't measure it
+     */
+    private long allocatedBytes() {
+        if (threadBean == null) {
+            return 0;
+        }
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Updates the text of the labels
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        double seconds = (now - lastRefreshNanos) / 1e9;
+        double turnsPerSecond = turnsSinceRefresh / seconds;
+        turnsSinceRefresh = 0;
+        lastRefreshNanos = now;
+
+        turnRateLabel.setText(String.format("turns/s %7.1f   turn %7.2f ms", turnsPerSecond, metrics.getLastTurnNanos() / 1e6));
+        phaseLabel.setText(String.format("move %.2f  path %.2f  diffuse %.2f  render %.2f ms",
+                metrics.getLastMoveNanos() / 1e6, metrics.getLastPathLookupNanos() / 1e6, metrics.getLastDiffusionNanos() / 1e6, lastRenderNanos / 1e6));
+        allocationLabel.setText(threadBean == null ? "alloc/turn n/a" : String.format("alloc/turn %,d KB", lastTurnAllocatedBytes / 1024));
+
+        Runtime runtime = Runtime.getRuntime();
+        long usedMegabytes = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        heapLabel.setText(String.format("heap %,d / %,d MB", usedMegabytes, runtime.maxMemory() / (1024 * 1024)));
+
+        // Red means turns take longer than the timer allows, so the simulation is running slower than requested
+        boolean slow = (metrics.getLastTurnNanos() + lastRenderNanos) / 1_000_000 > turnBudgetMillis;
+        Color color = slow ? Color.RED : Color.BLACK;
+        turnRateLabel.setForeground(color);
+        phaseLabel.setForeground(color);
+    }
+}
@@ -0,0 +1,1140 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Simulation that keeps track of how many ants are on each tile instead of keeping track of each ant
+ * Every tile stores the number of ants searching for food and the number returning to the colony,
+ * and all the ants on a tile are moved together by splitting them randomly between the four directions,
+ * with the same chances a single ant in <code>AntColonyEngine</code> would have
+ * The time per turn depends on the size of the grid, not on the number of ants, so it can run tens of millions of ants;
+ * moving them only visits the tiles that have ants on them, which are tracked in a bitmap
+ *
+ * The results are statistically the same as <code>AntColonyEngine</code>, but not move for move the same:
+ * in the per-ant engine each ant sees the food and pheromones left by the ants that moved before it in the same turn,
+ * here every ant on a tile sees the grid as it was at the start of the turn
+ *
+ * Ants don't have an identity here, so the per-ant methods number them tile by tile (row by row, searching ants
+ * before returning ones on each tile); the numbering changes every turn
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class PopulationEngine implements SimulationEngine {
+    private static final long serialVersionUID = 1L;
+
+    final private static int NORMALTHRESHOLD = 20;  // binomial draws with a mean above this use the normal approximation
+
+    final private int numRows;
+    final private int numColumns;
+    private int colonyRow;
+    private int colonyColumn;
+
+    final private int[][] terrainGrid;
+    private int[][] pheromoneGrid;
+    private int[][] searching;                  // number of ants searching for food on each tile
+    private int[][] returning;                  // number of ants carrying food on each tile
+    private transient int[][] nextSearching;    // filled in during a turn, then swapped with searching
+    private transient int[][] nextReturning;
+    private transient long[] occupied;          // bit (row * numColumns + column) is set for every tile that may have ants on it
+    private transient long[] nextOccupied;      // same for the next grids: every tile they may have ants on
+    final private byte[][] neighbourMask;       // same layout as AntColonyEngine's
+    private transient ColonyDistanceField colonyField;  // null until needed, and again after every edit that could change it
+    private transient int[] firstAntOfSlot;     // numbering of the ants for the per-ant methods, null until needed
+    private transient FoodIndex foodIndex;      // only built if someone asks for it, then kept up to date
+
+    private int pheromoneStrength;
+    private int pheromoneDecay;
+    private int minimumPheromone;
+
+    private int turn;
+    private transient Random random;
+
+    private transient EngineMetrics metrics;
+    private transient ArrayList<TurnListener> turnListeners;
+    private transient EditQueue editQueue;  // edits from other threads, applied at the start of every turn
+
+    // Totals, kept up to date so they don't need a scan
+    private long numSearching;
+    private long numReturning;
+    private long totalFood;
+    private transient long foodDeliveredTotal;  // since this engine was created or loaded
+    private transient int foodDeliveredThisTurn;
+    private transient int foodPickedUpThisTurn;
+    private transient int antsMovedThisTurn;
+    private long pheromoneSum;
+    private int pheromoneMax;
+    private boolean pheromoneMaxStale;  // the highest tile was lowered by an edit, so the max has to be found again
+
+    /**
+     * Creates a population simulation with the same grid, ants and settings as another engine
+     *
+     * @param engine the engine to copy
+     */
+    public PopulationEngine(SimulationEngine engine) {
+        this.numRows = engine.getNumRows();
+        this.numColumns = engine.getNumColumns();
+        this.colonyRow = engine.getColonyRow();
+        this.colonyColumn = engine.getColonyColumn();
+
+        this.terrainGrid = new int[numRows][numColumns];
+        this.pheromoneGrid = new int[numRows][numColumns];
+        this.searching = new int[numRows][numColumns];
+        this.returning = new int[numRows][numColumns];
+        this.neighbourMask = new byte[numRows][numColumns];
+        this.occupied = new long[(numRows * numColumns + 63) >>> 6];
+
+        int[] pheromone = new int[numRows * numColumns];
+        int[] terrain = new int[numRows * numColumns];
+        engine.copyGrids(pheromone, terrain, null);
+        for (int row = 0; row < numRows; row++) {
+            System.arraycopy(terrain, row * numColumns, terrainGrid[row], 0, numColumns);
+            System.arraycopy(pheromone, row * numColumns, pheromoneGrid[row], 0, numColumns);
+        }
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                neighbourMask[row][column] = AntColonyEngine.computeNeighbourMask(terrainGrid, row, column);
+                if (terrainGrid[row][column] > 0) {
+                    totalFood += terrainGrid[row][column];
+                }
+                pheromoneSum += pheromoneGrid[row][column];
+            }
+        }
+        this.pheromoneMax = engine.getPheromoneMax();
+
+        if (engine instanceof PopulationEngine) {
+            // Copy the counts straight across instead of going through millions of ants one at a time
+            PopulationEngine population = (PopulationEngine) engine;
+            for (int row = 0; row < numRows; row++) {
+                searching[row] = population.searching[row].clone();
+                returning[row] = population.returning[row].clone();
+            }
+            this.numSearching = population.numSearching;
+            this.numReturning = population.numReturning;
+            this.occupied = population.occupied.clone();
+        } else {
+            for (int i = 0; i < engine.getNumAnts(); i++) {
+                addAnts(engine.getAntRow(i), engine.getAntColumn(i), 1, engine.getAntFoundFood(i));
+            }
+        }
+
+        this.pheromoneStrength = engine.getPheromoneStrength();
+        this.pheromoneDecay = engine.getPheromoneDecay();
+        this.minimumPheromone = engine.getMinimumPheromone();
+        this.turn = engine.getTurn();
+
+        createTransients();
+    }
+
+    /**
+     * Called by Java when the engine is loaded from a preset
+     * Transient fields are not saved, so they have to be recreated here
+     *
+     * @param in the stream the engine is read from
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        findOccupiedTiles();
+        createTransients();
+    }
+
+    /**
+     * Rebuilds the bitmap of tiles with ants on them from the grids
+     */
+    private void findOccupiedTiles() {
+        occupied = new long[(numRows * numColumns + 63) >>> 6];
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                if (searching[row][column] != 0 || returning[row][column] != 0) {
+                    markOccupied(occupied, row, column);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the fields that aren't saved with the engine
+     */
+    private void createTransients() {
+        this.nextSearching = new int[numRows][numColumns];
+        this.nextReturning = new int[numRows][numColumns];
+        this.nextOccupied = new long[occupied.length];  // the next grids start out empty
+        this.random = new Random();
+        this.turnListeners = new ArrayList<>();
+        this.editQueue = new EditQueue(this);
+    }
+
+    /**
+     * Creates a deep copy of the simulation, so the copy can be updated without affecting this one
+     *
+     * @return the copy
+     */
+    public PopulationEngine copy() {
+        return new PopulationEngine(this);
+    }
+
+    /**
+     * Seeds the random number generator, so runs can be repeated
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Adds ants to a tile
+     *
+     * @param row       row of the tile
+     * @param column    column of the tile
+     * @param count     number of ants to add
+     * @param foundFood whether the new ants are carrying food
+     */
+    public void addAnts(int row, int column, int count, boolean foundFood) {
+        if (foundFood) {
+            returning[row][column] += count;
+            numReturning += count;
+        } else {
+            searching[row][column] += count;
+            numSearching += count;
+        }
+        markOccupied(occupied, row, column);
+        firstAntOfSlot = null;
+    }
+
+    /**
+     * Updates the simulation by one turn: every ant moves, then pheromones spread and decay
+     */
+    public void update() {
+        editQueue.drain();
+        long turnStart = metrics != null ? System.nanoTime() : 0;
+
+        antsMovedThisTurn = 0;
+        clearNextGrids();
+        moveSearchingAnts();
+        long returningStart = metrics != null ? System.nanoTime() : 0;
+        moveReturningAnts();
+        pickUpFood();
+
+        // The ants have all been moved into the next grids, so swap them in
+        int[][] swap = searching;
+        searching = nextSearching;
+        nextSearching = swap;
+        swap = returning;
+        returning = nextReturning;
+        nextReturning = swap;
+        long[] swapOccupied = occupied;
+        occupied = nextOccupied;
+        nextOccupied = swapOccupied;
+        firstAntOfSlot = null;
+
+        long diffusionStart = metrics != null ? System.nanoTime() : 0;
+        diffusePheromones();
+
+        if (metrics != null) {
+            long turnEnd = System.nanoTime();
+            metrics.recordTurn(turnEnd - turnStart, returningStart - turnStart, diffusionStart - returningStart, 0, turnEnd - diffusionStart,
+                    antsMovedThisTurn, foodPickedUpThisTurn, foodDeliveredThisTurn);
+        }
+
+        turn++;
+
+        for (TurnListener listener : turnListeners) {
+            listener.turnCompleted(this);
+        }
+    }
+
+    /**
+     * Runs several turns, the same as calling <code>update()</code> that many times
+     *
+     * @param turns number of turns to run
+     */
+    public void runTurns(int turns) {
+        for (int i = 0; i < turns; i++) {
+            update();
+        }
+    }
+
+    /**
+     * Returns the queue of edits waiting to be made at the start of the next turn
+     *
+     * @return the edit queue
+     */
+    public EditQueue getEditQueue() {
+        return editQueue;
+    }
+
+    /**
+     * Adds a listener that is told whenever a turn finishes
+     *
+     * @param listener the listener
+     */
+    public void addTurnListener(TurnListener listener) {
+        turnListeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about finished turns
+     *
+     * @param listener the listener
+     */
+    public void removeTurnListener(TurnListener listener) {
+        turnListeners.remove(listener);
+    }
+
+    /**
+     * Returns the distance field back to the colony, rebuilding it if the terrain or colony changed
+     *
+     * @return the distance field
+     */
+    private ColonyDistanceField getColonyField() {
+        if (colonyField == null) {
+            colonyField = new ColonyDistanceField(numRows, numColumns);
+            colonyField.rebuild(terrainGrid, colonyRow, colonyColumn);
+        }
+        return colonyField;
+    }
+
+    /**
+     * Marks a tile as having ants on it
+     *
+     * @param bitmap <code>occupied</code> or <code>nextOccupied</code>
+     * @param row    row of the tile
+     * @param column column of the tile
+     */
+    private void markOccupied(long[] bitmap, int row, int column) {
+        int tile = row * numColumns + column;
+        bitmap[tile >>> 6] |= 1L << tile;  // the shift only uses the low 6 bits
+    }
+
+    /**
+     * Empties the next grids, which still hold the ants from the turn before last, by clearing only the tiles they had ants on
+     */
+    private void clearNextGrids() {
+        for (int word = 0; word < nextOccupied.length; word++) {
+            long bits = nextOccupied[word];
+            nextOccupied[word] = 0;
+            while (bits != 0) {
+                int tile = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                nextSearching[tile / numColumns][tile % numColumns] = 0;
+                nextReturning[tile / numColumns][tile % numColumns] = 0;
+            }
+        }
+    }
+
+    /**
+     * Moves the ants searching for food into <code>nextSearching</code>
+     * Ants next to food all move onto it, the rest are split between the directions in proportion to the pheromones
+     * Only the tiles with ants on them are visited, in row by row order so the random draws come out the same as a full scan
+     */
+    private void moveSearchingAnts() {
+        int[] weights = new int[4];
+
+        for (int word = 0; word < occupied.length; word++) {
+            long bits = occupied[word];
+            while (bits != 0) {
+                int tile = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int row = tile / numColumns;
+                int column = tile % numColumns;
+                int ants = searching[row][column];
+                if (ants == 0) {
+                    continue;
+                }
+
+                int mask = neighbourMask[row][column];
+                int foodDirection = -1;
+                long totalWeight = 0;
+
+                for (int i = 0; i < 4; i++) {
+                    weights[i] = 0;
+                    if ((mask & 1 << i) == 0) {
+                        continue;
+                    }
+                    int targetRow = row + AntColonyEngine.DIRECTIONS[i][0];
+                    int targetColumn = column + AntColonyEngine.DIRECTIONS[i][1];
+                    if (terrainGrid[targetRow][targetColumn] > 0) {  // food next door, so every ant goes there
+                        foodDirection = i;
+                        break;
+                    }
+                    // The per-ant engine reads the pheromone at {row, row} instead of {row, column}, and so does this,
+                    // so that the two engines give the same results
+                    weights[i] = pheromoneGrid[targetRow][targetRow];
+                    totalWeight += weights[i];
+                }
+
+                if (foodDirection >= 0) {
+                    moveAnts(nextSearching, row, column, foodDirection, ants);
+                    antsMovedThisTurn += ants;
+                } else if (totalWeight <= 0) {
+                    nextSearching[row][column] += ants;  // nowhere to go
+                    markOccupied(nextOccupied, row, column);
+                } else {
+                    // Split the ants between the directions: each direction takes a binomial share of the ants left,
+                    // with its chance out of the weight left, which together is one multinomial draw
+                    int antsLeft = ants;
+                    long weightLeft = totalWeight;
+                    for (int i = 0; i < 4 && antsLeft > 0; i++) {
+                        if (weights[i] == 0) {
+                            continue;
+                        }
+                        int movers = weights[i] == weightLeft ? antsLeft : binomial(antsLeft, weights[i] / (double) weightLeft);
+                        moveAnts(nextSearching, row, column, i, movers);
+                        antsMovedThisTurn += movers;
+                        antsLeft -= movers;
+                        weightLeft -= weights[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the ants carrying food one step along the shortest path to the colony, into <code>nextReturning</code>
+     * Ants that reach the colony drop off their food and start searching again
+     */
+    private void moveReturningAnts() {
+        foodDeliveredThisTurn = 0;
+
+        for (int word = 0; word < occupied.length; word++) {
+            long bits = occupied[word];
+            while (bits != 0) {
+                int tile = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int row = tile / numColumns;
+                int column = tile % numColumns;
+                int ants = returning[row][column];
+                if (ants == 0) {
+                    continue;
+                }
+
+                int direction = getColonyField().getNextDirection(row, column);
+                int targetRow = row;
+                int targetColumn = column;
+                if (direction >= 0) {
+                    targetRow += AntColonyEngine.DIRECTIONS[direction][0];
+                    targetColumn += AntColonyEngine.DIRECTIONS[direction][1];
+                    antsMovedThisTurn += ants;
+                }
+
+                if (targetRow == colonyRow && targetColumn == colonyColumn) {
+                    // Made it back (ants that were added on top of the colony with food drop it straight away)
+                    nextSearching[targetRow][targetColumn] += ants;
+                    foodDeliveredThisTurn += ants;
+                    numReturning -= ants;
+                    numSearching += ants;
+                } else {
+                    nextReturning[targetRow][targetColumn] += ants;
+                }
+                markOccupied(nextOccupied, targetRow, targetColumn);
+            }
+        }
+
+        foodDeliveredTotal += foodDeliveredThisTurn;
+    }
+
+    /**
+     * Searching ants that are standing on food pick up one unit each, until the food runs out
+     * Each unit picked up leaves a trail of pheromones on the tile
+     */
+    private void pickUpFood() {
+        foodPickedUpThisTurn = 0;
+        for (int word = 0; word < nextOccupied.length; word++) {
+            long bits = nextOccupied[word];
+            while (bits != 0) {
+                int tile = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int row = tile / numColumns;
+                int column = tile % numColumns;
+                int food = terrainGrid[row][column];
+                int ants = nextSearching[row][column];
+                if (food <= 0 || ants == 0) {
+                    continue;
+                }
+
+                int pickedUp = Math.min(food, ants);
+                foodPickedUpThisTurn += pickedUp;
+                terrainGrid[row][column] -= pickedUp;
+                totalFood -= pickedUp;
+                if (foodIndex != null && terrainGrid[row][column] <= 0) {
+                    foodIndex.remove(row, column);
+                }
+                nextSearching[row][column] -= pickedUp;
+                nextReturning[row][column] += pickedUp;
+                numSearching -= pickedUp;
+                numReturning += pickedUp;
+
+                int added = (int) Math.min(Integer.MAX_VALUE - (long) pheromoneGrid[row][column], (long) pheromoneStrength * pickedUp);
+                pheromoneGrid[row][column] += added;
+                pheromoneSum += added;
+                pheromoneMax = Math.max(pheromoneMax, pheromoneGrid[row][column]);
+            }
+        }
+    }
+
+    /**
+     * Adds ants to the tile in a direction from a tile
+     *
+     * @param grid      next grid to add the ants to (the tile is marked in <code>nextOccupied</code>)
+     * @param row       row the ants are moving from
+     * @param column    column the ants are moving from
+     * @param direction direction they move in
+     * @param ants      number of ants
+     */
+    private void moveAnts(int[][] grid, int row, int column, int direction, int ants) {
+        int targetRow = row + AntColonyEngine.DIRECTIONS[direction][0];
+        int targetColumn = column + AntColonyEngine.DIRECTIONS[direction][1];
+        grid[targetRow][targetColumn] += ants;
+        markOccupied(nextOccupied, targetRow, targetColumn);
+    }
+
+    /**
+     * Same diffusion and decay as <code>AntColonyEngine</code>
+     */
+    private void diffusePheromones() {
+        int[][] newPheromoneGrid = new int[numRows][numColumns];
+        long sum = 0;
+        int highest = Integer.MIN_VALUE;
+
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < numColumns; column++) {
+                int mask = neighbourMask[row][column];
+                long areaSum = pheromoneGrid[row][column];
+                for (int i = 0; i < 4; i++) {
+                    if ((mask & 1 << i) != 0) {
+                        areaSum += pheromoneGrid[row + AntColonyEngine.DIRECTIONS[i][0]][column + AntColonyEngine.DIRECTIONS[i][1]];
+                    }
+                }
+
+                int value = (int) (areaSum / (mask >> AntColonyEngine.COUNTSHIFT)) - pheromoneDecay;
+                if (value < minimumPheromone) {
+                    value = minimumPheromone;
+                }
+                newPheromoneGrid[row][column] = value;
+                sum += value;
+                highest = Math.max(highest, value);
+            }
+        }
+
+        pheromoneGrid = newPheromoneGrid;
+        pheromoneSum = sum;
+        pheromoneMax = highest;
+        pheromoneMaxStale = false;
+    }
+
+    /**
+     * Draws the number of successes out of n tries that each succeed with chance p
+     * Small means are drawn exactly by jumping between successes; large ones use the normal approximation,
+     * which is very close once there are more than about 20 expected successes
+     *
+     * @param n number of tries
+     * @param p chance of success of each try
+     * @return  number of successes
+     */
+    private int binomial(int n, double p) {
+        if (p <= 0) {
+            return 0;
+        } else if (p >= 1) {
+            return n;
+        } else if (p > 0.5) {
+            return n - binomial(n, 1 - p);  // fewer jumps the other way around
+        }
+
+        double mean = n * p;
+        if (mean < NORMALTHRESHOLD) {
+            // The gaps between successes are geometric, so jump from one success to the next
+            double logFailure = Math.log(1 - p);
+            int successes = 0;
+            long position = 0;
+            while (true) {
+                position += (long) (Math.log(1 - random.nextDouble()) / logFailure) + 1;
+                if (position > n) {
+                    return successes;
+                }
+                successes++;
+            }
+        }
+
+        long draw = Math.round(mean + Math.sqrt(mean * (1 - p)) * random.nextGaussian());
+        return (int) Math.max(0, Math.min(n, draw));
+    }
+
+    /**
+     * Finds which tile an ant is on, and whether it is one of the searching or returning ants there
+     * Every tile has two slots (searching then returning), and the ants are numbered through the slots in order
+     *
+     * @param index index of the ant
+     * @return      the slot: (row * numColumns + column) * 2, plus 1 for returning ants
+     */
+    private int findSlot(int index) {
+        if (firstAntOfSlot == null) {
+            // firstAntOfSlot[slot] is the index of the first ant in the slot, and the last entry is the number of ants
+            firstAntOfSlot = new int[numRows * numColumns * 2 + 1];
+            int count = 0;
+            for (int row = 0; row < numRows; row++) {
+                for (int column = 0; column < numColumns; column++) {
+                    int slot = (row * numColumns + column) * 2;
+                    firstAntOfSlot[slot] = count;
+                    count = Math.addExact(count, searching[row][column]);
+                    firstAntOfSlot[slot + 1] = count;
+                    count = Math.addExact(count, returning[row][column]);
+                }
+            }
+            firstAntOfSlot[numRows * numColumns * 2] = count;
+        }
+        if (index < 0 || index >= firstAntOfSlot[firstAntOfSlot.length - 1]) {
+            throw new IndexOutOfBoundsException("Ant " + index + " out of " + firstAntOfSlot[firstAntOfSlot.length - 1]);
+        }
+
+        // Last slot that starts at or before the index; empty slots start at the same index as the next one
+        int low = 0;
+        int high = firstAntOfSlot.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstAntOfSlot[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the current turn
+     *
+     * @return the turn
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Sets the turn of the simulation
+     *
+     * @param turn the turn to set it to
+     */
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+
+    /**
+     * Returns the metrics the engine records its timings into
+     * Searching and returning moves are timed as a whole, there is no separate path lookup
+     *
+     * @return the metrics, or null if none are attached
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Attaches metrics to record timings into, or detaches them
+     *
+     * @param metrics the metrics, or null to stop recording
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the number of rows in the simulation
+     *
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns in the simulation
+     *
+     * @return number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the row of the colony
+     *
+     * @return the row
+     */
+    public int getColonyRow() {
+        return colonyRow;
+    }
+
+    /**
+     * Moves the colony to another row; the terrain grid has to be changed separately
+     *
+     * @param colonyRow the new row
+     */
+    public void setColonyRow(int colonyRow) {
+        this.colonyRow = colonyRow;
+        colonyField = null;
+    }
+
+    /**
+     * Returns the column of the colony
+     *
+     * @return the column
+     */
+    public int getColonyColumn() {
+        return colonyColumn;
+    }
+
+    /**
+     * Moves the colony to another column; the terrain grid has to be changed separately
+     *
+     * @param colonyColumn the new column
+     */
+    public void setColonyColumn(int colonyColumn) {
+        this.colonyColumn = colonyColumn;
+        colonyField = null;
+    }
+
+    /**
+     * Returns the total number of ants
+     * Counts are kept as longs, but ants are numbered with ints, so there can't be more than Integer.MAX_VALUE of them
+     *
+     * @return number of ants
+     */
+    public int getNumAnts() {
+        return Math.toIntExact(numSearching + numReturning);
+    }
+
+    /**
+     * Returns the row of an ant
+     *
+     * @param index index of the ant
+     * @return      the row
+     */
+    public int getAntRow(int index) {
+        return findSlot(index) / 2 / numColumns;
+    }
+
+    /**
+     * Returns the column of an ant
+     *
+     * @param index index of the ant
+     * @return      the column
+     */
+    public int getAntColumn(int index) {
+        return findSlot(index) / 2 % numColumns;
+    }
+
+    /**
+     * Returns whether an ant is carrying food back to the colony
+     *
+     * @param index index of the ant
+     * @return      whether it has found food
+     */
+    public boolean getAntFoundFood(int index) {
+        return findSlot(index) % 2 == 1;
+    }
+
+    /**
+     * Changes whether an ant is carrying food, by moving one ant on its tile between searching and returning
+     *
+     * @param index     index of the ant
+     * @param foundFood whether it has found food
+     */
+    public void setAntFoundFood(int index, boolean foundFood) {
+        int slot = findSlot(index);
+        if (slot % 2 == 1 == foundFood) {
+            return;
+        }
+        int row = slot / 2 / numColumns;
+        int column = slot / 2 % numColumns;
+        addAnts(row, column, -1, !foundFood);
+        addAnts(row, column, 1, foundFood);
+    }
+
+    /**
+     * Adds an ant to a tile
+     *
+     * @param row       row of the tile
+     * @param column    column of the tile
+     * @param foundFood whether the new ant is carrying food
+     */
+    public void addAnt(int row, int column, boolean foundFood) {
+        addAnts(row, column, 1, foundFood);
+    }
+
+    /**
+     * Removes an ant
+     *
+     * @param index index of the ant
+     */
+    public void deleteAnt(int index) {
+        int slot = findSlot(index);
+        addAnts(slot / 2 / numColumns, slot / 2 % numColumns, -1, slot % 2 == 1);
+    }
+
+    /**
+     * Returns the number of ants carrying food back to the colony
+     *
+     * @return number of returning ants
+     */
+    public int getNumAntsCarryingFood() {
+        return Math.toIntExact(numReturning);
+    }
+
+    /**
+     * Returns the food left on every tile, added up
+     *
+     * @return total food
+     */
+    public int getTotalFood() {
+        return (int) totalFood;
+    }
+
+    /**
+     * Returns the index of tiles with food, for finding the nearest food or the food in an area
+     * The index is built the first time this is called, and kept up to date as food is picked up or edited after that
+     *
+     * @return the food index
+     */
+    public FoodIndex getFoodIndex() {
+        if (foodIndex == null) {
+            foodIndex = new FoodIndex(numRows, numColumns);
+            for (int row = 0; row < numRows; row++) {
+                for (int column = 0; column < numColumns; column++) {
+                    if (terrainGrid[row][column] > 0) {
+                        foodIndex.add(row, column);
+                    }
+                }
+            }
+        }
+        return foodIndex;
+    }
+
+    /**
+     * Returns the food brought back to the colony during the last turn
+     *
+     * @return units of food delivered
+     */
+    public int getFoodDeliveredThisTurn() {
+        return foodDeliveredThisTurn;
+    }
+
+    /**
+     * Returns the food brought back to the colony since this engine was created or loaded
+     *
+     * @return units of food delivered
+     */
+    public long getFoodDeliveredTotal() {
+        return foodDeliveredTotal;
+    }
+
+    /**
+     * Returns the pheromone level of every tile, added up
+     *
+     * @return sum of the pheromone grid
+     */
+    public long getPheromoneSum() {
+        return pheromoneSum;
+    }
+
+    /**
+     * Returns the highest pheromone level of any tile
+     * Only searches the grid if an edit lowered the highest tile since the last turn
+     *
+     * @return the highest pheromone level
+     */
+    public int getPheromoneMax() {
+        if (pheromoneMaxStale) {
+            pheromoneMax = Utils.findHighest(pheromoneGrid);
+            pheromoneMaxStale = false;
+        }
+        return pheromoneMax;
+    }
+
+    /**
+     * Returns the number of ants on a tile, searching and returning
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       number of ants
+     */
+    public int getAntGrid(int row, int column) {
+        return searching[row][column] + returning[row][column];
+    }
+
+    /**
+     * Returns the number of ants carrying food on a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       number of returning ants
+     */
+    public int getReturningAnts(int row, int column) {
+        return returning[row][column];
+    }
+
+    /**
+     * Returns the terrain of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       terrain type
+     */
+    public int getTerrainGrid(int row, int column) {
+        return terrainGrid[row][column];
+    }
+
+    /**
+     * Changes the terrain of a tile, keeping the food total, the neighbour masks and the distance field up to date
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param value  new terrain type
+     */
+    public void setTerrainGrid(int row, int column, int value) {
+        int oldValue = terrainGrid[row][column];
+        totalFood += Math.max(value, 0) - Math.max(oldValue, 0);
+        terrainGrid[row][column] = value;
+
+        if (foodIndex != null) {
+            if (value > 0) {
+                foodIndex.add(row, column);
+            } else {
+                foodIndex.remove(row, column);
+            }
+        }
+
+        if ((oldValue == AntColonyEngine.OBSTACLE) != (value == AntColonyEngine.OBSTACLE)) {
+            obstaclesChanged(row, column, row, column);
+        }
+    }
+
+    /**
+     * Changes the terrain of every tile in a batch in one pass, keeping the food total up to date as it goes
+     * The neighbour masks and the distance field are brought up to date once at the end
+     *
+     * @param edit the batch of changes
+     * @return     number of tiles that changed
+     */
+    public int applyTerrainEdit(RegionEdit edit) {
+        if (edit.getNumRows() != numRows || edit.getNumColumns() != numColumns) {
+            throw new IllegalArgumentException("Edit is for a " + edit.getNumRows() + "x" + edit.getNumColumns() + " grid");
+        }
+
+        int changed = 0;
+        int fromRow = Integer.MAX_VALUE;
+        int fromColumn = Integer.MAX_VALUE;
+        int toRow = Integer.MIN_VALUE;
+        int toColumn = Integer.MIN_VALUE;
+
+        for (int i = 0; i < edit.size(); i++) {
+            int row = edit.getRow(i);
+            int column = edit.getColumn(i);
+            int value = edit.getValue(i);
+            int oldValue = terrainGrid[row][column];
+            if (oldValue == value || !edit.canChange(oldValue)) {
+                continue;
+            }
+
+            totalFood += Math.max(value, 0) - Math.max(oldValue, 0);
+            terrainGrid[row][column] = value;
+            changed++;
+
+            if (foodIndex != null && (oldValue > 0) != (value > 0)) {
+                if (value > 0) {
+                    foodIndex.add(row, column);
+                } else {
+                    foodIndex.remove(row, column);
+                }
+            }
+
+            if ((oldValue == AntColonyEngine.OBSTACLE) != (value == AntColonyEngine.OBSTACLE)) {
+                fromRow = Math.min(fromRow, row);
+                fromColumn = Math.min(fromColumn, column);
+                toRow = Math.max(toRow, row);
+                toColumn = Math.max(toColumn, column);
+            }
+        }
+
+        if (fromRow <= toRow) {
+            obstaclesChanged(fromRow, fromColumn, toRow, toColumn);
+        }
+        return changed;
+    }
+
+    /**
+     * Rebuilds the neighbour masks in and around a rectangle where obstacles were added or removed, and forgets the distance field
+     *
+     * @param fromRow    top row of the rectangle
+     * @param fromColumn left column of the rectangle
+     * @param toRow      bottom row of the rectangle
+     * @param toColumn   right column of the rectangle
+     */
+    private void obstaclesChanged(int fromRow, int fromColumn, int toRow, int toColumn) {
+        for (int row = Math.max(0, fromRow - 1); row <= Math.min(numRows - 1, toRow + 1); row++) {
+            for (int column = Math.max(0, fromColumn - 1); column <= Math.min(numColumns - 1, toColumn + 1); column++) {
+                neighbourMask[row][column] = AntColonyEngine.computeNeighbourMask(terrainGrid, row, column);
+            }
+        }
+        colonyField = null;
+    }
+
+    /**
+     * Returns the pheromone level of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       pheromone level
+     */
+    public int getPheromoneGrid(int row, int column) {
+        return pheromoneGrid[row][column];
+    }
+
+    /**
+     * Changes the pheromone level of a tile, keeping the pheromone totals up to date
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param value  new pheromone level
+     */
+    public void setPheromoneGrid(int row, int column, int value) {
+        int oldValue = pheromoneGrid[row][column];
+        pheromoneSum += value - oldValue;
+        if (value >= pheromoneMax) {
+            pheromoneMax = value;
+            pheromoneMaxStale = false;
+        } else if (oldValue == pheromoneMax) {
+            pheromoneMaxStale = true;
+        }
+        pheromoneGrid[row][column] = value;
+    }
+
+    /**
+     * Returns which neighbours of a tile an ant can move to, and how many tiles go into the tile's pheromone average
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       the mask, laid out as described at <code>AntColonyEngine.NEIGHBOURBITS</code>
+     */
+    public int getNeighbourMask(int row, int column) {
+        return neighbourMask[row][column];
+    }
+
+    /**
+     * Copies the pheromone, terrain and ant grids into flat arrays, one row after another
+     *
+     * @param pheromone destination for the pheromone grid, at least numRows * numColumns long (or null to skip)
+     * @param terrain   destination for the terrain grid (or null to skip)
+     * @param ants      destination for the ant grid (or null to skip)
+     */
+    public void copyGrids(int[] pheromone, int[] terrain, int[] ants) {
+        for (int row = 0; row < numRows; row++) {
+            if (pheromone != null) {
+                System.arraycopy(pheromoneGrid[row], 0, pheromone, row * numColumns, numColumns);
+            }
+            if (terrain != null) {
+                System.arraycopy(terrainGrid[row], 0, terrain, row * numColumns, numColumns);
+            }
+            if (ants != null) {
+                for (int column = 0; column < numColumns; column++) {
+                    ants[row * numColumns + column] = searching[row][column] + returning[row][column];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the pheromones left behind for each unit of food picked up
+     *
+     * @return pheromone strength
+     */
+    public int getPheromoneStrength() {
+        return pheromoneStrength;
+    }
+
+    /**
+     * Changes the pheromones left behind for each unit of food picked up
+     *
+     * @param pheromoneStrength pheromone strength
+     */
+    public void setPheromoneStrength(int pheromoneStrength) {
+        this.pheromoneStrength = pheromoneStrength;
+    }
+
+    /**
+     * Returns how much pheromones decay per turn
+     *
+     * @return pheromone decay
+     */
+    public int getPheromoneDecay() {
+        return pheromoneDecay;
+    }
+
+    /**
+     * Changes how much pheromones decay per turn
+     *
+     * @param pheromoneDecay pheromone decay
+     */
+    public void setPheromoneDecay(int pheromoneDecay) {
+        this.pheromoneDecay = pheromoneDecay;
+    }
+
+    /**
+     * Returns the minimum pheromone level on any tile
+     *
+     * @return minimum pheromone level
+     */
+    public int getMinimumPheromone() {
+        return minimumPheromone;
+    }
+
+    /**
+     * Changes the minimum pheromone level on any tile
+     *
+     * @param minimumPheromone minimum pheromone level
+     */
+    public void setMinimumPheromone(int minimumPheromone) {
+        this.minimumPheromone = minimumPheromone;
+    }
+
+    /**
+     * Runs a preset with every ant multiplied, printing a summary every so often
+     * Arguments: <code>&lt;preset&gt; [turns] [ants per ant] [seed] [print every]</code>
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        if (args.length < 1) {
+            System.out.println("Usage: java PopulationEngine <preset> [turns] [ants per ant] [seed] [print every]");
+            return;
+        }
+
+        SimulationEngine preset = EngineFactory.load(new File(args[0]));
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int multiplier = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int printEvery = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+
+        PopulationEngine engine = new PopulationEngine(preset);
+        if (args.length > 3) {
+            engine.setSeed(Long.parseLong(args[3]));
+        }
+        // Each ant in the preset becomes many ants on the same tile
+        for (int i = 0; i < preset.getNumAnts(); i++) {
+            engine.addAnts(preset.getAntRow(i), preset.getAntColumn(i), multiplier - 1, preset.getAntFoundFood(i));
+        }
+
+        long start = System.nanoTime();
+        for (int turn = 1; turn <= turns; turn++) {
+            engine.update();
+            if (turn % printEvery == 0 || turn == turns) {
+                System.out.printf("Turn %d: ants %,d, returning %,d, food remaining %,d, delivered %,d, highest pheromone %d%n",
+                        engine.getTurn(), engine.getNumAnts(), engine.getNumAntsCarryingFood(), engine.getTotalFood(),
+                        engine.getFoodDeliveredTotal(), engine.getPheromoneMax());
+            }
+        }
+        System.out.printf("%.1f turns per second%n", turns / ((System.nanoTime() - start) / 1e9));
+    }
+}
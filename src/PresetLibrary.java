@@ -0,0 +1,505 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The presets folder, with what is needed to browse it quickly
+ *
+ * Presets are whole engines written with Java serialization, so finding out even the size of one means reading all of it
+ * The library keeps a small sidecar file for each preset in <code>presets/.meta</code> with its size, ant count, food and a
+ * thumbnail; the preset browser reads those instead of the presets. A sidecar remembers the length and modification time
+ * of its preset, and is rewritten whenever the preset has changed since (or was never described before)
+ * Sidecars follow the presets' own folders, so <code>presets/autosave/a.txt</code> has <code>presets/.meta/autosave/a.txt.meta</code>
+ * and doesn't clash with <code>presets/a.txt</code>
+ *
+ * It also keeps the last few engines opened, so reopening one of them only costs a copy instead of reading the file again
+ * A preset of 2000 by 2000 tiles takes around 80 MB, so the number kept is small (<code>-Dant.presetCache=n</code>, 0 to turn off)
+ *
+ * Every method can be called from any thread
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class PresetLibrary {
+    final public static int THUMBNAILSIZE = 64;  // longest side of a thumbnail, in pixels
+
+    final private static int MAGIC = 0x414E5450;  // "ANTP"
+    final private static int FORMAT = 2;  // 2: the engine type is the one saved in the preset, not the one it was opened as
+
+    // Colours match the GUI; tiles with ants are drawn black
+    final private static int COLONYCOLOR = 0x00FF00;
+    final private static int OBSTACLECOLOR = 0xFF0000;
+    final private static int EMPTYCOLOR = 0xFFFFFF;
+    final private static int FOODCOLOR = 0xFFA500;
+    final private static int ANTCOLOR = 0x000000;
+
+    /**
+     * What the preset browser shows about a preset, without reading the preset itself
+     */
+    public static class Info {
+        final private File file;
+        final private int numRows;
+        final private int numColumns;
+        final private int numAnts;
+        final private int totalFood;
+        final private String engineType;
+        final private BufferedImage thumbnail;
+
+        /**
+         * Creates the information about a preset
+         *
+         * @param file       the preset file
+         * @param numRows    number of rows
+         * @param numColumns number of columns
+         * @param numAnts    number of ants
+         * @param totalFood  food on the whole grid
+         * @param engineType kind of engine it was saved with
+         * @param thumbnail  small picture of the grid
+         */
+        Info(File file, int numRows, int numColumns, int numAnts, int totalFood, String engineType, BufferedImage thumbnail) {
+            this.file = file;
+            this.numRows = numRows;
+            this.numColumns = numColumns;
+            this.numAnts = numAnts;
+            this.totalFood = totalFood;
+            this.engineType = engineType;
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * Returns the preset file
+         *
+         * @return the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the number of rows
+         *
+         * @return number of rows
+         */
+        public int getNumRows() {
+            return numRows;
+        }
+
+        /**
+         * Returns the number of columns
+         *
+         * @return number of columns
+         */
+        public int getNumColumns() {
+            return numColumns;
+        }
+
+        /**
+         * Returns the number of ants
+         *
+         * @return number of ants
+         */
+        public int getNumAnts() {
+            return numAnts;
+        }
+
+        /**
+         * Returns the food left on every tile, added up
+         *
+         * @return total amount of food
+         */
+        public int getTotalFood() {
+            return totalFood;
+        }
+
+        /**
+         * Returns the kind of engine the preset was saved with, like "REFERENCE"
+         *
+         * @return name of the engine type
+         */
+        public String getEngineType() {
+            return engineType;
+        }
+
+        /**
+         * Returns a small picture of the grid, at most <code>THUMBNAILSIZE</code> pixels on its longest side
+         *
+         * @return the thumbnail
+         */
+        public BufferedImage getThumbnail() {
+            return thumbnail;
+        }
+    }
+
+    /**
+     * An engine kept after it was opened, and the version of the file it came from
+     */
+    private static class CachedEngine {
+        final private SimulationEngine engine;  // never handed out, only copies of it
+        final private long length;
+        final private long modified;
+
+        /**
+         * Creates a cache entry
+         *
+         * @param engine   the engine as it was read
+         * @param length   length of the file it was read from
+         * @param modified modification time of the file
+         */
+        CachedEngine(SimulationEngine engine, long length, long modified) {
+            this.engine = engine;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Counts the bytes read from a file, to report how far along loading it is
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        final private long length;
+        final private DoubleConsumer progress;
+        private long read = 0;
+        private int lastPercent = -1;
+
+        /**
+         * Wraps a stream
+         *
+         * @param in       the stream
+         * @param length   number of bytes expected
+         * @param progress told the fraction read so far, from 0 to 1, once per percent
+         */
+        ProgressInputStream(InputStream in, long length, DoubleConsumer progress) {
+            super(in);
+            this.length = Math.max(1, length);
+            this.progress = progress;
+        }
+
+        /**
+         * Reads one byte
+         *
+         * @return the byte, or -1 at the end
+         */
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                advance(1);
+            }
+            return value;
+        }
+
+        /**
+         * Reads some bytes
+         *
+         * @param buffer where to put them
+         * @param offset where to start in the buffer
+         * @param count  most bytes to read
+         * @return       number of bytes read, or -1 at the end
+         */
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int n = super.read(buffer, offset, count);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        /**
+         * Adds to the count, and reports it if it reached another percent
+         *
+         * @param n bytes just read
+         */
+        private void advance(int n) {
+            read += n;
+            int percent = (int) Math.min(100, read * 100 / length);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                progress.accept(percent / 100.0);
+            }
+        }
+    }
+
+    final private File directory;
+    final private File metaDirectory;
+    final private int cacheSize;
+    final private LinkedHashMap<String, CachedEngine> engines;  // least recently opened first
+
+    /**
+     * Creates a library for a folder of presets
+     *
+     * @param directory the presets folder
+     * @param cacheSize number of opened engines to keep for reopening, 0 for none
+     */
+    public PresetLibrary(File directory, int cacheSize) {
+        this.directory = directory;
+        this.metaDirectory = new File(directory, ".meta");
+        this.cacheSize = cacheSize;
+        this.engines = new LinkedHashMap<String, CachedEngine>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEngine> eldest) {
+                return size() > PresetLibrary.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Creates a library for the <code>presets</code> folder, keeping as many engines as <code>ant.presetCache</code> says (4 by default)
+     */
+    public PresetLibrary() {
+        this(new File("presets"), Integer.getInteger("ant.presetCache", 4));
+    }
+
+    /**
+     * Returns the presets folder
+     *
+     * @return the folder
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Reads a preset's sidecar, without touching the preset
+     *
+     * @param preset the preset file
+     * @return       the information, or null if there is no sidecar or the preset changed since it was written
+     */
+    public Info getCachedInfo(File preset) {
+        File sidecar = sidecarOf(preset);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || in.readLong() != preset.length() || in.readLong() != preset.lastModified()) {
+                return null;  // from an older version of the preset, or of this class
+            }
+            int numRows = in.readInt();
+            int numColumns = in.readInt();
+            int numAnts = in.readInt();
+            int totalFood = in.readInt();
+            String engineType = in.readUTF();
+
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width <= 0 || height <= 0 || width > THUMBNAILSIZE || height > THUMBNAILSIZE) {
+                return null;
+            }
+            BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    thumbnail.setRGB(x, y, in.readInt());
+                }
+            }
+            return new Info(preset, numRows, numColumns, numAnts, totalFood, engineType, thumbnail);
+        } catch (IOException e) {
+            return null;  // unreadable or cut short, it will be written again
+        }
+    }
+
+    /**
+     * Returns the information about a preset, from its sidecar if it is up to date
+     * Otherwise the whole preset is read to describe it, and the sidecar is written for next time
+     *
+     * @param preset the preset file
+     * @return       the information
+     */
+    public Info describe(File preset) throws IOException, ClassNotFoundException {
+        Info info = getCachedInfo(preset);
+        if (info != null) {
+            return info;
+        }
+        long length = preset.length();
+        long modified = preset.lastModified();
+        return writeSidecar(preset, EngineFactory.read(preset), length, modified);  // as saved, so the type is the preset's
+    }
+
+    /**
+     * Opens a preset, from the engines kept in memory if it was opened recently and hasn't changed since
+     * Also writes the preset's sidecar if it is missing or out of date, since the engine has been read anyway
+     *
+     * @param preset   the preset file
+     * @param progress told the fraction of the file read so far, from 0 to 1 (on the calling thread)
+     * @return         a new engine that belongs to the caller
+     */
+    public SimulationEngine open(File preset, DoubleConsumer progress) throws IOException, ClassNotFoundException {
+        String key = preset.getCanonicalPath();
+        long length = preset.length();
+        long modified = preset.lastModified();
+
+        CachedEngine cached;
+        synchronized (engines) {
+            cached = engines.get(key);
+        }
+        if (cached != null && cached.length == length && cached.modified == modified) {
+            progress.accept(1);
+            return cached.engine.copy();
+        }
+
+        SimulationEngine engine;
+        try (InputStream in = new ProgressInputStream(new FileInputStream(preset), length, progress)) {
+            engine = EngineFactory.read(in);
+        }
+        if (getCachedInfo(preset) == null) {
+            writeSidecar(preset, engine, length, modified);  // before moving it to the picked kind of engine
+        }
+        engine = EngineFactory.toSelectedType(engine);
+
+        if (cacheSize > 0) {
+            synchronized (engines) {
+                engines.put(key, new CachedEngine(engine, length, modified));
+            }
+            return engine.copy();  // the kept one must stay as it was in the file
+        }
+        return engine;
+    }
+
+    /**
+     * Brings a preset's sidecar up to date after the preset was written, and forgets any engine kept from before
+     *
+     * @param preset the preset file, already written
+     * @param engine the engine that was written to it
+     * @return       the information written to the sidecar
+     */
+    public Info saved(File preset, SimulationEngine engine) throws IOException {
+        synchronized (engines) {
+            engines.remove(preset.getCanonicalPath());
+        }
+        return writeSidecar(preset, engine, preset.length(), preset.lastModified());
+    }
+
+    /**
+     * Returns the number of engines kept for reopening
+     *
+     * @return number of engines
+     */
+    public int getCachedEngineCount() {
+        synchronized (engines) {
+            return engines.size();
+        }
+    }
+
+    /**
+     * Describes an engine and writes the sidecar of its preset
+     * Written to a temporary file first, so a browser reading at the same time never sees half a sidecar
+     *
+     * @param preset   the preset file
+     * @param engine   the engine in it
+     * @param length   length of the preset when the engine was read from it or written to it
+     * @param modified modification time of the preset then
+     * @return         the information written
+     */
+    private Info writeSidecar(File preset, SimulationEngine engine, long length, long modified) throws IOException {
+        Info info = new Info(preset, engine.getNumRows(), engine.getNumColumns(), engine.getNumAnts(), engine.getTotalFood(),
+                EngineFactory.typeOf(engine).name(), createThumbnail(engine));
+
+        File sidecar = sidecarOf(preset);
+        File folder = sidecar.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        File temporary = File.createTempFile(preset.getName(), ".tmp", folder);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(length);
+            out.writeLong(modified);
+            out.writeInt(info.numRows);
+            out.writeInt(info.numColumns);
+            out.writeInt(info.numAnts);
+            out.writeInt(info.totalFood);
+            out.writeUTF(info.engineType);
+
+            BufferedImage thumbnail = info.thumbnail;
+            out.writeInt(thumbnail.getWidth());
+            out.writeInt(thumbnail.getHeight());
+            for (int y = 0; y < thumbnail.getHeight(); y++) {
+                for (int x = 0; x < thumbnail.getWidth(); x++) {
+                    out.writeInt(thumbnail.getRGB(x, y) & 0xFFFFFF);
+                }
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+
+        // File.renameTo won't replace an existing file on every system, so remove the old one first
+        if (!temporary.renameTo(sidecar) && !(sidecar.delete() && temporary.renameTo(sidecar))) {
+            temporary.delete();
+            throw new IOException("Could not write " + sidecar);
+        }
+        return info;
+    }
+
+    /**
+     * Draws a small picture of an engine's grid, one tile per pixel or less, keeping its shape
+     * Small grids are scaled up so every thumbnail is about the same size
+     *
+     * @param engine the engine
+     * @return       the thumbnail
+     */
+    public static BufferedImage createThumbnail(SimulationEngine engine) {
+        int numRows = engine.getNumRows();
+        int numColumns = engine.getNumColumns();
+        int longest = Math.max(numRows, numColumns);
+        int width = Math.max(1, numColumns * THUMBNAILSIZE / longest);
+        int height = Math.max(1, numRows * THUMBNAILSIZE / longest);
+
+        int[] terrain = new int[numRows * numColumns];
+        int[] ants = new int[numRows * numColumns];
+        engine.copyGrids(null, terrain, ants);
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            int row = y * numRows / height;  // the tile under the middle-ish of each pixel
+            for (int x = 0; x < width; x++) {
+                int tile = row * numColumns + x * numColumns / width;
+                int value = terrain[tile];
+                int colour;
+                if (value == AntColonyEngine.COLONY) {
+                    colour = COLONYCOLOR;
+                } else if (value == AntColonyEngine.OBSTACLE) {
+                    colour = OBSTACLECOLOR;
+                } else if (ants[tile] > 0) {
+                    colour = ANTCOLOR;
+                } else if (value > 0) {
+                    colour = FOODCOLOR;
+                } else {
+                    colour = EMPTYCOLOR;
+                }
+                thumbnail.setRGB(x, y, colour);
+            }
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Returns where a preset's sidecar goes: its path inside the presets folder, under <code>.meta</code>
+     * Presets outside the folder go under <code>.meta/external</code> with their whole path
+     *
+     * @param preset the preset file
+     * @return       the sidecar file
+     */
+    private File sidecarOf(File preset) {
+        Path folder = directory.getAbsoluteFile().toPath().normalize();
+        Path file = preset.getAbsoluteFile().toPath().normalize();
+        if (file.startsWith(folder)) {
+            return new File(metaDirectory, folder.relativize(file) + ".meta");
+        }
+        return new File(new File(metaDirectory, "external"), file.getRoot().relativize(file) + ".meta");
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * Estimates one quantile (like the median) of a stream of numbers using five markers
+ * This is the P-squared algorithm by Jain and Chlamtac, so memory use never grows with the number of values
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class QuantileSketch {
+    final private double quantile;  // between 0 and 1, e.g. 0.5 for the median
+
+    final private double[] heights = new double[5];          // estimated values at each marker
+    final private int[] positions = new int[5];              // actual positions of the markers (1 based)
+    final private double[] desiredPositions = new double[5];  // where the markers should be
+    final private double[] increments;                        // how much each desired position moves per value
+
+    private int count;
+
+    /**
+     * Creates a sketch for a single quantile
+     *
+     * @param quantile quantile to estimate, between 0 and 1
+     */
+    public QuantileSketch(double quantile) {
+        this.quantile = quantile;
+        this.increments = new double[]{0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+    }
+
+    /**
+     * Adds a value to the sketch
+     *
+     * @param value the value to add
+     */
+    public void add(double value) {
+        // The first five values are stored directly and become the starting markers
+        if (count < 5) {
+            heights[count] = value;
+            count++;
+
+            if (count == 5) {
+                Arrays.sort(heights);
+                for (int i = 0; i < 5; i++) {
+                    positions[i] = i + 1;
+                }
+                desiredPositions[0] = 1;
+                desiredPositions[1] = 1 + 2 * quantile;
+                desiredPositions[2] = 1 + 4 * quantile;
+                desiredPositions[3] = 3 + 2 * quantile;
+                desiredPositions[4] = 5;
+            }
+            return;
+        }
+
+        // Find which cell the value falls into, extending the ends if needed
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[4]) {
+            heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+
+        for (int i = cell + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desiredPositions[i] += increments[i];
+        }
+
+        // Move the middle markers towards where they should be
+        for (int i = 1; i < 4; i++) {
+            double difference = desiredPositions[i] - positions[i];
+
+            if ((difference >= 1 && positions[i + 1] - positions[i] > 1) || (difference <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int direction = difference > 0 ? 1 : -1;
+
+                double newHeight = parabolic(i, direction);
+                if (heights[i - 1] < newHeight && newHeight < heights[i + 1]) {
+                    heights[i] = newHeight;
+                } else {
+                    heights[i] = linear(i, direction);
+                }
+
+                positions[i] += direction;
+            }
+        }
+
+        count++;
+    }
+
+    /**
+     * Piecewise parabolic prediction of a marker's height after moving it one position
+     *
+     * @param i         index of the marker
+     * @param direction 1 or -1
+     * @return          the predicted height
+     */
+    private double parabolic(int i, int direction) {
+        return heights[i] + (double) direction / (positions[i + 1] - positions[i - 1])
+                * ((positions[i] - positions[i - 1] + direction) * (heights[i + 1] - heights[i]) / (positions[i + 1] - positions[i])
+                + (positions[i + 1] - positions[i] - direction) * (heights[i] - heights[i - 1]) / (positions[i] - positions[i - 1]));
+    }
+
+    /**
+     * Linear prediction of a marker's height, used when the parabolic one is out of order
+     *
+     * @param i         index of the marker
+     * @param direction 1 or -1
+     * @return          the predicted height
+     */
+    private double linear(int i, int direction) {
+        return heights[i] + direction * (heights[i + direction] - heights[i]) / (positions[i + direction] - positions[i]);
+    }
+
+    /**
+     * Returns the current estimate of the quantile
+     *
+     * @return the estimate, or NaN if no values were added
+     */
+    public double getEstimate() {
+        if (count == 0) {
+            return Double.NaN;
+        } else if (count < 5) {
+            // Not enough values for the markers yet, so just use the exact quantile
+            double[] sorted = Arrays.copyOf(heights, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.round(quantile * (count - 1))];
+        }
+
+        return heights[2];
+    }
+
+    /**
+     * Returns the quantile this sketch estimates
+     *
+     * @return the quantile, between 0 and 1
+     */
+    public double getQuantile() {
+        return quantile;
+    }
+}
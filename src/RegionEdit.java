@@ -0,0 +1,368 @@
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A batch of terrain changes, built up from rectangles, brush strokes, flood fills and pasted grids,
+ * then handed to <code>SimulationEngine.applyTerrainEdit</code> in one go
+ * The engine changes every tile in one pass and brings its totals, neighbour masks and distance field up to date once
+ * at the end, instead of once per tile like <code>setTerrainGrid</code> does
+ *
+ * A batch can also be applied to a plain terrain grid, for the setup screens before there is an engine
+ * Tiles are changed in the order they were added, so a later shape wins where two overlap
+ * The colony is never overwritten, and a batch never places a colony
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class RegionEdit {
+    final private int numRows;
+    final private int numColumns;
+
+    private int[] tiles = new int[16];   // row * numColumns + column of each change
+    private int[] values = new int[16];  // new terrain of each change
+    private int size = 0;
+    private boolean skipObstacles = false;  // leave obstacles alone too, for painting food
+
+    // Smallest rectangle holding every change, empty while minRow > maxRow
+    private int minRow;
+    private int minColumn;
+    private int maxRow;
+    private int maxColumn;
+
+    /**
+     * Creates an empty batch for a grid
+     *
+     * @param numRows    number of rows in the grid
+     * @param numColumns number of columns in the grid
+     */
+    public RegionEdit(int numRows, int numColumns) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        clear();
+    }
+
+    /**
+     * Empties the batch so it can be reused
+     *
+     * @return this batch
+     */
+    public RegionEdit clear() {
+        size = 0;
+        minRow = Integer.MAX_VALUE;
+        minColumn = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+        maxColumn = Integer.MIN_VALUE;
+        return this;
+    }
+
+    /**
+     * Leaves obstacles alone as well as the colony, so food can be painted over a map without erasing its walls
+     *
+     * @return this batch
+     */
+    public RegionEdit skipObstacles() {
+        skipObstacles = true;
+        return this;
+    }
+
+    /**
+     * Adds one tile to the batch; tiles off the grid are ignored
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param value  new terrain of the tile
+     * @return       this batch
+     */
+    public RegionEdit set(int row, int column, int value) {
+        if (row < 0 || row >= numRows || column < 0 || column >= numColumns || value == AntColonyEngine.COLONY) {
+            return this;
+        }
+        if (size == tiles.length) {
+            tiles = Arrays.copyOf(tiles, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        tiles[size] = row * numColumns + column;
+        values[size] = value;
+        size++;
+
+        minRow = Math.min(minRow, row);
+        minColumn = Math.min(minColumn, column);
+        maxRow = Math.max(maxRow, row);
+        maxColumn = Math.max(maxColumn, column);
+        return this;
+    }
+
+    /**
+     * Sets every tile in a rectangle, clipped to the grid
+     *
+     * @param row1    row of one corner
+     * @param column1 column of one corner
+     * @param row2    row of the opposite corner
+     * @param column2 column of the opposite corner
+     * @param value   new terrain of the tiles
+     * @return        this batch
+     */
+    public RegionEdit fillRectangle(int row1, int column1, int row2, int column2, int value) {
+        int fromRow = Math.max(0, Math.min(row1, row2));
+        int toRow = Math.min(numRows - 1, Math.max(row1, row2));
+        int fromColumn = Math.max(0, Math.min(column1, column2));
+        int toColumn = Math.min(numColumns - 1, Math.max(column1, column2));
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                set(row, column, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets every tile within a distance of a tile, a round dab of the brush
+     *
+     * @param row    row of the centre
+     * @param column column of the centre
+     * @param radius brush radius in tiles, 0 for just the one tile
+     * @param value  new terrain of the tiles
+     * @return       this batch
+     */
+    public RegionEdit brush(int row, int column, int radius, int value) {
+        for (int dr = -radius; dr <= radius; dr++) {
+            for (int dc = -radius; dc <= radius; dc++) {
+                if (dr * dr + dc * dc <= radius * radius) {
+                    set(row + dr, column + dc, value);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Drags the brush in a straight line from one tile to another, so a fast mouse drag doesn't leave gaps
+     * The start tile is included, so a stroke can be built from one mouse event to the next
+     *
+     * @param fromRow    row the stroke starts on
+     * @param fromColumn column the stroke starts on
+     * @param toRow      row the stroke ends on
+     * @param toColumn   column the stroke ends on
+     * @param radius     brush radius in tiles
+     * @param value      new terrain of the tiles
+     * @return           this batch
+     */
+    public RegionEdit stroke(int fromRow, int fromColumn, int toRow, int toColumn, int radius, int value) {
+        // Bresenham's line, which steps one tile at a time along the longer direction
+        int rowDistance = Math.abs(toRow - fromRow);
+        int columnDistance = Math.abs(toColumn - fromColumn);
+        int rowStep = fromRow < toRow ? 1 : -1;
+        int columnStep = fromColumn < toColumn ? 1 : -1;
+        int error = columnDistance - rowDistance;
+
+        int row = fromRow;
+        int column = fromColumn;
+        while (true) {
+            brush(row, column, radius, value);
+            if (row == toRow && column == toColumn) {
+                return this;
+            }
+            int doubled = error * 2;
+            if (doubled > -rowDistance) {
+                error -= rowDistance;
+                column += columnStep;
+            }
+            if (doubled < columnDistance) {
+                error += columnDistance;
+                row += rowStep;
+            }
+        }
+    }
+
+    /**
+     * Fills the area around a tile: the tile and every tile joined to it (up, down, left or right) with the same terrain
+     * Nothing is added if the tile already has the new value or is the colony
+     *
+     * @param terrain terrain of each tile, for example <code>engine::getTerrainGrid</code>
+     * @param row     row to start from
+     * @param column  column to start from
+     * @param value   new terrain of the area
+     * @return        this batch
+     */
+    public RegionEdit floodFill(IntBinaryOperator terrain, int row, int column, int value) {
+        if (row < 0 || row >= numRows || column < 0 || column >= numColumns) {
+            return this;
+        }
+        int target = terrain.applyAsInt(row, column);
+        if (target == value || target == AntColonyEngine.COLONY) {
+            return this;
+        }
+
+        // Each tile is queued at most once, so the queue never needs more room than the grid
+        boolean[] queued = new boolean[numRows * numColumns];
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = row * numColumns + column;
+        queued[row * numColumns + column] = true;
+
+        while (head < tail) {
+            int tile = queue[head++];
+            int tileRow = tile / numColumns;
+            int tileColumn = tile % numColumns;
+            set(tileRow, tileColumn, value);
+
+            for (int i = 0; i < 4; i++) {
+                int nextRow = tileRow + AntColonyEngine.DIRECTIONS[i][0];
+                int nextColumn = tileColumn + AntColonyEngine.DIRECTIONS[i][1];
+                if (nextRow < 0 || nextRow >= numRows || nextColumn < 0 || nextColumn >= numColumns) {
+                    continue;
+                }
+                int next = nextRow * numColumns + nextColumn;
+                if (!queued[next] && terrain.applyAsInt(nextRow, nextColumn) == target) {
+                    queued[next] = true;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, Math.min(tail * 2, numRows * numColumns));
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Copies a smaller grid onto the grid with its top left corner on a tile; parts that hang off the grid are left out
+     *
+     * @param row    row the top left corner goes on
+     * @param column column the top left corner goes on
+     * @param patch  terrain to paste, <code>patch[row][column]</code>
+     * @return       this batch
+     */
+    public RegionEdit paste(int row, int column, int[][] patch) {
+        for (int patchRow = 0; patchRow < patch.length; patchRow++) {
+            for (int patchColumn = 0; patchColumn < patch[patchRow].length; patchColumn++) {
+                set(row + patchRow, column + patchColumn, patch[patchRow][patchColumn]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether a change to a tile is allowed
+     *
+     * @param oldValue terrain on the tile now
+     * @return         false for the colony, and for obstacles if they are being skipped
+     */
+    public boolean canChange(int oldValue) {
+        return oldValue != AntColonyEngine.COLONY && !(skipObstacles && oldValue == AntColonyEngine.OBSTACLE);
+    }
+
+    /**
+     * Applies the batch to a plain terrain grid, for the setup screens before an engine is created
+     *
+     * @param terrainGrid the grid to change
+     * @return            number of tiles that changed
+     */
+    public int applyTo(int[][] terrainGrid) {
+        int changed = 0;
+        for (int i = 0; i < size; i++) {
+            int row = tiles[i] / numColumns;
+            int column = tiles[i] % numColumns;
+            if (terrainGrid[row][column] != values[i] && canChange(terrainGrid[row][column])) {
+                terrainGrid[row][column] = values[i];
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the number of changes in the batch, counting a tile again each time it was added
+     *
+     * @return number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the row of a change
+     *
+     * @param index index of the change
+     * @return      the row
+     */
+    public int getRow(int index) {
+        return tiles[index] / numColumns;
+    }
+
+    /**
+     * Returns the column of a change
+     *
+     * @param index index of the change
+     * @return      the column
+     */
+    public int getColumn(int index) {
+        return tiles[index] % numColumns;
+    }
+
+    /**
+     * Returns the new terrain of a change
+     *
+     * @param index index of the change
+     * @return      the new terrain
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the number of rows in the grid the batch was made for
+     *
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of columns in the grid the batch was made for
+     *
+     * @return number of columns
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Returns the top row of the rectangle holding every change
+     *
+     * @return the row, or Integer.MAX_VALUE if the batch is empty
+     */
+    public int getMinRow() {
+        return minRow;
+    }
+
+    /**
+     * Returns the left column of the rectangle holding every change
+     *
+     * @return the column, or Integer.MAX_VALUE if the batch is empty
+     */
+    public int getMinColumn() {
+        return minColumn;
+    }
+
+    /**
+     * Returns the bottom row of the rectangle holding every change
+     *
+     * @return the row, or Integer.MIN_VALUE if the batch is empty
+     */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * Returns the right column of the rectangle holding every change
+     *
+     * @return the column, or Integer.MIN_VALUE if the batch is empty
+     */
+    public int getMaxColumn() {
+        return maxColumn;
+    }
+}
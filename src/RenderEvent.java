@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering one call to <code>GUISimulation.drawSimulation()</code>
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+@Name("antcolony.Render")
+@Label("Simulation Render")
+@Category({"Ant Colony Simulation"})
+@Description("Rebuilding the simulation screen after a turn or an edit")
+@Threshold("20 ms")
+public class RenderEvent extends Event {
+    @Label("Turn")
+    int turn;
+
+    @Label("Ants")
+    int numAnts;
+
+    @Label("Tiles")
+    int tiles;
+}
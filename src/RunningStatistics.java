@@ -0,0 +1,102 @@
+/**
+ * Keeps the mean and variance of a stream of numbers without storing the numbers
+ * Uses Welford's algorithm, which stays accurate even after millions of values
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class RunningStatistics {
+    private long count;
+    private double mean;
+    private double sumSquaredDifferences;  // sum of (x - mean)^2, updated as the mean moves
+    private double minimum = Double.POSITIVE_INFINITY;
+    private double maximum = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a value to the statistics
+     *
+     * @param value the value to add
+     */
+    public void add(double value) {
+        count++;
+
+        double difference = value - mean;
+        mean += difference / count;
+        sumSquaredDifferences += difference * (value - mean);  // uses both the old and the new mean
+
+        minimum = Math.min(minimum, value);
+        maximum = Math.max(maximum, value);
+    }
+
+    /**
+     * Returns the number of values added so far
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values, or 0 if there are none
+     *
+     * @return the mean
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the sample variance of the values
+     *
+     * @return the variance, or 0 if there are less than two values
+     */
+    public double getVariance() {
+        if (count < 2) {
+            return 0;
+        }
+        return sumSquaredDifferences / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation of the values
+     *
+     * @return the standard deviation
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns half the width of the confidence interval around the mean
+     * The interval is mean +/- this value
+     *
+     * @param z z-score of the confidence level (1.96 for 95%)
+     * @return  the half width, or infinity if there are less than two values
+     */
+    public double getConfidenceHalfWidth(double z) {
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return z * getStandardDeviation() / Math.sqrt(count);
+    }
+
+    /**
+     * Returns the smallest value added
+     *
+     * @return the minimum
+     */
+    public double getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Returns the largest value added
+     *
+     * @return the maximum
+     */
+    public double getMaximum() {
+        return maximum;
+    }
+}
@@ -0,0 +1,420 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs the text simulation from a command file instead of asking questions, so runs can be scripted and repeated
+ * The file is read one line at a time, so scripts can be as long as needed
+ *
+ * Each line is one command, words are separated by spaces, case doesn't matter and # starts a comment
+ * Setup commands (before the first turn is run):
+ *   SIZE rows columns                         must be the first command, unless LOAD is used
+ *   LOAD file                                 start from a saved preset instead
+ *   COLONY row column
+ *   OBSTACLE row column [row2 column2]        a single tile, or every tile in the rectangle
+ *   FOOD row column [row2 column2] amount     a single tile, or every tile in the rectangle
+ *   ANT row column [count]                    one or more ants on a tile
+ *   ANTS row column row2 column2 count        count ants on every tile in the rectangle
+ *   SEED number                               make the run reproducible
+ * Commands that can be used at any time:
+ *   PHEROMONE row column value, PHEROMONE STRENGTH value, PHEROMONE DECAY value, MINIMUM PHEROMONE value
+ *   CLEAR row column [row2 column2]           remove obstacles and food
+ *   FLOOD row column value                    set the tile and every tile joined to it with the same terrain
+ *   EDIT ANT index, DELETE ANT index
+ *   RUN turns [TURNS]                         run that many turns without any prompting
+ *   PRINT, SUMMARY                            print the simulation now
+ *   SAVE file                                 save the simulation as a preset
+ *   QUIT                                      stop reading the script
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class ScriptRunner {
+    final private int printEvery;      // while running turns, print every this many turns (0 for never)
+    final private boolean summaryOnly; // print one line summaries instead of the grids
+    final private ArrayList<TurnListener> listeners;
+
+    // Setup state, used until the engine is created
+    private int numRows = -1;
+    private int numColumns;
+    private int colonyRow = -1;
+    private int colonyColumn = -1;
+    private int[][] terrainGrid;
+    private int[] antRow = new int[16];
+    private int[] antColumn = new int[16];
+    private int numAnts = 0;
+    private Long seed = null;
+
+    private SimulationEngine engine;
+    private int lineNumber = 0;
+
+    /**
+     * Creates a script runner
+     *
+     * @param printEvery  while running turns, print every this many turns (0 for never)
+     * @param summaryOnly print one line summaries instead of the grids
+     * @param listeners   listeners to attach to the engine once it is created
+     */
+    public ScriptRunner(int printEvery, boolean summaryOnly, ArrayList<TurnListener> listeners) {
+        this.printEvery = printEvery;
+        this.summaryOnly = summaryOnly;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Runs every command in a script
+     *
+     * @param script the script to read
+     * @return       the engine at the end of the script, or null if no engine was created
+     */
+    public SimulationEngine run(Reader script) throws IOException {
+        BufferedReader reader = new BufferedReader(script);
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            String[] words = line.toUpperCase(Locale.ROOT).split("\\s+");
+            String[] originalWords = line.split("\\s+");  // file names keep their case
+
+            try {
+                if (!execute(words, originalWords)) {
+                    break;
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": could not understand \"" + line + "\"", e);
+            } catch (IOException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        return engine;
+    }
+
+    /**
+     * Runs one command
+     *
+     * @param words         the words of the command, in upper case
+     * @param originalWords the words as they were written
+     * @return              false if the script should stop
+     */
+    private boolean execute(String[] words, String[] originalWords) throws IOException {
+        switch (words[0]) {
+            case "QUIT":
+                return false;
+            case "SIZE":
+                if (numRows >= 0 || engine != null) {
+                    throw error("SIZE can only be used once, before anything else");
+                }
+                numRows = Integer.parseInt(words[1]);
+                numColumns = Integer.parseInt(words[2]);
+                terrainGrid = new int[numRows][numColumns];
+                break;
+            case "LOAD":
+                if (numRows >= 0 || engine != null) {
+                    throw error("LOAD has to be the first command");
+                }
+                try {
+                    engine = EngineFactory.load(new File(joinFrom(originalWords, 1)));
+                } catch (ClassNotFoundException e) {
+                    throw error("not a saved simulation");
+                }
+                numRows = engine.getNumRows();
+                numColumns = engine.getNumColumns();
+                attach(engine);
+                break;
+            case "SEED":
+                seed = Long.parseLong(words[1]);
+                if (engine != null) {
+                    engine.setSeed(seed);
+                }
+                break;
+            case "COLONY":
+                setColony(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+                break;
+            case "OBSTACLE":
+                fill(words, 1, words.length, AntColonyEngine.OBSTACLE);
+                break;
+            case "CLEAR":
+                fill(words, 1, words.length, AntColonyEngine.EMPTY);
+                break;
+            case "FOOD":
+                fill(words, 1, words.length - 1, Integer.parseInt(words[words.length - 1]));
+                break;
+            case "FLOOD":
+                floodFill(Integer.parseInt(words[1]), Integer.parseInt(words[2]), Integer.parseInt(words[3]));
+                break;
+            case "ANT":
+                if (words.length > 1 && words[1].equals("RANGE")) {
+                    throw error("use ANTS row column row2 column2 count for a range of ants");
+                }
+                addAnts(Integer.parseInt(words[1]), Integer.parseInt(words[2]), Integer.parseInt(words[1]), Integer.parseInt(words[2]),
+                        words.length > 3 ? Integer.parseInt(words[3]) : 1);
+                break;
+            case "ANTS":
+                addAnts(Integer.parseInt(words[1]), Integer.parseInt(words[2]), Integer.parseInt(words[3]), Integer.parseInt(words[4]),
+                        Integer.parseInt(words[5]));
+                break;
+            case "ADD":  // ADD ANT row column, same as the interactive command
+                addAnts(Integer.parseInt(words[2]), Integer.parseInt(words[3]), Integer.parseInt(words[2]), Integer.parseInt(words[3]), 1);
+                break;
+            case "PHEROMONE":
+                if (words[1].equals("STRENGTH")) {
+                    getEngine().setPheromoneStrength(Integer.parseInt(words[2]));
+                } else if (words[1].equals("DECAY")) {
+                    getEngine().setPheromoneDecay(Integer.parseInt(words[2]));
+                } else {
+                    getEngine().setPheromoneGrid(Integer.parseInt(words[1]), Integer.parseInt(words[2]), Integer.parseInt(words[3]));
+                }
+                break;
+            case "MINIMUM":
+                getEngine().setMinimumPheromone(Integer.parseInt(words[2]));
+                break;
+            case "EDIT":
+                int editIndex = Integer.parseInt(words[2]);
+                getEngine().setAntFoundFood(editIndex, !getEngine().getAntFoundFood(editIndex));
+                break;
+            case "DELETE":
+                getEngine().deleteAnt(Integer.parseInt(words[2]));
+                break;
+            case "RUN":
+                runTurns(Integer.parseInt(words[1]));
+                break;
+            case "PRINT":
+                getEngine().printGrids();
+                break;
+            case "SUMMARY":
+                getEngine().printSummary();
+                break;
+            case "SAVE":
+                try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(joinFrom(originalWords, 1)))) {
+                    out.writeObject(getEngine());
+                }
+                break;
+            default:
+                throw error("unknown command " + words[0]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs turns one after another, printing every <code>printEvery</code> turns
+     *
+     * @param turns number of turns to run
+     */
+    private void runTurns(int turns) {
+        SimulationEngine currentEngine = getEngine();
+
+        while (turns > 0) {
+            // Run up to the next turn that gets printed in one go, so the engine can speed up turns with no ants
+            int step = turns;
+            if (printEvery > 0) {
+                step = Math.min(turns, printEvery - currentEngine.getTurn() % printEvery);
+            }
+            currentEngine.runTurns(step);
+            turns -= step;
+
+            if (printEvery > 0 && currentEngine.getTurn() % printEvery == 0) {
+                if (summaryOnly) {
+                    currentEngine.printSummary();
+                } else {
+                    currentEngine.printGrids();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the colony
+     *
+     * @param row    new row of the colony
+     * @param column new column of the colony
+     */
+    private void setColony(int row, int column) {
+        if (engine == null) {
+            requireSize();
+            if (colonyRow >= 0) {
+                terrainGrid[colonyRow][colonyColumn] = AntColonyEngine.EMPTY;
+            }
+            terrainGrid[row][column] = AntColonyEngine.COLONY;
+        } else {
+            engine.setTerrainGrid(engine.getColonyRow(), engine.getColonyColumn(), AntColonyEngine.EMPTY);
+            engine.setTerrainGrid(row, column, AntColonyEngine.COLONY);
+            engine.setColonyRow(row);
+            engine.setColonyColumn(column);
+        }
+
+        colonyRow = row;
+        colonyColumn = column;
+    }
+
+    /**
+     * Sets the terrain of a tile or a rectangle of tiles, never overwriting the colony
+     *
+     * @param words    words of the command
+     * @param from     index of the first coordinate
+     * @param to       index after the last coordinate (2 coordinates for a tile, 4 for a rectangle)
+     * @param value    new terrain value
+     */
+    private void fill(String[] words, int from, int to, int value) {
+        int row1 = Integer.parseInt(words[from]);
+        int column1 = Integer.parseInt(words[from + 1]);
+        int row2 = row1;
+        int column2 = column1;
+        if (to - from == 4) {
+            row2 = Integer.parseInt(words[from + 2]);
+            column2 = Integer.parseInt(words[from + 3]);
+        } else if (to - from != 2) {
+            throw error("expected a row and column, or two corners of a rectangle");
+        }
+
+        requireSize();
+        apply(new RegionEdit(numRows, numColumns).fillRectangle(row1, column1, row2, column2, value));
+    }
+
+    /**
+     * Fills the area around a tile, every tile joined to it with the same terrain, never overwriting the colony
+     *
+     * @param row    row to start from
+     * @param column column to start from
+     * @param value  new terrain value
+     */
+    private void floodFill(int row, int column, int value) {
+        requireSize();
+        RegionEdit edit = new RegionEdit(numRows, numColumns);
+        if (engine == null) {
+            edit.floodFill((r, c) -> terrainGrid[r][c], row, column, value);
+        } else {
+            edit.floodFill(engine::getTerrainGrid, row, column, value);
+        }
+        apply(edit);
+    }
+
+    /**
+     * Applies a batch of terrain changes to the engine, or to the setup grid if there is no engine yet
+     *
+     * @param edit the changes
+     */
+    private void apply(RegionEdit edit) {
+        if (engine == null) {
+            edit.applyTo(terrainGrid);
+        } else {
+            engine.applyTerrainEdit(edit);
+        }
+    }
+
+    /**
+     * Adds the same number of ants to every tile in a rectangle, skipping obstacles
+     *
+     * @param row1    row of one corner
+     * @param column1 column of one corner
+     * @param row2    row of the opposite corner
+     * @param column2 column of the opposite corner
+     * @param count   ants per tile
+     */
+    private void addAnts(int row1, int column1, int row2, int column2, int count) {
+        for (int row = Math.min(row1, row2); row <= Math.max(row1, row2); row++) {
+            for (int column = Math.min(column1, column2); column <= Math.max(column1, column2); column++) {
+                for (int i = 0; i < count; i++) {
+                    if (engine == null) {
+                        requireSize();
+                        if (terrainGrid[row][column] == AntColonyEngine.OBSTACLE) {
+                            continue;
+                        }
+                        // Grow the arrays by doubling, since scripts can add millions of ants
+                        if (numAnts == antRow.length) {
+                            antRow = Arrays.copyOf(antRow, numAnts * 2);
+                            antColumn = Arrays.copyOf(antColumn, numAnts * 2);
+                        }
+                        antRow[numAnts] = row;
+                        antColumn[numAnts] = column;
+                        numAnts++;
+                    } else if (engine.getTerrainGrid(row, column) != AntColonyEngine.OBSTACLE) {
+                        engine.addAnt(row, column, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the engine, creating it from the setup commands the first time
+     *
+     * @return the engine
+     */
+    private SimulationEngine getEngine() {
+        if (engine == null) {
+            requireSize();
+            if (colonyRow < 0) {
+                throw error("COLONY has to be set before the simulation starts");
+            }
+
+            engine = EngineFactory.create(numRows, numColumns, colonyRow, colonyColumn,
+                    Arrays.copyOf(antRow, numAnts), Arrays.copyOf(antColumn, numAnts), terrainGrid);
+            attach(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Sets up a newly created or loaded engine
+     *
+     * @param newEngine the engine
+     */
+    private void attach(SimulationEngine newEngine) {
+        if (seed != null) {
+            newEngine.setSeed(seed);
+        }
+        EngineMetrics.attachIfEnabled(newEngine);
+        for (TurnListener listener : listeners) {
+            newEngine.addTurnListener(listener);
+        }
+    }
+
+    /**
+     * Makes sure the size of the simulation has been set
+     */
+    private void requireSize() {
+        if (numRows < 0) {
+            throw error("SIZE has to be the first command");
+        }
+    }
+
+    /**
+     * Creates an exception that says which line of the script is wrong
+     *
+     * @param message what is wrong
+     * @return        the exception
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+    }
+
+    /**
+     * Joins words back together, for file names with spaces in them
+     *
+     * @param words the words
+     * @param from  index of the first word to join
+     * @return      the joined words
+     */
+    private static String joinFrom(String[] words, int from) {
+        return String.join(" ", Arrays.copyOfRange(words, from, words.length));
+    }
+}
@@ -0,0 +1,513 @@
+import java.io.Serializable;
+
+/**
+ * Everything the text and GUI simulations need from an engine: running turns, reading the grids and ants, and editing them
+ * <code>AntColonyEngine</code> is the reference implementation; other engines give the same simulation in a different
+ * (usually faster) way, and can be swapped in with <code>EngineFactory</code> without changing the code that uses them
+ *
+ * Engines are saved to presets with Java serialization, so every implementation has to be <code>Serializable</code>
+ * Ants are numbered from 0 to <code>getNumAnts() - 1</code>; deleting an ant or running a turn may renumber them
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public interface SimulationEngine extends Serializable {
+    // Running the simulation
+
+    /**
+     * Runs one turn: edits waiting in the edit queue are made, then every ant moves, then pheromones spread and decay
+     */
+    void update();
+
+    /**
+     * Runs several turns, the same as calling <code>update()</code> that many times
+     *
+     * @param turns number of turns to run
+     */
+    void runTurns(int turns);
+
+    /**
+     * Creates a deep copy of the simulation that can be updated without affecting this one
+     * The copy is the same kind of engine, with its own unseeded random number generator and no listeners
+     *
+     * @return the copy
+     */
+    SimulationEngine copy();
+
+    /**
+     * Returns the queue of edits waiting to be made at the start of the next turn
+     * Threads other than the one running the turns should make their changes through this instead of the setters
+     *
+     * @return the edit queue
+     */
+    EditQueue getEditQueue();
+
+    /**
+     * Seeds the random number generator used for ant movement, so runs can be repeated
+     *
+     * @param seed the seed
+     */
+    void setSeed(long seed);
+
+    /**
+     * Adds a listener that is told whenever a turn finishes
+     *
+     * @param listener the listener
+     */
+    void addTurnListener(TurnListener listener);
+
+    /**
+     * Stops telling a listener about finished turns
+     *
+     * @param listener the listener
+     */
+    void removeTurnListener(TurnListener listener);
+
+    /**
+     * Returns the metrics the engine records its timings into
+     *
+     * @return the metrics, or null if none are attached
+     */
+    EngineMetrics getMetrics();
+
+    /**
+     * Attaches metrics to record timings into, or detaches them
+     *
+     * @param metrics the metrics, or null to stop recording
+     */
+    void setMetrics(EngineMetrics metrics);
+
+    // Size, turn and colony
+
+    /**
+     * Returns the number of rows in the simulation
+     *
+     * @return number of rows
+     */
+    int getNumRows();
+
+    /**
+     * Returns the number of columns in the simulation
+     *
+     * @return number of columns
+     */
+    int getNumColumns();
+
+    /**
+     * Returns the current turn of the simulation
+     *
+     * @return the current turn
+     */
+    int getTurn();
+
+    /**
+     * Sets the turn of the simulation
+     *
+     * @param turn the turn to set it to
+     */
+    void setTurn(int turn);
+
+    /**
+     * Returns the row of the colony
+     *
+     * @return the row
+     */
+    int getColonyRow();
+
+    /**
+     * Moves the colony to another row; the terrain grid has to be changed separately
+     *
+     * @param colonyRow the new row
+     */
+    void setColonyRow(int colonyRow);
+
+    /**
+     * Returns the column of the colony
+     *
+     * @return the column
+     */
+    int getColonyColumn();
+
+    /**
+     * Moves the colony to another column; the terrain grid has to be changed separately
+     *
+     * @param colonyColumn the new column
+     */
+    void setColonyColumn(int colonyColumn);
+
+    // Tiles
+
+    /**
+     * Returns the terrain of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       food on the tile, or <code>EMPTY</code>, <code>OBSTACLE</code> or <code>COLONY</code>
+     */
+    int getTerrainGrid(int row, int column);
+
+    /**
+     * Changes the terrain of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param value  food on the tile, or <code>EMPTY</code>, <code>OBSTACLE</code> or <code>COLONY</code>
+     */
+    void setTerrainGrid(int row, int column, int value);
+
+    /**
+     * Changes the terrain of every tile in a batch in one pass, skipping the colony (and obstacles, if the batch says so)
+     * Totals, neighbour masks and the distance field back to the colony are brought up to date once, after the whole batch
+     *
+     * @param edit the batch of changes, made for a grid of this size
+     * @return     number of tiles that changed
+     */
+    int applyTerrainEdit(RegionEdit edit);
+
+    /**
+     * Returns the pheromone level of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       pheromone level
+     */
+    int getPheromoneGrid(int row, int column);
+
+    /**
+     * Changes the pheromone level of a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @param value  new pheromone level
+     */
+    void setPheromoneGrid(int row, int column, int value);
+
+    /**
+     * Returns the number of ants on a tile
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       number of ants
+     */
+    int getAntGrid(int row, int column);
+
+    /**
+     * Returns which neighbours of a tile an ant can move to, and how many tiles go into the tile's pheromone average
+     *
+     * @param row    row of the tile
+     * @param column column of the tile
+     * @return       the mask, laid out as described at <code>AntColonyEngine.NEIGHBOURBITS</code>
+     */
+    int getNeighbourMask(int row, int column);
+
+    /**
+     * Copies the pheromone, terrain and ant grids into flat arrays, one row after another
+     *
+     * @param pheromone destination for the pheromone grid, at least numRows * numColumns long (or null to skip)
+     * @param terrain   destination for the terrain grid (or null to skip)
+     * @param ants      destination for the ant grid (or null to skip)
+     */
+    void copyGrids(int[] pheromone, int[] terrain, int[] ants);
+
+    // Ants
+
+    /**
+     * Returns the number of ants
+     *
+     * @return number of ants
+     */
+    int getNumAnts();
+
+    /**
+     * Returns the row of an ant
+     *
+     * @param index index of the ant
+     * @return      the row
+     */
+    int getAntRow(int index);
+
+    /**
+     * Returns the column of an ant
+     *
+     * @param index index of the ant
+     * @return      the column
+     */
+    int getAntColumn(int index);
+
+    /**
+     * Returns whether an ant is carrying food back to the colony
+     *
+     * @param index index of the ant
+     * @return      whether it has found food
+     */
+    boolean getAntFoundFood(int index);
+
+    /**
+     * Changes whether an ant is carrying food back to the colony
+     *
+     * @param index     index of the ant
+     * @param foundFood whether it has found food
+     */
+    void setAntFoundFood(int index, boolean foundFood);
+
+    /**
+     * Adds an ant to a tile
+     *
+     * @param row       row of the tile
+     * @param column    column of the tile
+     * @param foundFood whether the new ant is carrying food
+     */
+    void addAnt(int row, int column, boolean foundFood);
+
+    /**
+     * Removes an ant
+     *
+     * @param index index of the ant
+     */
+    void deleteAnt(int index);
+
+    // Settings
+
+    /**
+     * Returns the pheromones an ant leaves behind when it picks up food
+     *
+     * @return pheromone strength
+     */
+    int getPheromoneStrength();
+
+    /**
+     * Changes the pheromones an ant leaves behind when it picks up food
+     *
+     * @param pheromoneStrength pheromone strength
+     */
+    void setPheromoneStrength(int pheromoneStrength);
+
+    /**
+     * Returns how much pheromones decay per turn
+     *
+     * @return pheromone decay
+     */
+    int getPheromoneDecay();
+
+    /**
+     * Changes how much pheromones decay per turn
+     *
+     * @param pheromoneDecay pheromone decay
+     */
+    void setPheromoneDecay(int pheromoneDecay);
+
+    /**
+     * Returns the minimum pheromone level on any tile
+     *
+     * @return minimum pheromone level
+     */
+    int getMinimumPheromone();
+
+    /**
+     * Changes the minimum pheromone level on any tile
+     *
+     * @param minimumPheromone minimum pheromone level
+     */
+    void setMinimumPheromone(int minimumPheromone);
+
+    // Totals
+
+    /**
+     * Returns the food left on every tile, added up
+     *
+     * @return total amount of food on the grid
+     */
+    int getTotalFood();
+
+    /**
+     * Returns the index of tiles with food, for finding the nearest food or the food in an area
+     * The index is built the first time this is called, and kept up to date as food is picked up or edited after that
+     *
+     * @return the food index
+     */
+    FoodIndex getFoodIndex();
+
+    /**
+     * Returns the number of ants that are carrying food back to the colony
+     *
+     * @return number of ants that have found food
+     */
+    int getNumAntsCarryingFood();
+
+    /**
+     * Returns the food brought back to the colony during the last turn
+     *
+     * @return units of food delivered
+     */
+    int getFoodDeliveredThisTurn();
+
+    /**
+     * Returns the food brought back to the colony since this engine was created or loaded
+     *
+     * @return units of food delivered
+     */
+    long getFoodDeliveredTotal();
+
+    /**
+     * Returns the pheromone level of every tile, added up
+     *
+     * @return sum of the pheromone grid
+     */
+    long getPheromoneSum();
+
+    /**
+     * Returns the highest pheromone level of any tile
+     *
+     * @return the highest pheromone level
+     */
+    int getPheromoneMax();
+
+    // Text output, in the same format for every engine
+    // AntColonyEngine prints straight from its grids; these versions go through the getters so any engine can use them
+
+    /**
+     * Print out all the info at the start of a turn and prompt user for command
+     */
+    default void printInfo() {
+        printInfo(false);
+    }
+
+    /**
+     * Print out the info at the start of a turn and prompt user for command
+     *
+     * @param summaryOnly if true, print a one line summary and a short prompt instead of the grids and the full menu
+     */
+    default void printInfo(boolean summaryOnly) {
+        StringBuilder builder = new StringBuilder();
+        if (summaryOnly) {
+            appendSummary(builder);
+            builder.append("Enter your command (HELP for the list of commands): \n");
+        } else {
+            appendGrids(builder);
+            builder.append("Enter your command: \n");
+            appendCommands(builder);
+        }
+        System.out.append(builder);
+        System.out.flush();
+    }
+
+    /**
+     * Prints the turn number and all the grids, without prompting for a command
+     */
+    default void printGrids() {
+        StringBuilder builder = new StringBuilder();
+        appendGrids(builder);
+        System.out.append(builder);
+        System.out.flush();
+    }
+
+    /**
+     * Adds the turn number and all the grids to the text being built
+     *
+     * @param builder where to add the text
+     */
+    default void appendGrids(StringBuilder builder) {
+        int tiles = getNumRows() * getNumColumns();
+        int[] pheromone = new int[tiles];
+        int[] terrain = new int[tiles];
+        int[] ants = new int[tiles];
+        copyGrids(pheromone, terrain, ants);
+
+        builder.append("Turn ").append(getTurn()).append(":\n");
+        builder.append("Pheromone Grid: \n");
+        appendGrid(builder, pheromone, getNumColumns());
+        builder.append("Terrain Grid: \n");
+        appendGrid(builder, terrain, getNumColumns());
+        builder.append("Ant Grid: \n");
+        appendGrid(builder, ants, getNumColumns());
+    }
+
+    /**
+     * Prints a one line summary of the simulation
+     */
+    default void printSummary() {
+        StringBuilder builder = new StringBuilder();
+        appendSummary(builder);
+        System.out.append(builder);
+        System.out.flush();
+    }
+
+    /**
+     * Adds a one line summary of the simulation to the text being built
+     *
+     * @param builder where to add the text
+     */
+    default void appendSummary(StringBuilder builder) {
+        int carrying = getNumAntsCarryingFood();
+
+        builder.append("Turn ").append(getTurn())
+                .append(": food remaining ").append(getTotalFood())
+                .append(", ants searching ").append(getNumAnts() - carrying)
+                .append(", ants returning ").append(carrying)
+                .append(", highest pheromone ").append(getPheromoneMax())
+                .append('\n');
+    }
+
+    /**
+     * Prints out information about the simulation and how it works
+     */
+    default void printHelp() {
+        StringBuilder builder = new StringBuilder("HELP: \n");
+        appendCommands(builder);
+        System.out.append(builder);
+        System.out.flush();
+    }
+
+    /**
+     * Prints out information about an ant
+     *
+     * @param index location of ant data in the arrays
+     */
+    default void printAnt(int index) {
+        System.out.println("Ant #" + index + " at row " + getAntRow(index) + " and column " + getAntColumn(index) + "; found food: " + getAntFoundFood(index));
+    }
+
+    /**
+     * Adds a flat grid to the text being built, separated by a space, one row per line
+     *
+     * @param builder    where to add the text
+     * @param grid       the grid, one row after another
+     * @param numColumns length of each row
+     */
+    static void appendGrid(StringBuilder builder, int[] grid, int numColumns) {
+        int highestNumber = Integer.MIN_VALUE;
+        for (int value : grid) {
+            highestNumber = Math.max(highestNumber, value);
+        }
+        int outputWidth = String.valueOf(highestNumber).length() + 1;  // +1 in case there is a negative
+
+        for (int i = 0; i < grid.length; i++) {
+            Utils.appendPadded(builder, grid[i], outputWidth);
+            builder.append(' ');
+            if (i % numColumns == numColumns - 1) {
+                builder.append('\n');
+            }
+        }
+    }
+
+    /**
+     * Adds the list of commands to the text being built
+     *
+     * @param builder where to add the text
+     */
+    static void appendCommands(StringBuilder builder) {
+        builder.append("QUIT: exit program\n");
+        builder.append("HELP: tutorial on how to interpret/use the program\n");
+        builder.append("PHEROMONE: overwrite the value of a pheromone at a specific row/column\n");
+        builder.append("PHEROMONE STRENGTH: change the value of pheromone strength\n");
+        builder.append("PHEROMONE DECAY: change the value of pheromone decay\n");
+        builder.append("COLONY: change the location of the ant colony\n");
+        builder.append("OBSTACLE: create or remove obstacle\n");
+        builder.append("FOOD: overwrite food values\n");
+        builder.append("EDIT ANT: flip the value of if ant has found food or not\n");
+        builder.append("ADD ANT: add another ant\n");
+        builder.append("DELETE ANT: delete an at\n");
+        builder.append("Any other input: continue to next turn\n");
+    }
+}
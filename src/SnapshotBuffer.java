@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+
+/**
+ * Publishes read-only snapshots of an engine at turn boundaries, so other threads can read a whole turn without locks
+ * and without ever making the thread running the turns wait for them
+ *
+ * Works like triple buffering: one snapshot is the latest, one can be held by a slow reader, and the third is free
+ * to be filled with the next turn. The latest snapshot is swapped in through a volatile field, and each snapshot
+ * counts the readers holding it, so it is never refilled while anyone is reading it. If every spare snapshot is
+ * still held, a new one is made instead of waiting
+ *
+ * Copying the grids costs a pass over them, so a turn is only copied if someone asked for a snapshot since the last
+ * copy; a reader that hasn't looked for a while gets the last turn anyone looked at, and the next turn is copied for it
+ * Call <code>publish</code> after changing the engine between turns (for example while paused) to show the change
+ *
+ * <pre>
+ *     try (EngineSnapshot snapshot = buffer.acquire()) {
+ *         ... read the snapshot ...
+ *     }
+ * </pre>
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class SnapshotBuffer implements TurnListener {
+    final private static int BUFFERS = 3;
+
+    final private boolean includeAnts;
+    final private ArrayList<EngineSnapshot> snapshots = new ArrayList<>();  // only touched by the thread running the turns
+    private volatile EngineSnapshot latest;
+    private volatile boolean wanted = true;  // someone asked for a snapshot since the last one was published
+    private long nextVersion = 1;
+
+    /**
+     * Creates an empty buffer
+     *
+     * @param includeAnts whether to copy every ant's position as well as the grids, which costs more with many ants
+     */
+    public SnapshotBuffer(boolean includeAnts) {
+        this.includeAnts = includeAnts;
+    }
+
+    /**
+     * Starts publishing an engine's turns, and publishes its current state straight away
+     * Must be called from the thread that runs the engine's turns
+     *
+     * @param engine the engine
+     */
+    public void attach(SimulationEngine engine) {
+        publish(engine);
+        engine.addTurnListener(this);
+    }
+
+    /**
+     * Stops publishing an engine's turns; the latest snapshot stays available
+     *
+     * @param engine the engine
+     */
+    public void detach(SimulationEngine engine) {
+        engine.removeTurnListener(this);
+    }
+
+    /**
+     * Publishes the turn that just finished, if anyone has asked for a snapshot since the last one
+     *
+     * @param engine the engine that finished a turn
+     */
+    public void turnCompleted(SimulationEngine engine) {
+        if (wanted) {
+            publish(engine);
+        }
+    }
+
+    /**
+     * Copies the engine into a free snapshot and makes it the latest
+     * Must be called from the thread that runs the engine's turns, between turns
+     *
+     * @param engine the engine
+     */
+    public void publish(SimulationEngine engine) {
+        EngineSnapshot free = null;
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            EngineSnapshot snapshot = snapshots.get(i);
+            if (snapshot == latest || snapshot.pins.get() > 0) {
+                continue;
+            }
+            if (snapshot.getNumRows() != engine.getNumRows() || snapshot.getNumColumns() != engine.getNumColumns()) {
+                snapshots.remove(i);  // left over from an engine of another size
+                continue;
+            }
+            free = snapshot;
+            break;
+        }
+        if (free == null) {
+            // Only more than BUFFERS if readers are holding on to old snapshots
+            free = new EngineSnapshot(this, engine.getNumRows(), engine.getNumColumns());
+            snapshots.add(free);
+        }
+
+        wanted = false;
+        free.fill(engine, nextVersion++, includeAnts);
+        latest = free;  // the volatile write makes everything filled in above visible to readers
+
+        // Let go of the extra snapshots once the readers holding them are done
+        for (int i = snapshots.size() - 1; i >= 0 && snapshots.size() > BUFFERS; i--) {
+            if (snapshots.get(i) != latest && snapshots.get(i).pins.get() == 0) {
+                snapshots.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Pins the latest snapshot, so it doesn't change until it is closed
+     * Any thread can call this, and it never waits for a turn to finish
+     *
+     * @return the latest snapshot, or null if nothing has been published yet
+     */
+    public EngineSnapshot acquire() {
+        wanted = true;
+        while (true) {
+            EngineSnapshot snapshot = latest;
+            if (snapshot == null) {
+                return null;
+            }
+            snapshot.pins.incrementAndGet();
+            // If it is still the latest, it can't be being refilled, and it won't be now that it is pinned
+            // Otherwise it may already be getting refilled, so unpin it and try the new latest one
+            if (snapshot == latest) {
+                return snapshot;
+            }
+            snapshot.pins.decrementAndGet();
+        }
+    }
+
+    /**
+     * Unpins a snapshot; called by <code>EngineSnapshot.close()</code>
+     *
+     * @param snapshot the snapshot
+     */
+    void release(EngineSnapshot snapshot) {
+        if (snapshot.pins.decrementAndGet() < 0) {
+            snapshot.pins.incrementAndGet();
+            throw new IllegalStateException("Snapshot closed more times than it was acquired");
+        }
+    }
+
+    /**
+     * Returns the version of the latest snapshot without pinning it, to check if there is anything new
+     *
+     * @return the version, or 0 if nothing has been published yet
+     */
+    public long getLatestVersion() {
+        EngineSnapshot snapshot = latest;
+        return snapshot == null ? 0 : snapshot.getVersion();
+    }
+
+    /**
+     * Returns the number of snapshots the buffer is keeping, normally three
+     * Only meaningful on the thread that runs the turns
+     *
+     * @return number of snapshots
+     */
+    public int getSnapshotCount() {
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the statistics of every turn to a file, as a time series
+ * The engine hands each turn's statistics to a bounded queue, and a background thread does the actual writing,
+ * so a slow disk never holds up <code>update()</code> (unless the backpressure policy says it should)
+ *
+ * The binary format is columnar: a header, then blocks of up to <code>BLOCKSIZE</code> turns where each column's
+ * values are stored one after the other
+ * Header: the int <code>MAGIC</code>, the int number of columns, then each column name (writeUTF)
+ * Block:  the int number of turns n, then for each column, n doubles
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class StatisticsSink implements TurnListener, AutoCloseable {
+    /**
+     * File format of the output
+     */
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    /**
+     * What to do with a turn's statistics when the queue is full
+     */
+    public enum BackpressurePolicy {
+        BLOCK,   // wait for space, slowing the simulation down to the speed of the disk
+        DROP,    // throw away the new statistics
+        SAMPLE   // throw away the new statistics, and until the queue drains to half only keep every sampleInterval-th turn
+    }
+
+    final public static int MAGIC = 0x414E5453;  // "ANTS"
+    final public static int BLOCKSIZE = 1024;
+
+    final private Format format;
+    final private BackpressurePolicy policy;
+    final private int sampleInterval;
+    final private BlockingQueue<TurnStatistics> queue;
+    final private Thread writerThread;
+    final private AtomicLong dropped = new AtomicLong();
+
+    private long totalFoodDelivered = 0;  // only touched by the simulation thread
+    private boolean sampling = false;
+    private volatile boolean closed = false;
+    private volatile IOException writeError;
+
+    /**
+     * Creates a sink and starts its writer thread
+     *
+     * @param file           file to write to (overwritten)
+     * @param format         file format
+     * @param policy         what to do when the queue is full
+     * @param capacity       maximum number of turns waiting to be written
+     * @param sampleInterval when sampling, keep one turn out of this many
+     */
+    public StatisticsSink(File file, Format format, BackpressurePolicy policy, int capacity, int sampleInterval) throws IOException {
+        this.format = format;
+        this.policy = policy;
+        this.sampleInterval = Math.max(1, sampleInterval);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        // Open the file here so a bad path is reported straight away instead of on the writer thread
+        final FileOutputStream out = new FileOutputStream(file);
+
+        this.writerThread = new Thread(() -> writeLoop(out), "statistics-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Creates a sink with a queue of 4096 turns that samples every 10th turn when it falls behind
+     *
+     * @param file   file to write to (overwritten)
+     * @param format file format
+     * @param policy what to do when the queue is full
+     */
+    public StatisticsSink(File file, Format format, BackpressurePolicy policy) throws IOException {
+        this(file, format, policy, 4096, 10);
+    }
+
+    /**
+     * Queues the statistics of the turn that just finished
+     * Once the writer has failed (for example with the disk full) nothing will ever take them off the queue, so they are
+     * dropped instead of waiting forever; <code>close()</code> reports the failure
+     *
+     * @param engine the engine that finished a turn
+     */
+    @Override
+    public void turnCompleted(SimulationEngine engine) {
+        if (closed) {
+            return;
+        }
+        if (writeError != null || !writerThread.isAlive()) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        totalFoodDelivered += engine.getFoodDeliveredThisTurn();
+
+        if (sampling) {
+            if (queue.size() <= queue.remainingCapacity()) {  // drained to half, go back to keeping everything
+                sampling = false;
+            } else if (engine.getTurn() % sampleInterval != 0) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        TurnStatistics statistics = TurnStatistics.of(engine, totalFoodDelivered);
+
+        if (policy == BackpressurePolicy.BLOCK) {
+            try {
+                // Wait in short steps, so a writer that fails while the queue is full doesn't leave the simulation stuck
+                while (!queue.offer(statistics, 100, TimeUnit.MILLISECONDS)) {
+                    if (!writerThread.isAlive()) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (!queue.offer(statistics)) {
+            dropped.incrementAndGet();
+            if (policy == BackpressurePolicy.SAMPLE) {
+                sampling = true;
+            }
+        }
+    }
+
+    /**
+     * Runs on the writer thread: takes statistics off the queue and writes them until the sink is closed
+     *
+     * @param out the opened file
+     */
+    private void writeLoop(FileOutputStream out) {
+        try {
+            if (format == Format.CSV) {
+                writeCsv(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+            } else {
+                writeBinary(new DataOutputStream(new BufferedOutputStream(out, 1 << 16)));
+            }
+        } catch (IOException e) {
+            writeError = e;
+        } catch (InterruptedException e) {
+            // closing the sink interrupts the thread if it is stuck
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (writeError == null) {
+                    writeError = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes comma separated values with a header line
+     *
+     * @param writer where to write
+     */
+    private void writeCsv(Writer writer) throws IOException, InterruptedException {
+        StringBuilder line = new StringBuilder(String.join(",", TurnStatistics.COLUMNS)).append('\n');
+        writer.write(line.toString());
+
+        while (!closed || !queue.isEmpty()) {
+            TurnStatistics statistics = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (statistics == null) {
+                writer.flush();  // nothing new, so make what's written so far visible to anyone tailing the file
+                continue;
+            }
+
+            line.setLength(0);
+            statistics.appendCsv(line);
+            writer.write(line.toString());
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Writes the binary columnar format described at the top of the class
+     *
+     * @param out where to write
+     */
+    private void writeBinary(DataOutputStream out) throws IOException, InterruptedException {
+        out.writeInt(MAGIC);
+        out.writeInt(TurnStatistics.COLUMNS.length);
+        for (String column : TurnStatistics.COLUMNS) {
+            out.writeUTF(column);
+        }
+
+        TurnStatistics[] block = new TurnStatistics[BLOCKSIZE];
+        int blockLength = 0;
+
+        while (!closed || !queue.isEmpty()) {
+            TurnStatistics statistics = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (statistics != null) {
+                block[blockLength] = statistics;
+                blockLength++;
+            }
+
+            // Write a block when it is full, or when the simulation is quiet so the file doesn't lag far behind
+            if (blockLength == BLOCKSIZE || (statistics == null && blockLength > 0)) {
+                writeBlock(out, block, blockLength);
+                blockLength = 0;
+            }
+        }
+
+        if (blockLength > 0) {
+            writeBlock(out, block, blockLength);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes one block of the binary format
+     *
+     * @param out    where to write
+     * @param block  statistics to write
+     * @param length number of statistics in the block
+     */
+    private void writeBlock(DataOutputStream out, TurnStatistics[] block, int length) throws IOException {
+        out.writeInt(length);
+        for (int column = 0; column < TurnStatistics.COLUMNS.length; column++) {
+            for (int i = 0; i < length; i++) {
+                out.writeDouble(block[i].getColumn(column));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the number of turns that were not written because of the backpressure policy
+     *
+     * @return number of dropped turns
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops accepting statistics, writes out everything still queued and closes the file
+     *
+     * @throws IOException if anything went wrong while writing
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.logging.Logger;
+
+/**
+ * Picks the fastest of several ways of doing the same job by timing each of them for a few turns
+ * Every option is tried in turn until each has been timed <code>trialTurns</code> times, then the one with the
+ * fastest single turn is used from then on (the fastest rather than the average, so a garbage collection or a
+ * slow first run doesn't count against an option)
+ *
+ * The best option depends on the workload, so the options are timed again whenever the number of ants or the
+ * size of the active area grows or shrinks tenfold from what it was when the choice was made
+ * Workloads below a floor all count as the floor, so going from 2 ants to 30 doesn't start the timing all over again
+ * Only options that give exactly the same result should be offered, since the choice can change at any turn
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class StrategyTuner {
+    final private static Logger LOGGER = Logger.getLogger(StrategyTuner.class.getName());
+    final private static int SHIFT = 10;  // how many times bigger or smaller the workload has to get to time the options again
+
+    final private String name;
+    final private String[] options;
+    final private int trialTurns;
+    final private long floor;  // smallest workload that counts
+
+    final private long[] fastestNanos;
+    final private int[] trials;
+    private int chosen = -1;  // -1 while the options are still being timed
+    private int nextTrial = 0;
+
+    // Workload when the choice was made
+    private long chosenAnts;
+    private long chosenArea;
+
+    /**
+     * Creates a tuner for a set of options
+     *
+     * @param name       what is being tuned, for the log
+     * @param options    names of the options, for the log
+     * @param trialTurns number of turns to time each option for
+     * @param floor      workloads smaller than this are treated as this
+     */
+    public StrategyTuner(String name, String[] options, int trialTurns, long floor) {
+        this.name = name;
+        this.options = options;
+        this.trialTurns = trialTurns;
+        this.floor = Math.max(1, floor);
+        this.fastestNanos = new long[options.length];
+        this.trials = new int[options.length];
+        reset();
+    }
+
+    /**
+     * Forgets the timings, so every option is tried again
+     */
+    public void reset() {
+        for (int i = 0; i < options.length; i++) {
+            fastestNanos[i] = Long.MAX_VALUE;
+            trials[i] = 0;
+        }
+        chosen = options.length == 1 ? 0 : -1;  // with one option there is nothing to compare
+        nextTrial = 0;
+    }
+
+    /**
+     * Returns the option to use for this turn
+     * Call <code>record</code> afterwards with how long it took
+     *
+     * @param ants number of ants right now
+     * @param area size of the active area right now, in tiles
+     * @return     index of the option
+     */
+    public int choose(long ants, long area) {
+        if (chosen >= 0) {
+            if (options.length == 1 || (!shifted(chosenAnts, ants) && !shifted(chosenArea, area))) {
+                return chosen;
+            }
+            LOGGER.info(name + ": workload changed from " + chosenAnts + " ants and " + chosenArea + " active tiles to "
+                    + ants + " ants and " + area + " active tiles, timing the options again");
+            reset();
+        }
+
+        // Take turns between the options so a slow stretch of the simulation doesn't all land on one of them
+        int option = nextTrial;
+        nextTrial = (nextTrial + 1) % options.length;
+        chosenAnts = ants;
+        chosenArea = area;
+        return option;
+    }
+
+    /**
+     * Records how long an option took, and makes the choice once every option has been timed enough
+     *
+     * @param option index of the option that was used
+     * @param nanos  how long it took
+     */
+    public void record(int option, long nanos) {
+        if (chosen >= 0) {
+            return;
+        }
+        fastestNanos[option] = Math.min(fastestNanos[option], nanos);
+        trials[option]++;
+
+        for (int i = 0; i < options.length; i++) {
+            if (trials[i] < trialTurns) {
+                return;
+            }
+        }
+
+        chosen = 0;
+        StringBuilder timings = new StringBuilder();
+        for (int i = 0; i < options.length; i++) {
+            if (fastestNanos[i] < fastestNanos[chosen]) {
+                chosen = i;
+            }
+            timings.append(i == 0 ? "" : ", ").append(options[i]).append(' ')
+                    .append(String.format("%.3f", fastestNanos[i] / 1e6)).append(" ms");
+        }
+        LOGGER.info(name + ": chose " + options[chosen] + " for " + chosenAnts + " ants and " + chosenArea
+                + " active tiles (" + timings + ")");
+    }
+
+    /**
+     * Checks if a workload has grown or shrunk tenfold
+     *
+     * @param before workload when the choice was made
+     * @param now    workload now
+     * @return       whether it changed enough to time the options again
+     */
+    private boolean shifted(long before, long now) {
+        long low = Math.max(floor, Math.min(before, now));
+        long high = Math.max(floor, Math.max(before, now));
+        return high >= low * SHIFT;
+    }
+
+    /**
+     * Returns the option that was chosen
+     *
+     * @return index of the option, or -1 if the options are still being timed
+     */
+    public int getChosen() {
+        return chosen;
+    }
+
+    /**
+     * Returns the names of the options
+     *
+     * @return the option names
+     */
+    public String[] getOptions() {
+        return options;
+    }
+}
@@ -1,3 +1,7 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Scanner;
 /**
  * This class' main method runs the simulation using text to display information and accept input
@@ -7,9 +11,119 @@ import java.util.Scanner;
  * @since 1.0
  */
 public class TextSimulation {
-    public static void main(String[] args) {
+    /**
+     * Runs the text simulation
+     * Optional arguments: <code>--stats &lt;file&gt; [csv|binary] [block|drop|sample]</code> writes every turn's statistics to a file
+     * <code>--frames &lt;folder&gt; [every]</code> saves PNG images of the grids every few turns
+     * <code>--autosave &lt;folder&gt; [every] [keep]</code> saves a checkpoint every few turns (1000 by default) in the background, keeping the newest few (5)
+     * <code>--every &lt;n&gt;</code> only prints the simulation every n turns, <code>--summary</code> prints one line per turn instead of the grids
+     * <code>--ansi [fps]</code> draws the grids with colours in the terminal instead of printing numbers
+     * <code>--script &lt;file&gt;</code> reads the setup and commands from a file instead of asking (see <code>ScriptRunner</code>)
+     * <code>--engine &lt;reference|fast|population&gt;</code> picks the engine that runs the simulation (see <code>EngineFactory</code>)
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
         Scanner input = new Scanner(System.in);
 
+        // Read command line options
+        StatisticsSink statisticsSink = null;
+        FrameExporter frameExporter = null;
+        Autosaver autosaver = null;
+        int printEvery = 1;
+        boolean printEveryGiven = false;
+        boolean summaryOnly = false;
+        String scriptFile = null;
+        AnsiTerminalView ansiView = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--stats") && i + 1 < args.length) {
+                StatisticsSink.Format format = StatisticsSink.Format.CSV;
+                StatisticsSink.BackpressurePolicy policy = StatisticsSink.BackpressurePolicy.BLOCK;
+                if (i + 2 < args.length && !args[i + 2].startsWith("--")) {
+                    format = StatisticsSink.Format.valueOf(args[i + 2].toUpperCase());
+                }
+                if (i + 3 < args.length && !args[i + 3].startsWith("--")) {
+                    policy = StatisticsSink.BackpressurePolicy.valueOf(args[i + 3].toUpperCase());
+                }
+                statisticsSink = new StatisticsSink(new File(args[i + 1]), format, policy);
+            } else if (args[i].equals("--frames") && i + 1 < args.length) {
+                int every = 1;
+                if (i + 2 < args.length && !args[i + 2].startsWith("--")) {
+                    every = Integer.parseInt(args[i + 2]);
+                }
+                frameExporter = new FrameExporter(new File(args[i + 1]), every);
+            } else if (args[i].equals("--autosave") && i + 1 < args.length) {
+                int every = 1000;
+                int keep = 5;
+                if (i + 2 < args.length && !args[i + 2].startsWith("--")) {
+                    every = Integer.parseInt(args[i + 2]);
+                }
+                if (i + 3 < args.length && !args[i + 3].startsWith("--")) {
+                    keep = Integer.parseInt(args[i + 3]);
+                }
+                autosaver = new Autosaver(new File(args[i + 1]), "autosave", every, keep);
+            } else if (args[i].equals("--every") && i + 1 < args.length) {
+                printEvery = Math.max(1, Integer.parseInt(args[i + 1]));
+                printEveryGiven = true;
+            } else if (args[i].equals("--summary")) {
+                summaryOnly = true;
+            } else if (args[i].equals("--ansi")) {
+                int fps = 0;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    fps = Integer.parseInt(args[i + 1]);
+                }
+                ansiView = new AnsiTerminalView(fps);
+            } else if (args[i].equals("--script") && i + 1 < args.length) {
+                scriptFile = args[i + 1];
+            } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                try {
+                    EngineFactory.parseType(args[i + 1]);  // fail now instead of after the whole setup has been typed in
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    return;
+                }
+                System.setProperty(EngineFactory.PROPERTY, args[i + 1]);
+            }
+        }
+
+        if (scriptFile != null) {
+            ArrayList<TurnListener> listeners = new ArrayList<>();
+            if (statisticsSink != null) {
+                listeners.add(statisticsSink);
+            }
+            if (frameExporter != null) {
+                listeners.add(frameExporter);
+            }
+            if (autosaver != null) {
+                listeners.add(autosaver);
+            }
+            if (ansiView != null) {
+                listeners.add(ansiView);
+            }
+
+            // Scripts only print while running turns if asked to, otherwise just on PRINT and SUMMARY
+            ScriptRunner runner = new ScriptRunner(printEveryGiven ? printEvery : 0, summaryOnly, listeners);
+            try (FileReader script = new FileReader(scriptFile)) {
+                runner.run(script);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error in script " + scriptFile + ": " + e.getMessage());
+            } finally {
+                if (statisticsSink != null) {
+                    statisticsSink.close();
+                }
+                if (frameExporter != null) {
+                    frameExporter.close();
+                }
+                if (autosaver != null) {
+                    autosaver.close();  // finishes the checkpoint being written
+                }
+                if (ansiView != null) {
+                    ansiView.close();
+                }
+            }
+            return;
+        }
+
         // Temporary variables
         int targetRow;
         int targetColumn;
@@ -65,7 +179,17 @@ public class TextSimulation {
             antColumn[i] = input.nextInt();
         }
 
-        AntColonyEngine engine = new AntColonyEngine(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
+        SimulationEngine engine = EngineFactory.create(numRows, numColumns, colonyRow, colonyColumn, antRow, antColumn, terrainGrid);
+        EngineMetrics.attachIfEnabled(engine);
+        if (statisticsSink != null) {
+            engine.addTurnListener(statisticsSink);
+        }
+        if (frameExporter != null) {
+            engine.addTurnListener(frameExporter);
+        }
+        if (autosaver != null) {
+            engine.addTurnListener(autosaver);
+        }
 
         input.nextLine();  // clear next line character
 
@@ -73,10 +197,21 @@ public class TextSimulation {
         boolean exitGame = false;
         String command;
         while (true) {
+            boolean firstCommand = true;  // turns that aren't printed still show the prompt again after a command
+
             // Ask for user input (user can enter multiple commands per turn)
             while (true) {
 
-                engine.printInfo();  // this will show input options and explain things to the user
+                if (ansiView != null) {
+                    if (!firstCommand) {
+                        ansiView.invalidate();  // the last command's output may have scrolled the screen
+                    }
+                    ansiView.draw(engine);
+                    engine.printInfo(true);
+                } else if (!firstCommand || engine.getTurn() % printEvery == 0) {
+                    engine.printInfo(summaryOnly);  // this will show input options and explain things to the user
+                }
+                firstCommand = false;
                 command = input.nextLine();
 
                 if (command.equals("QUIT")) {
@@ -216,6 +351,19 @@ public class TextSimulation {
 
         // Close scanner
         input.close();
+
+        if (statisticsSink != null) {
+            statisticsSink.close();  // writes out whatever is still queued
+        }
+        if (frameExporter != null) {
+            frameExporter.close();
+        }
+        if (autosaver != null) {
+            autosaver.close();
+        }
+        if (ansiView != null) {
+            ansiView.close();
+        }
     }
 
 
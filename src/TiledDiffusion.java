@@ -0,0 +1,231 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Pheromone diffusion and decay that can do several turns in one pass over the grid
+ * The grid is cut into square tiles, and each tile is copied into a small scratch buffer together with a border
+ * (the halo) as wide as the number of turns; the buffer is then advanced turn by turn, with the part that can
+ * still be worked out exactly shrinking by one tile each turn, until only the tile itself is left
+ * The scratch buffers fit in the processor's cache, so the grid is only read from memory once for all the turns
+ * instead of once per turn
+ *
+ * Gives exactly the same grid as running <code>AntColonyEngine.diffusePheromones</code> once per turn,
+ * so it can only be used on tiles where no ants add pheromones nearby during those turns; the others can be skipped
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class TiledDiffusion {
+    // Thread pools for a set number of threads, shared by every diffusion that asks for that many
+    final private static ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    final private int tileSize;
+    final private boolean parallel;
+    final private ForkJoinPool pool;  // null to use the common pool
+
+    // Two scratch buffers per thread, swapped between turns
+    final private ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[2][0]);
+
+    /**
+     * Creates a diffusion with a tile size
+     *
+     * @param tileSize rows and columns of each tile
+     * @param parallel if true, tiles are split between all the processors
+     */
+    public TiledDiffusion(int tileSize, boolean parallel) {
+        this.tileSize = tileSize;
+        this.parallel = parallel;
+        this.pool = null;
+    }
+
+    /**
+     * Creates a diffusion with a tile size that splits the tiles between a set number of threads
+     *
+     * @param tileSize rows and columns of each tile
+     * @param threads  number of threads, 1 to do every tile on the calling thread
+     */
+    public TiledDiffusion(int tileSize, int threads) {
+        this.tileSize = tileSize;
+        this.parallel = threads > 1;
+        this.pool = threads > 1 ? POOLS.computeIfAbsent(threads, ForkJoinPool::new) : null;
+    }
+
+    /**
+     * Returns the number of rows and columns in each tile
+     *
+     * @return the tile size
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Works out the pheromone grid after a number of turns of diffusion and decay
+     *
+     * @param grid             pheromone grid to start from (not changed)
+     * @param neighbourMask    neighbour masks of every tile, as in <code>AntColonyEngine.getNeighbourMask</code>
+     * @param turns            number of turns to advance
+     * @param pheromoneDecay   how much pheromones decay per turn
+     * @param minimumPheromone minimum pheromone level on any tile
+     * @return                 the new pheromone grid
+     */
+    public int[][] diffuse(int[][] grid, byte[][] neighbourMask, int turns, int pheromoneDecay, int minimumPheromone) {
+        return diffuse(grid, neighbourMask, turns, pheromoneDecay, minimumPheromone, null);
+    }
+
+    /**
+     * Works out the pheromone grid after a number of turns of diffusion and decay, leaving out some of the tiles
+     *
+     * @param grid             pheromone grid to start from (not changed)
+     * @param neighbourMask    neighbour masks of every tile, as in <code>AntColonyEngine.getNeighbourMask</code>
+     * @param turns            number of turns to advance
+     * @param pheromoneDecay   how much pheromones decay per turn
+     * @param minimumPheromone minimum pheromone level on any tile
+     * @param skip             <code>skip[tileRow * tileColumns + tileColumn]</code> is true for tiles to leave out
+     *                         (with tiles of <code>getTileSize()</code>), or null to do every tile
+     * @return                 the new pheromone grid, with 0 on the tiles left out
+     */
+    public int[][] diffuse(int[][] grid, byte[][] neighbourMask, int turns, int pheromoneDecay, int minimumPheromone, boolean[] skip) {
+        int numRows = grid.length;
+        int numColumns = grid[0].length;
+        int[][] result = new int[numRows][numColumns];
+        int tileRows = (numRows + tileSize - 1) / tileSize;
+        int tileColumns = (numColumns + tileSize - 1) / tileSize;
+
+        IntStream tiles = IntStream.range(0, tileRows * tileColumns);
+        if (skip != null) {
+            tiles = tiles.filter(tile -> !skip[tile]);
+        }
+        if (parallel) {
+            tiles = tiles.parallel();
+        }
+        // Each tile only writes its own part of the result, so tiles can run at the same time
+        IntStream allTiles = tiles;
+        Runnable work = () -> allTiles.forEach(tile -> diffuseTile(grid, neighbourMask, result, (tile / tileColumns) * tileSize,
+                (tile % tileColumns) * tileSize, turns, pheromoneDecay, minimumPheromone));
+        if (pool != null) {
+            pool.submit(work).join();  // a parallel stream started inside a pool runs on that pool's threads
+        } else {
+            work.run();
+        }
+
+        return result;
+    }
+
+    /**
+     * Advances one tile by a number of turns and writes it into the result
+     *
+     * @param grid             pheromone grid to start from
+     * @param neighbourMask    neighbour masks of every tile
+     * @param result           where to write the tile
+     * @param tileRow          first row of the tile
+     * @param tileColumn       first column of the tile
+     * @param turns            number of turns to advance
+     * @param pheromoneDecay   how much pheromones decay per turn
+     * @param minimumPheromone minimum pheromone level on any tile
+     */
+    private void diffuseTile(int[][] grid, byte[][] neighbourMask, int[][] result, int tileRow, int tileColumn,
+                             int turns, int pheromoneDecay, int minimumPheromone) {
+        int numRows = grid.length;
+        int numColumns = grid[0].length;
+
+        // The tile plus its halo, cut off at the edges of the grid (nothing beyond the edge is needed there)
+        int top = Math.max(0, tileRow - turns);
+        int bottom = Math.min(numRows, tileRow + tileSize + turns);
+        int left = Math.max(0, tileColumn - turns);
+        int right = Math.min(numColumns, tileColumn + tileSize + turns);
+        int width = right - left;
+        int lastRow = Math.min(numRows, tileRow + tileSize);
+        int tileWidth = Math.min(numColumns, tileColumn + tileSize) - tileColumn;
+
+        // A tile whose halo is all at the minimum stays there (the average is the minimum, and decay can't go below it),
+        // which is most of the grid when the pheromones are only around the colony and a few trails
+        if (pheromoneDecay >= 0 && isAtMinimum(grid, top, bottom, left, right, minimumPheromone)) {
+            for (int row = tileRow; row < lastRow; row++) {
+                Arrays.fill(result[row], tileColumn, tileColumn + tileWidth, minimumPheromone);
+            }
+            return;
+        }
+
+        int[][] buffers = scratch.get();
+        int size = (bottom - top) * width;
+        if (buffers[0].length < size) {
+            buffers[0] = new int[size];
+            buffers[1] = new int[size];
+        }
+        int[] current = buffers[0];
+        int[] next = buffers[1];
+
+        for (int row = top; row < bottom; row++) {
+            System.arraycopy(grid[row], left, current, (row - top) * width, width);
+        }
+
+        for (int turn = 1; turn <= turns; turn++) {
+            // Tiles near the edge of the halo depend on tiles outside it, so they can't be worked out any more
+            int fromRow = top > 0 ? top + turn : 0;
+            int toRow = bottom < numRows ? bottom - turn : numRows;
+            int fromColumn = left > 0 ? left + turn : 0;
+            int toColumn = right < numColumns ? right - turn : numColumns;
+
+            for (int row = fromRow; row < toRow; row++) {
+                byte[] masks = neighbourMask[row];
+                int rowStart = (row - top) * width - left;  // index of column 0 of this row in the buffer
+
+                for (int column = fromColumn; column < toColumn; column++) {
+                    int mask = masks[column];
+                    int index = rowStart + column;
+                    long sum = current[index];
+                    if ((mask & 1 << AntColonyEngine.UP) != 0) {
+                        sum += current[index - width];
+                    }
+                    if ((mask & 1 << AntColonyEngine.RIGHT) != 0) {
+                        sum += current[index + 1];
+                    }
+                    if ((mask & 1 << AntColonyEngine.DOWN) != 0) {
+                        sum += current[index + width];
+                    }
+                    if ((mask & 1 << AntColonyEngine.LEFT) != 0) {
+                        sum += current[index - 1];
+                    }
+
+                    int value = (int) (sum / (mask >> AntColonyEngine.COUNTSHIFT)) - pheromoneDecay;
+                    next[index] = Math.max(value, minimumPheromone);
+                }
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        for (int row = tileRow; row < lastRow; row++) {
+            System.arraycopy(current, (row - top) * width + tileColumn - left, result[row], tileColumn, tileWidth);
+        }
+    }
+
+    /**
+     * Checks if every tile in a rectangle of the grid is at the minimum pheromone level
+     *
+     * @param grid             pheromone grid
+     * @param top              first row
+     * @param bottom           row after the last
+     * @param left             first column
+     * @param right            column after the last
+     * @param minimumPheromone minimum pheromone level
+     * @return                 whether nothing in the rectangle is above the minimum
+     */
+    private static boolean isAtMinimum(int[][] grid, int top, int bottom, int left, int right, int minimumPheromone) {
+        for (int row = top; row < bottom; row++) {
+            int[] values = grid[row];
+            for (int column = left; column < right; column++) {
+                if (values[column] != minimumPheromone) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
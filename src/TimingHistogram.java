@@ -0,0 +1,128 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, using powers of two as bucket boundaries
+ * Bucket i counts durations between 2^(i-1) and 2^i - 1 nanoseconds (bucket 0 is for 0)
+ * Safe to read from another thread (like JConsole) while the simulation records into it
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class TimingHistogram {
+    final public static int NUM_BUCKETS = 64;
+
+    final private AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    final private AtomicLong count = new AtomicLong();
+    final private AtomicLong totalNanos = new AtomicLong();
+    final private AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Adds a duration to the histogram
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;  // nanoTime can go backwards slightly on some systems
+        }
+
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the number of durations recorded
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of all durations recorded
+     *
+     * @return total nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the longest duration recorded
+     *
+     * @return maximum nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the average duration
+     *
+     * @return mean nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMeanNanos() {
+        long currentCount = count.get();
+        if (currentCount == 0) {
+            return 0;
+        }
+        return (double) totalNanos.get() / currentCount;
+    }
+
+    /**
+     * Estimates a percentile from the buckets, rounded up to the top of the bucket it falls in
+     *
+     * @param percentile between 0 and 100
+     * @return           estimated nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && counts[i] > 0) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns a copy of the bucket counts
+     *
+     * @return <code>buckets[i]</code> is the number of durations in bucket i
+     */
+    public long[] getBuckets() {
+        long[] copy = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Clears everything recorded so far
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
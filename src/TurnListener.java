@@ -0,0 +1,16 @@
+/**
+ * Something that wants to know when the engine finishes a turn, like a statistics exporter
+ * Listeners are called on the thread that runs <code>update()</code>, so they should hand slow work to another thread
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public interface TurnListener {
+    /**
+     * Called at the end of every <code>update()</code>, after the turn counter has increased
+     *
+     * @param engine the engine that finished the turn
+     */
+    void turnCompleted(SimulationEngine engine);
+}
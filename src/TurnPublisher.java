@@ -0,0 +1,320 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends a snapshot of every finished turn to subscribers, such as the GUI, exporters and statistics collectors
+ * Each snapshot is pinned for the subscriber that gets it, and the subscriber has to close it once it is done
+ *
+ * Subscribers ask for snapshots with <code>request(n)</code>, and are only sent as many as they asked for
+ * A subscriber never holds up the engine: each one has room for a single snapshot waiting to be delivered, and if
+ * another turn finishes before it has been delivered, the waiting snapshot is replaced by the newer one
+ * (a slow subscriber sees the latest turn, and skips the ones in between; <code>getTurn()</code> shows how many)
+ * Snapshots are delivered on the subscriber's own executor, one at a time, so <code>onNext</code> can take as long as it needs
+ *
+ * The grids are only copied while someone is subscribed; every turn is copied then, even while the subscribers are all
+ * busy, so a subscriber that asks for more after the engine has stopped still gets the turn it stopped on
+ * Must be attached to the engine, and <code>publish</code> called, from the thread that runs the engine's turns
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class TurnPublisher implements Flow.Publisher<EngineSnapshot>, TurnListener, AutoCloseable {
+    final private static Logger LOGGER = Logger.getLogger(TurnPublisher.class.getName());
+
+    final private SnapshotBuffer buffer;
+    final private CopyOnWriteArrayList<TurnSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    final private AtomicLong skipped = new AtomicLong();  // snapshots replaced before they were delivered
+    private volatile boolean closed = false;
+
+    /**
+     * A subscriber's link to the publisher: its demand, and the snapshot waiting to be delivered to it
+     */
+    private class TurnSubscription implements Flow.Subscription {
+        final private Flow.Subscriber<? super EngineSnapshot> subscriber;
+        final private Executor executor;
+        final private AtomicLong demand = new AtomicLong();
+        final private AtomicReference<EngineSnapshot> waiting = new AtomicReference<>();  // pinned, not yet delivered
+        final private AtomicInteger work = new AtomicInteger();  // delivery runs while this is above 0, so it is never run twice at once
+        final private AtomicLong lastVersion = new AtomicLong();  // version of the newest snapshot handed to this subscription
+        private volatile boolean cancelled = false;
+        private volatile boolean completing = false;
+        private volatile Throwable error;  // set if the subscriber asked for a negative number of snapshots
+
+        /**
+         * Creates a subscription
+         *
+         * @param subscriber the subscriber
+         * @param executor   where its methods are called
+         */
+        TurnSubscription(Flow.Subscriber<? super EngineSnapshot> subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        /**
+         * Asks for more snapshots
+         * If nothing is waiting and there is a snapshot the subscriber hasn't seen yet, it is sent straight away,
+         * so a subscriber doesn't have to wait for the next turn while the simulation is paused
+         *
+         * @param n number of snapshots
+         */
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("request(" + n + "): must ask for at least one snapshot");
+                schedule();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);  // can't overflow
+
+            if (waiting.get() == null && buffer.getLatestVersion() > lastVersion.get()) {
+                EngineSnapshot snapshot = buffer.acquire();
+                if (snapshot != null) {
+                    offer(snapshot);
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Stops the snapshots; one already being delivered may still arrive
+         */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            schedule();  // so the waiting snapshot gets closed
+        }
+
+        /**
+         * Checks if the subscription still takes snapshots, whether or not it has asked for one yet
+         *
+         * @return whether it hasn't been cancelled or completed
+         */
+        boolean isLive() {
+            return !cancelled && !completing;
+        }
+
+        /**
+         * Makes a pinned snapshot the one waiting to be delivered, closing any older one that hadn't been delivered yet
+         * A snapshot no newer than one already handed over is closed instead, since the turns thread and
+         * <code>request</code> can both offer one at the same time
+         *
+         * @param snapshot the snapshot, pinned for this subscription
+         */
+        void offer(EngineSnapshot snapshot) {
+            long version = snapshot.getVersion();
+            if (lastVersion.getAndAccumulate(version, Math::max) >= version) {
+                snapshot.close();
+                return;
+            }
+            while (true) {
+                EngineSnapshot older = waiting.get();
+                if (older != null && older.getVersion() > version) {
+                    snapshot.close();  // lost the race to a newer one
+                    return;
+                }
+                if (waiting.compareAndSet(older, snapshot)) {
+                    if (older != null) {
+                        older.close();
+                        skipped.incrementAndGet();
+                    }
+                    break;
+                }
+            }
+            schedule();
+        }
+
+        /**
+         * Tells the subscriber there will be no more snapshots, once the waiting one has been delivered
+         */
+        void complete() {
+            completing = true;
+            schedule();
+        }
+
+        /**
+         * Runs a delivery on the subscriber's executor, unless one is already running, in which case that one goes around again
+         */
+        void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        /**
+         * Sends the subscriber the waiting snapshot if it asked for one, or the error, or the end
+         */
+        private void deliver() {
+            int pending = 1;
+            while (true) {
+                if (cancelled) {
+                    closeWaiting();
+                } else if (error != null) {
+                    cancel();
+                    closeWaiting();
+                    subscriber.onError(error);
+                } else {
+                    EngineSnapshot snapshot;
+                    while (demand.get() > 0 && (snapshot = waiting.getAndSet(null)) != null) {
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        try {
+                            subscriber.onNext(snapshot);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Subscriber threw, cancelling its subscription", e);
+                            cancel();
+                            break;
+                        }
+                    }
+                    if (completing && waiting.get() == null && !cancelled) {
+                        cancelled = true;
+                        subscriptions.remove(this);
+                        subscriber.onComplete();
+                    }
+                }
+
+                pending = work.addAndGet(-pending);
+                if (pending == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Closes the waiting snapshot, after the subscription has been cancelled
+         */
+        private void closeWaiting() {
+            EngineSnapshot snapshot = waiting.getAndSet(null);
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+    }
+
+    /**
+     * Creates a publisher
+     *
+     * @param includeAnts whether the snapshots include every ant's position as well as the grids
+     */
+    public TurnPublisher(boolean includeAnts) {
+        this.buffer = new SnapshotBuffer(includeAnts);
+    }
+
+    /**
+     * Starts publishing an engine's turns, and takes a snapshot of its current state for the first subscribers
+     *
+     * @param engine the engine
+     */
+    public void attach(SimulationEngine engine) {
+        buffer.publish(engine);
+        engine.addTurnListener(this);
+    }
+
+    /**
+     * Stops publishing an engine's turns
+     *
+     * @param engine the engine
+     */
+    public void detach(SimulationEngine engine) {
+        engine.removeTurnListener(this);
+    }
+
+    /**
+     * Adds a subscriber whose methods are called on the common fork join pool
+     *
+     * @param subscriber the subscriber
+     */
+    public void subscribe(Flow.Subscriber<? super EngineSnapshot> subscriber) {
+        subscribe(subscriber, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Adds a subscriber whose methods are called on an executor, for example <code>SwingUtilities::invokeLater</code>
+     *
+     * @param subscriber the subscriber
+     * @param executor   where the subscriber's methods are called
+     */
+    public void subscribe(Flow.Subscriber<? super EngineSnapshot> subscriber, Executor executor) {
+        TurnSubscription subscription = new TurnSubscription(subscriber, executor);
+        executor.execute(() -> {
+            subscriptions.add(subscription);
+            subscriber.onSubscribe(subscription);
+            if (closed) {
+                subscription.complete();
+            }
+        });
+    }
+
+    /**
+     * Publishes the turn that just finished
+     *
+     * @param engine the engine that finished a turn
+     */
+    public void turnCompleted(SimulationEngine engine) {
+        publish(engine);
+    }
+
+    /**
+     * Takes a snapshot of the engine and makes it the one waiting for every subscriber, delivered once they ask for it
+     * A subscriber still busy with an older turn has it waiting for when it asks again, instead of never seeing it
+     * Nothing is copied if nobody is subscribed; call this after changing the engine between turns to show the change
+     *
+     * @param engine the engine
+     */
+    public void publish(SimulationEngine engine) {
+        boolean wanted = false;
+        for (TurnSubscription subscription : subscriptions) {
+            wanted |= subscription.isLive();
+        }
+        if (!wanted || closed) {
+            return;
+        }
+
+        buffer.publish(engine);
+        for (TurnSubscription subscription : subscriptions) {
+            if (subscription.isLive()) {
+                EngineSnapshot snapshot = buffer.acquire();  // one pin for each subscriber it goes to
+                if (snapshot != null) {
+                    subscription.offer(snapshot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pins the latest snapshot without subscribing, for drawing something straight away
+     *
+     * @return the latest snapshot, or null if nothing has been published yet
+     */
+    public EngineSnapshot acquire() {
+        return buffer.acquire();
+    }
+
+    /**
+     * Returns how many snapshots subscribers have skipped because a newer turn finished before they were ready
+     * Subscribers can tell from <code>getTurn()</code> which turns they skipped, so this is only for monitoring
+     *
+     * @return snapshots skipped, added up over every subscriber
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Stops publishing and tells every subscriber there will be no more snapshots
+     */
+    public void close() {
+        closed = true;
+        for (TurnSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Summary of the simulation at the end of one turn
+ * Cheap to create and never changes, so it can be handed to another thread safely
+ *
+ * @author Jerry Cui
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class TurnStatistics {
+    // Column names, in the order they are written out
+    final public static String[] COLUMNS = {"turn", "food_remaining", "food_delivered", "total_food_delivered",
+            "ants_searching", "ants_returning", "pheromone_mean", "pheromone_max", "pheromone_sum"};
+
+    final private int turn;
+    final private long foodRemaining;
+    final private int foodDelivered;       // during this turn
+    final private long totalFoodDelivered; // since statistics started being recorded
+    final private int antsSearching;
+    final private int antsReturning;
+    final private double pheromoneMean;
+    final private int pheromoneMax;
+    final private long pheromoneSum;
+
+    /**
+     * Creates the statistics for a turn
+     *
+     * @param turn               the turn
+     * @param foodRemaining      food left on the grid
+     * @param foodDelivered      food brought back to the colony this turn
+     * @param totalFoodDelivered food brought back to the colony so far
+     * @param antsSearching      ants still searching for food
+     * @param antsReturning      ants carrying food back to the colony
+     * @param pheromoneMean      average pheromone level of a tile
+     * @param pheromoneMax       highest pheromone level of a tile
+     * @param pheromoneSum       sum of all pheromone levels
+     */
+    public TurnStatistics(int turn, long foodRemaining, int foodDelivered, long totalFoodDelivered, int antsSearching, int antsReturning,
+                          double pheromoneMean, int pheromoneMax, long pheromoneSum) {
+        this.turn = turn;
+        this.foodRemaining = foodRemaining;
+        this.foodDelivered = foodDelivered;
+        this.totalFoodDelivered = totalFoodDelivered;
+        this.antsSearching = antsSearching;
+        this.antsReturning = antsReturning;
+        this.pheromoneMean = pheromoneMean;
+        this.pheromoneMax = pheromoneMax;
+        this.pheromoneSum = pheromoneSum;
+    }
+
+    /**
+     * Collects the statistics of an engine's current state
+     *
+     * @param engine             the engine
+     * @param totalFoodDelivered food delivered so far, including this turn
+     * @return                   the statistics
+     */
+    public static TurnStatistics of(SimulationEngine engine, long totalFoodDelivered) {
+        int returning = engine.getNumAntsCarryingFood();
+        long pheromoneSum = engine.getPheromoneSum();
+
+        return new TurnStatistics(engine.getTurn(), engine.getTotalFood(), engine.getFoodDeliveredThisTurn(), totalFoodDelivered,
+                engine.getNumAnts() - returning, returning, (double) pheromoneSum / (engine.getNumRows() * engine.getNumColumns()),
+                engine.getPheromoneMax(), pheromoneSum);
+    }
+
+    /**
+     * Writes the statistics as one line of comma separated values, in the order of <code>COLUMNS</code>
+     *
+     * @param builder where to write the line
+     */
+    public void appendCsv(StringBuilder builder) {
+        builder.append(turn).append(',')
+                .append(foodRemaining).append(',')
+                .append(foodDelivered).append(',')
+                .append(totalFoodDelivered).append(',')
+                .append(antsSearching).append(',')
+                .append(antsReturning).append(',')
+                .append(pheromoneMean).append(',')
+                .append(pheromoneMax).append(',')
+                .append(pheromoneSum).append('\n');
+    }
+
+    /**
+     * Returns a column's value as a double, for writing numbers column by column
+     *
+     * @param column index into <code>COLUMNS</code>
+     * @return       the value
+     */
+    public double getColumn(int column) {
+        switch (column) {
+            case 0: return turn;
+            case 1: return foodRemaining;
+            case 2: return foodDelivered;
+            case 3: return totalFoodDelivered;
+            case 4: return antsSearching;
+            case 5: return antsReturning;
+            case 6: return pheromoneMean;
+            case 7: return pheromoneMax;
+            case 8: return pheromoneSum;
+            default: throw new IllegalArgumentException("No column " + column);
+        }
+    }
+
+    /**
+     * Returns the turn these statistics are from
+     *
+     * @return the turn these statistics are from
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the food left on the grid
+     *
+     * @return the food left on the grid
+     */
+    public long getFoodRemaining() {
+        return foodRemaining;
+    }
+
+    /**
+     * Returns the food brought back to the colony during this turn
+     *
+     * @return the food brought back to the colony during this turn
+     */
+    public int getFoodDelivered() {
+        return foodDelivered;
+    }
+
+    /**
+     * Returns the food brought back to the colony so far
+     *
+     * @return the food brought back to the colony so far
+     */
+    public long getTotalFoodDelivered() {
+        return totalFoodDelivered;
+    }
+
+    /**
+     * Returns the number of ants searching for food
+     *
+     * @return number of ants searching for food
+     */
+    public int getAntsSearching() {
+        return antsSearching;
+    }
+
+    /**
+     * Returns the number of ants carrying food back to the colony
+     *
+     * @return number of ants carrying food back to the colony
+     */
+    public int getAntsReturning() {
+        return antsReturning;
+    }
+
+    /**
+     * Returns the average pheromone level of a tile
+     *
+     * @return the average pheromone level of a tile
+     */
+    public double getPheromoneMean() {
+        return pheromoneMean;
+    }
+
+    /**
+     * Returns the highest pheromone level of a tile
+     *
+     * @return the highest pheromone level of a tile
+     */
+    public int getPheromoneMax() {
+        return pheromoneMax;
+    }
+
+    /**
+     * Returns the sum of all pheromone levels
+     *
+     * @return the sum of all pheromone levels
+     */
+    public long getPheromoneSum() {
+        return pheromoneSum;
+    }
+}
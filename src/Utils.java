@@ -1,3 +1,5 @@
+import java.util.Random;
+
 /**
  * Class containing helpful static methods
  *
@@ -6,6 +8,8 @@
  * @since 1.0
  */
 public class Utils {
+    private static final Random sharedRandom = new Random();  // used when the caller doesn't have their own generator
+
     /**
      * Appends a value to the end of an array
      * For integers only
@@ -101,6 +105,18 @@ public class Utils {
         return (int) (Math.random() * (end - start + 1)) + start;
     }
 
+    /**
+     * Generate a random integer between two points, inclusive, using a specific random number generator
+     *
+     * @param start  minimum value
+     * @param end    maximum value
+     * @param random generator to draw from
+     * @return       integer between start and end, inclusive
+     */
+    public static int randomInteger(int start, int end, Random random) {
+        return (int) (random.nextDouble() * (end - start + 1)) + start;
+    }
+
     /**
      * Returns a random choice from the array, taking into account the weight each item is given in the weights array
      * Let S be the sum of all the weights, then the chance of choices[i] being selected is weights[i] / S
@@ -110,6 +126,19 @@ public class Utils {
      * @return        randomly chosen integer
      */
     public static int weightedRandomChoice(int[] choices, int[] weights) {
+        return weightedRandomChoice(choices, weights, sharedRandom);
+    }
+
+    /**
+     * Same as <code>weightedRandomChoice(choices, weights)</code>, but draws from a specific random number generator
+     * Lets seeded engines make reproducible choices
+     *
+     * @param choices choices to choose from
+     * @param weights weights[i] is the weight of choices[i]
+     * @param random  generator to draw from
+     * @return        randomly chosen integer
+     */
+    public static int weightedRandomChoice(int[] choices, int[] weights, Random random) {
         // Special cases:
         if (choices.length == 1) {  // only one item in array
             return choices[0];
@@ -126,7 +155,7 @@ public class Utils {
 
         // Pick a random integer x between 0 and the last number in prefixWeights - 1inclusive
         // Loop through all values in prefixWeights; if x < prefixWeight[i], then choose the corresponding option in choices
-        int index = randomInteger(0, prefixWeights[prefixWeights.length - 1] - 1);
+        int index = randomInteger(0, prefixWeights[prefixWeights.length - 1] - 1, random);
         for (int i = 0; i < prefixWeights.length; i++) {
             if (index < prefixWeights[i]) {
                 return choices[i];
@@ -156,5 +185,25 @@ public class Utils {
         return highest;
     }
 
-
+    /**
+     * Adds an integer to a <code>StringBuilder</code>, with spaces on the left so it takes up at least a certain width
+     * Same as <code>String.format("%" + width + "d", value)</code>, without creating any strings
+     *
+     * @param builder where to add the integer
+     * @param value   the integer
+     * @param width   minimum number of characters
+     */
+    public static void appendPadded(StringBuilder builder, int value, int width) {
+        int length = value < 0 ? 1 : 0;  // room for the minus sign
+        int remaining = value;
+        do {
+            length++;
+            remaining /= 10;
+        } while (remaining != 0);
+
+        for (int i = length; i < width; i++) {
+            builder.append(' ');
+        }
+        builder.append(value);
+    }
 }